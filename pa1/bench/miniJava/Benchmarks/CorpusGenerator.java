@@ -0,0 +1,202 @@
+package miniJava.Benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class CorpusGenerator {
+	private final Random _random;
+	private final int _nestingDepth;
+	private final int _expressionLength;
+	private final double _commentDensity;
+	private final int _commentLines;
+	private final StringBuilder _out;
+	private int _classCount;
+
+	public CorpusGenerator(long seed, int nestingDepth, int expressionLength, double commentDensity) {
+		this(seed, nestingDepth, expressionLength, commentDensity, 1);
+	}
+
+	// Block comments get commentLines lines of text; more than one gives doc-comment-sized prose.
+	public CorpusGenerator(long seed, int nestingDepth, int expressionLength, double commentDensity,
+			int commentLines) {
+		this._random = new Random(seed);
+		this._nestingDepth = nestingDepth;
+		this._expressionLength = expressionLength;
+		this._commentDensity = commentDensity;
+		this._commentLines = commentLines;
+		this._out = new StringBuilder();
+	}
+
+	public byte[] generate(int targetBytes) {
+		_out.setLength(0);
+		while (_out.length() < targetBytes) {
+			generateClass();
+		}
+		return _out.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private void generateClass() {
+		int id = _classCount++;
+		comment(0);
+		_out.append("class C").append(id).append(" {\n");
+		int fields = 1 + _random.nextInt(3);
+		for (int i = 0; i < fields; i++) {
+			indent(1);
+			_out.append(_random.nextBoolean() ? "private " : "public ");
+			_out.append(_random.nextBoolean() ? "int" : "int[]").append(" f").append(i).append(";\n");
+		}
+		int methods = 1 + _random.nextInt(3);
+		for (int i = 0; i < methods; i++) {
+			comment(1);
+			indent(1);
+			_out.append("public int m").append(i).append("(int a, int b) {\n");
+			int statements = 2 + _random.nextInt(4);
+			for (int j = 0; j < statements; j++) {
+				statement(2, _nestingDepth);
+			}
+			indent(2);
+			_out.append("return ");
+			expression(_expressionLength);
+			_out.append(";\n");
+			indent(1);
+			_out.append("}\n");
+		}
+		_out.append("}\n");
+	}
+
+	private void statement(int indent, int depth) {
+		comment(indent);
+		indent(indent);
+		int choice = _random.nextInt(depth > 0 ? 7 : 5);
+		switch (choice) {
+			case 0:
+				_out.append("int v = ");
+				expression(_expressionLength);
+				_out.append(";\n");
+				break;
+			case 1:
+				_out.append("a = ");
+				expression(_expressionLength);
+				_out.append(";\n");
+				break;
+			case 2:
+				_out.append("this.f0 = ");
+				expression(_expressionLength);
+				_out.append(";\n");
+				break;
+			case 3:
+				_out.append("arr[");
+				expression(1);
+				_out.append("] = ");
+				expression(_expressionLength);
+				_out.append(";\n");
+				break;
+			case 4:
+				_out.append("this.m0(");
+				expression(_expressionLength);
+				_out.append(", b);\n");
+				break;
+			case 5:
+				_out.append("if (");
+				expression(_expressionLength);
+				_out.append(") {\n");
+				block(indent, depth);
+				if (_random.nextBoolean()) {
+					indent(indent);
+					_out.append("} else {\n");
+					block(indent, depth);
+				}
+				indent(indent);
+				_out.append("}\n");
+				break;
+			default:
+				_out.append("while (");
+				expression(_expressionLength);
+				_out.append(") {\n");
+				block(indent, depth);
+				indent(indent);
+				_out.append("}\n");
+				break;
+		}
+	}
+
+	private void block(int indent, int depth) {
+		int statements = 1 + _random.nextInt(3);
+		for (int i = 0; i < statements; i++) {
+			statement(indent + 1, depth - 1);
+		}
+	}
+
+	private void expression(int operands) {
+		operand(operands);
+		for (int i = 1; i < operands; i++) {
+			_out.append(' ').append(OPERATORS[_random.nextInt(OPERATORS.length)]).append(' ');
+			operand(operands);
+		}
+	}
+
+	private void operand(int operands) {
+		switch (_random.nextInt(8)) {
+			case 0:
+				_out.append(_random.nextInt(1000));
+				break;
+			case 1:
+				_out.append("this.f0");
+				break;
+			case 2:
+				_out.append("arr[b]");
+				break;
+			case 3:
+				_out.append(_random.nextBoolean() ? "-a" : "!b");
+				break;
+			case 4:
+				if (operands > 2) {
+					_out.append('(');
+					expression(operands / 2);
+					_out.append(')');
+				} else {
+					_out.append("true");
+				}
+				break;
+			case 5:
+				_out.append("this.m0(a, b)");
+				break;
+			case 6:
+				_out.append("b");
+				break;
+			default:
+				_out.append("a");
+				break;
+		}
+	}
+
+	private void comment(int indent) {
+		if (_random.nextDouble() >= _commentDensity) {
+			return;
+		}
+		indent(indent);
+		if (_random.nextBoolean()) {
+			_out.append("// generated comment ").append(_random.nextInt()).append('\n');
+		} else {
+			_out.append("/* generated\n");
+			for (int i = 0; i < _commentLines; i++) {
+				indent(indent);
+				_out.append(" * block comment ").append(_random.nextInt());
+				if (_commentLines > 1) {
+					_out.append(", describing what the code below computes and why");
+				}
+				_out.append('\n');
+			}
+			indent(indent);
+			_out.append(" */\n");
+		}
+	}
+
+	private void indent(int indent) {
+		for (int i = 0; i < indent; i++) {
+			_out.append('\t');
+		}
+	}
+
+	private static final String[] OPERATORS = { "+", "-", "*", "/", "&&", "||", "<", ">", "<=", ">=", "==", "!=" };
+}
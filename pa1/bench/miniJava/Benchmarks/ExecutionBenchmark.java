@@ -0,0 +1,240 @@
+package miniJava.Benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import miniJava.Compiler;
+import miniJava.ErrorReporter;
+import miniJava.AbstractSyntaxTrees.AST;
+import miniJava.CodeGenerator.CodeGenerator;
+import miniJava.ContextualAnalysis.Resolver;
+import miniJava.SyntacticAnalyzer.LineIndex;
+
+/*
+ * Usage: ExecutionBenchmark [--warmup ms] [--measure ms]
+ *
+ * Runs a few small programs by walking their trees and as generated class files, after
+ * checking that both print the same. The generated code is timed once already loaded
+ * and once including generating and loading it, which is what a single run pays.
+ */
+public class ExecutionBenchmark {
+	static final String[][] PROGRAMS = {
+		{ "loops", String.join("\n",
+				"class Loops {",
+				"    public static void main(String[] args) {",
+				"        int total = 0;",
+				"        int i = 0;",
+				"        while (i < 300) {",
+				"            int j = 0;",
+				"            while (j < 300) {",
+				"                if (i * j / 7 * 7 == i * j && !(i == j)) total = total + i - j / 3;",
+				"                else total = total - 1;",
+				"                j = j + 1;",
+				"            }",
+				"            i = i + 1;",
+				"        }",
+				"        System.out.println(total);",
+				"    }",
+				"}") },
+		{ "sieve", String.join("\n",
+				"class Sieve {",
+				"    public static void main(String[] args) {",
+				"        int n = 100000;",
+				"        int[] composite = new int[n + 1];",
+				"        int count = 0;",
+				"        int i = 2;",
+				"        while (i <= n) {",
+				"            if (composite[i] == 0) {",
+				"                count = count + 1;",
+				"                int j = i + i;",
+				"                while (j <= n) { composite[j] = 1; j = j + i; }",
+				"            }",
+				"            i = i + 1;",
+				"        }",
+				"        System.out.println(count);",
+				"    }",
+				"}") },
+		{ "fib", String.join("\n",
+				"class Fib {",
+				"    public static void main(String[] args) {",
+				"        System.out.println(fib(22));",
+				"    }",
+				"    static int fib(int n) {",
+				"        if (n < 2) return n;",
+				"        return fib(n - 1) + fib(n - 2);",
+				"    }",
+				"}") },
+		{ "objects", String.join("\n",
+				"class Objects {",
+				"    public static void main(String[] args) {",
+				"        Sorter sorter = new Sorter();",
+				"        sorter.fill(1500, 7);",
+				"        sorter.sort();",
+				"        System.out.println(sorter.isSorted());",
+				"        List list = new List();",
+				"        int i = 0;",
+				"        while (i < 3000) { list.push(sorter.values[i / 2]); i = i + 1; }",
+				"        System.out.println(list.sum());",
+				"    }",
+				"}",
+				"class Sorter {",
+				"    int[] values;",
+				"    void fill(int n, int seed) {",
+				"        values = new int[n];",
+				"        int i = 0;",
+				"        while (i < n) {",
+				"            seed = seed * 1103515245 + 12345;",
+				"            values[i] = seed / 65536;",
+				"            i = i + 1;",
+				"        }",
+				"    }",
+				"    void sort() {",
+				"        int i = 1;",
+				"        while (i < values.length) {",
+				"            int value = values[i];",
+				"            int j = i - 1;",
+				"            while (j >= 0 && values[j] > value) { values[j + 1] = values[j]; j = j - 1; }",
+				"            values[j + 1] = value;",
+				"            i = i + 1;",
+				"        }",
+				"    }",
+				"    boolean isSorted() {",
+				"        int i = 1;",
+				"        while (i < values.length) { if (values[i - 1] > values[i]) return false; i = i + 1; }",
+				"        return true;",
+				"    }",
+				"}",
+				"class List {",
+				"    Node head;",
+				"    int size;",
+				"    void push(int value) {",
+				"        Node node = new Node();",
+				"        node.value = value;",
+				"        node.next = head;",
+				"        head = node;",
+				"        size = size + 1;",
+				"    }",
+				"    int sum() {",
+				"        int total = 0;",
+				"        Node node = head;",
+				"        int i = 0;",
+				"        while (i < size) { total = total + node.value / 1000; node = node.next; i = i + 1; }",
+				"        return total;",
+				"    }",
+				"}",
+				"class Node {",
+				"    int value;",
+				"    Node next;",
+				"}") },
+	};
+
+	private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+	public static void main(String[] args) throws ReflectiveOperationException {
+		long warmup = 2000;
+		long measure = 5000;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "--warmup":
+					warmup = Long.parseLong(args[i + 1]);
+					break;
+				case "--measure":
+					measure = Long.parseLong(args[i + 1]);
+					break;
+				default:
+					System.out.println("unknown option " + args[i]);
+					return;
+			}
+		}
+
+		Harness harness = new Harness(warmup, measure);
+		Harness.printHeader();
+		for (String[] program : PROGRAMS) {
+			String name = program[0];
+			byte[] source = program[1].getBytes(StandardCharsets.US_ASCII);
+			Resolver resolver = resolve(source);
+			Map<String, byte[]> classes = new CodeGenerator(resolver, new ErrorReporter(),
+					new LineIndex(ByteBuffer.wrap(source))).generate();
+			Method main = load(classes, resolver);
+
+			ByteArrayOutputStream interpreted = new ByteArrayOutputStream();
+			new TreeInterpreter(resolver, new PrintStream(interpreted)).run();
+			ByteArrayOutputStream generated = new ByteArrayOutputStream();
+			run(main, new PrintStream(generated));
+			if (!interpreted.toString().equals(generated.toString())) {
+				System.out.println(name + ": generated code prints " + generated + " but the tree " + interpreted);
+				return;
+			}
+
+			TreeInterpreter interpreter = new TreeInterpreter(resolver, DISCARD);
+			harness.measure(name + ".tree", source.length, 0, interpreter::run);
+			harness.measure(name + ".jvm", source.length, 0, () -> run(main, DISCARD));
+			harness.measure(name + ".jvmGenerate", source.length, 0, () -> {
+				Resolver fresh = resolve(source);
+				Map<String, byte[]> files = new CodeGenerator(fresh, new ErrorReporter(),
+						new LineIndex(ByteBuffer.wrap(source))).generate();
+				try {
+					run(load(files, fresh), DISCARD);
+				} catch (ReflectiveOperationException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+		}
+	}
+
+	static Resolver resolve(byte[] source) {
+		ErrorReporter errors = new ErrorReporter();
+		AST ast = Compiler.compile(ByteBuffer.wrap(source), errors);
+		Resolver resolver = new Resolver(ast, errors, new LineIndex(ByteBuffer.wrap(source)));
+		if (!resolver.resolve()) {
+			errors.outputErrors();
+			throw new IllegalStateException("benchmark program does not compile");
+		}
+		return resolver;
+	}
+
+	// Each load defines the classes afresh, so static fields start out zero.
+	static Method load(Map<String, byte[]> classes, Resolver resolver) throws ReflectiveOperationException {
+		GeneratedClassLoader loader = new GeneratedClassLoader(classes);
+		String owner = resolver.getDeclarations().getMain().getOwner().getName();
+		return loader.loadClass(owner).getMethod("main", String[].class);
+	}
+
+	// Output of the generated code goes to System.out, which is swapped for the run.
+	static void run(Method main, PrintStream out) {
+		PrintStream console = System.out;
+		System.setOut(out);
+		try {
+			main.invoke(null, (Object) new String[0]);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			System.setOut(console);
+		}
+	}
+
+	static final class GeneratedClassLoader extends ClassLoader {
+		private final Map<String, byte[]> _classes;
+
+		GeneratedClassLoader(Map<String, byte[]> classes) {
+			super(GeneratedClassLoader.class.getClassLoader());
+			this._classes = classes;
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			byte[] bytes = _classes.get(name);
+			if (bytes == null) {
+				throw new ClassNotFoundException(name);
+			}
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package miniJava.Benchmarks;
+
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+
+import miniJava.ErrorReporter;
+import miniJava.AbstractSyntaxTrees.AST;
+import miniJava.SyntacticAnalyzer.ParallelParser;
+import miniJava.SyntacticAnalyzer.Parser;
+import miniJava.SyntacticAnalyzer.PushScanner;
+import miniJava.SyntacticAnalyzer.Scanner;
+import miniJava.SyntacticAnalyzer.ScannerEngine;
+import miniJava.SyntacticAnalyzer.TokenPipe;
+import miniJava.SyntacticAnalyzer.TokenStream;
+import miniJava.SyntacticAnalyzer.TokenType;
+
+/*
+ * Usage: FrontEndBenchmark [--size bytes] [--depth n] [--expr n] [--comments p] [--seed n]
+ *                          [--warmup ms] [--measure ms]
+ */
+public class FrontEndBenchmark {
+	// A typical socket read.
+	private static final int PUSH_CHUNK = 64 << 10;
+
+	public static void main(String[] args) {
+		int size = 4 << 20;
+		int depth = 3;
+		int expressionLength = 4;
+		double comments = 0.2;
+		long seed = 1;
+		long warmup = 2000;
+		long measure = 5000;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "--size":
+					size = Integer.parseInt(args[i + 1]);
+					break;
+				case "--depth":
+					depth = Integer.parseInt(args[i + 1]);
+					break;
+				case "--expr":
+					expressionLength = Integer.parseInt(args[i + 1]);
+					break;
+				case "--comments":
+					comments = Double.parseDouble(args[i + 1]);
+					break;
+				case "--seed":
+					seed = Long.parseLong(args[i + 1]);
+					break;
+				case "--warmup":
+					warmup = Long.parseLong(args[i + 1]);
+					break;
+				case "--measure":
+					measure = Long.parseLong(args[i + 1]);
+					break;
+				default:
+					System.out.println("unknown option " + args[i]);
+					return;
+			}
+		}
+
+		byte[] source = new CorpusGenerator(seed, depth, expressionLength, comments).generate(size);
+		TokenStream tokens = new TokenStream(new Scanner(source, new ErrorReporter()));
+		int tokenCount = tokens.size();
+
+		ErrorReporter check = new ErrorReporter();
+		new Parser(tokens, check).parse();
+		if (check.hasErrors()) {
+			System.out.println("generated corpus does not parse:");
+			check.outputErrors();
+			return;
+		}
+
+		if (!ScannerDifferential.agree(source)) {
+			System.out.println("scanner engines disagree on the generated corpus");
+			return;
+		}
+
+		System.out.printf("corpus: %d bytes, %d tokens, depth %d, expr %d, comments %.2f, seed %d%n",
+				source.length, tokenCount, depth, expressionLength, comments, seed);
+
+		// Same shape with a doc-sized comment before every statement and member, for the
+		// whitespace and comment skipping paths.
+		byte[] commented = new CorpusGenerator(seed, depth, expressionLength, 1.0, 4).generate(size);
+		int commentedTokenCount = new TokenStream(new Scanner(commented, new ErrorReporter())).size();
+
+		long heapBefore = usedHeap();
+		tokens.seek(0);
+		AST ast = new Parser(tokens, new ErrorReporter()).parse();
+		long retained = usedHeap() - heapBefore;
+		System.out.printf("ast: %d nodes (%.2f per token), %d names, %d bytes retained, %.1f B/node, %.2f B/source byte%n",
+				ast.size(), (double) ast.size() / tokenCount, ast.getNameCount(), retained,
+				(double) retained / ast.size(), (double) retained / source.length);
+		Reference.reachabilityFence(ast);
+
+		Harness harness = new Harness(warmup, measure);
+		Harness.printHeader();
+
+		harness.measure("lex.scan", source.length, tokenCount, () -> {
+			Scanner scanner = new Scanner(source, new ErrorReporter());
+			while (scanner.scan().getTokenType() != TokenType.EOT) {
+			}
+		});
+
+		harness.measure("lex.scan.table", source.length, tokenCount, () -> {
+			Scanner scanner = new Scanner(ByteBuffer.wrap(source), new ErrorReporter(), ScannerEngine.TABLE_DRIVEN);
+			while (scanner.scan().getTokenType() != TokenType.EOT) {
+			}
+		});
+
+		harness.measure("lex.push", source.length, tokenCount, () -> {
+			PushScanner scanner = new PushScanner(new ErrorReporter(), token -> {
+			});
+			for (int at = 0; at < source.length; at += PUSH_CHUNK) {
+				scanner.feed(ByteBuffer.wrap(source, at, Math.min(PUSH_CHUNK, source.length - at)));
+			}
+			scanner.endOfInput();
+		});
+
+		harness.measure("lex.commentDense", commented.length, commentedTokenCount, () -> {
+			Scanner scanner = new Scanner(commented, new ErrorReporter());
+			while (scanner.scan().getTokenType() != TokenType.EOT) {
+			}
+		});
+
+		harness.measure("lex.tokenStream", source.length, tokenCount, () -> {
+			new TokenStream(new Scanner(source, new ErrorReporter()));
+		});
+
+		harness.measure("lex.tokenStream.table", source.length, tokenCount, () -> {
+			new TokenStream(new Scanner(ByteBuffer.wrap(source), new ErrorReporter(), ScannerEngine.TABLE_DRIVEN));
+		});
+
+		harness.measure("parse.tokenStream", source.length, tokenCount, () -> {
+			tokens.seek(0);
+			new Parser(tokens, new ErrorReporter()).parse();
+		});
+
+		harness.measure("parse.parallel", source.length, tokenCount, () -> {
+			tokens.seek(0);
+			new ParallelParser(tokens, new ErrorReporter()).parse();
+		});
+
+		harness.measure("endToEnd", source.length, tokenCount, () -> {
+			ErrorReporter errors = new ErrorReporter();
+			new Parser(new Scanner(ByteBuffer.wrap(source), errors), errors).parse();
+		});
+
+		// Forced on regardless of core count, so on one core this shows the handoff cost.
+		harness.measure("endToEnd.pipelined", source.length, tokenCount, () -> {
+			ErrorReporter errors = new ErrorReporter();
+			try (TokenPipe pipe = new TokenPipe(ByteBuffer.wrap(source))) {
+				new Parser(pipe, errors).parse();
+			}
+		});
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
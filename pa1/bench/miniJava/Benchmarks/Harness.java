@@ -0,0 +1,62 @@
+package miniJava.Benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+public class Harness {
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private final long _warmupNanos;
+	private final long _measureNanos;
+
+	public Harness(long warmupMillis, long measureMillis) {
+		this._warmupNanos = warmupMillis * 1_000_000L;
+		this._measureNanos = measureMillis * 1_000_000L;
+	}
+
+	public static void printHeader() {
+		System.out.printf("%-24s %10s %10s %12s %12s %10s %8s%n",
+				"benchmark", "ms/op", "MB/s", "Mtokens/s", "alloc B/op", "B/token", "gc");
+	}
+
+	public void measure(String name, long bytesPerOp, long tokensPerOp, Runnable op) {
+		run(op, _warmupNanos);
+
+		long gcBefore = gcCount();
+		long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+		long start = System.nanoTime();
+		long ops = run(op, _measureNanos);
+		long elapsed = System.nanoTime() - start;
+		long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+		long gc = gcCount() - gcBefore;
+
+		double seconds = elapsed / 1e9;
+		System.out.printf("%-24s %10.3f %10.1f %12.2f %12d %10.1f %8d%n",
+				name,
+				elapsed / 1e6 / ops,
+				bytesPerOp * ops / 1e6 / seconds,
+				tokensPerOp * ops / 1e6 / seconds,
+				allocated / ops,
+				tokensPerOp == 0 ? 0.0 : (double) allocated / ops / tokensPerOp,
+				gc);
+	}
+
+	private static long run(Runnable op, long nanos) {
+		long deadline = System.nanoTime() + nanos;
+		long ops = 0;
+		do {
+			op.run();
+			ops++;
+		} while (System.nanoTime() < deadline);
+		return ops;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+}
@@ -0,0 +1,162 @@
+package miniJava.Benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import miniJava.ErrorReporter;
+import miniJava.CodeGenerator.CodeGenerator;
+import miniJava.ContextualAnalysis.Resolver;
+import miniJava.Interpreter.Interpreter;
+import miniJava.SyntacticAnalyzer.LineIndex;
+
+/*
+ * Usage: InterpreterBenchmark [--warmup ms] [--measure ms]
+ *
+ * Runs a small program and loop- and array-heavy ones in process, after checking that
+ * the interpreter prints what the tree walker and the generated class files do. Each is
+ * timed by walking its tree, by the interpreter with and without linearizing first, and
+ * as class files generated and loaded for the run, the step the interpreter saves a test.
+ */
+public class InterpreterBenchmark {
+	private static final String[][] PROGRAMS = {
+		{ "small", String.join("\n",
+				"class Small {",
+				"    public static void main(String[] args) {",
+				"        int sum = 0;",
+				"        int i = 0;",
+				"        while (i < 100) { sum = sum + i * i; i = i + 1; }",
+				"        System.out.println(sum);",
+				"        Point p = new Point();",
+				"        p.x = 3;",
+				"        System.out.println(p.x * 2 == 6);",
+				"    }",
+				"}",
+				"class Point {",
+				"    int x;",
+				"}") },
+		{ "matrix", String.join("\n",
+				"class Matrix {",
+				"    public static void main(String[] args) {",
+				"        int n = 40;",
+				"        int[] a = new int[n * n];",
+				"        int[] b = new int[n * n];",
+				"        int[] c = new int[n * n];",
+				"        int i = 0;",
+				"        while (i < n * n) { a[i] = i / n - i / 7; b[i] = i / 3 - n; i = i + 1; }",
+				"        i = 0;",
+				"        while (i < n) {",
+				"            int j = 0;",
+				"            while (j < n) {",
+				"                int sum = 0;",
+				"                int k = 0;",
+				"                while (k < n) { sum = sum + a[i * n + k] * b[k * n + j]; k = k + 1; }",
+				"                c[i * n + j] = sum;",
+				"                j = j + 1;",
+				"            }",
+				"            i = i + 1;",
+				"        }",
+				"        int trace = 0;",
+				"        i = 0;",
+				"        while (i < n) { trace = trace + c[i * n + i]; i = i + 1; }",
+				"        System.out.println(trace);",
+				"    }",
+				"}") },
+		{ "bubble", String.join("\n",
+				"class Bubble {",
+				"    public static void main(String[] args) {",
+				"        int n = 600;",
+				"        int[] values = new int[n];",
+				"        int seed = 3;",
+				"        int i = 0;",
+				"        while (i < n) { seed = seed * 1103515245 + 12345; values[i] = seed / 65536; i = i + 1; }",
+				"        boolean swapped = true;",
+				"        while (swapped) {",
+				"            swapped = false;",
+				"            i = 1;",
+				"            while (i < values.length) {",
+				"                if (values[i - 1] > values[i]) {",
+				"                    int t = values[i];",
+				"                    values[i] = values[i - 1];",
+				"                    values[i - 1] = t;",
+				"                    swapped = true;",
+				"                }",
+				"                i = i + 1;",
+				"            }",
+				"        }",
+				"        System.out.println(values[0] <= values[n - 1]);",
+				"    }",
+				"}") },
+	};
+
+	private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+	public static void main(String[] args) throws ReflectiveOperationException {
+		long warmup = 2000;
+		long measure = 5000;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "--warmup":
+					warmup = Long.parseLong(args[i + 1]);
+					break;
+				case "--measure":
+					measure = Long.parseLong(args[i + 1]);
+					break;
+				default:
+					System.out.println("unknown option " + args[i]);
+					return;
+			}
+		}
+
+		List<String[]> programs = new ArrayList<String[]>(Arrays.asList(PROGRAMS));
+		programs.addAll(Arrays.asList(ExecutionBenchmark.PROGRAMS));
+
+		Harness harness = new Harness(warmup, measure);
+		Harness.printHeader();
+		for (String[] program : programs) {
+			String name = program[0];
+			byte[] source = program[1].getBytes(StandardCharsets.US_ASCII);
+			Resolver resolver = ExecutionBenchmark.resolve(source);
+			Interpreter interpreter = new Interpreter(resolver);
+
+			ByteArrayOutputStream walked = new ByteArrayOutputStream();
+			new TreeInterpreter(resolver, new PrintStream(walked)).run();
+			ByteArrayOutputStream interpreted = new ByteArrayOutputStream();
+			interpreter.run(new PrintStream(interpreted));
+			ByteArrayOutputStream generated = new ByteArrayOutputStream();
+			ExecutionBenchmark.run(generate(resolver, source), new PrintStream(generated));
+			if (!interpreted.toString().equals(walked.toString())
+					|| !interpreted.toString().equals(generated.toString())) {
+				System.out.println(name + ": the interpreter prints " + interpreted + " but the tree " + walked
+						+ " and generated code " + generated);
+				return;
+			}
+
+			TreeInterpreter walker = new TreeInterpreter(resolver, DISCARD);
+			harness.measure(name + ".tree", source.length, 0, walker::run);
+			harness.measure(name + ".linear", source.length, 0, () -> interpreter.run(DISCARD));
+			harness.measure(name + ".linearize", source.length, 0, () -> new Interpreter(resolver).run(DISCARD));
+			harness.measure(name + ".jvmGenerate", source.length, 0, () -> {
+				try {
+					ExecutionBenchmark.run(generate(resolver, source), DISCARD);
+				} catch (ReflectiveOperationException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+		}
+	}
+
+	private static Method generate(Resolver resolver, byte[] source) throws ReflectiveOperationException {
+		Map<String, byte[]> classes = new CodeGenerator(resolver, new ErrorReporter(),
+				new LineIndex(ByteBuffer.wrap(source))).generate();
+		return ExecutionBenchmark.load(classes, resolver);
+	}
+}
@@ -0,0 +1,105 @@
+package miniJava.Benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import miniJava.ErrorReporter;
+import miniJava.ContextualAnalysis.Resolver;
+import miniJava.Interpreter.Interpreter;
+import miniJava.Optimizer.Optimizer;
+import miniJava.SyntacticAnalyzer.LineIndex;
+
+/*
+ * Usage: OptimizerBenchmark [--warmup ms] [--measure ms]
+ *
+ * Runs programs in the interpreter as written and once optimized, after checking that
+ * both print the same, and times the optimizer on top of resolving. The first program
+ * is written the way generated sources are, with constant arithmetic and branches on
+ * literals; the others show what it costs or gains on code written by hand.
+ */
+public class OptimizerBenchmark {
+	private static final String[][] PROGRAMS = {
+		{ "generated", String.join("\n",
+				"class Generated {",
+				"    public static void main(String[] args) {",
+				"        int total = 0;",
+				"        int i = 0;",
+				"        while (i < 200000) {",
+				"            int scaled = i * (2 * 2) / (1 + 1) * 1 + 0;",
+				"            if (true && i < 100000) total = total + scaled - (60 * 60 - 3600);",
+				"            else total = total - 1 * (0 - 1);",
+				"            if (false) { total = 0; }",
+				"            while (1 > 2) { total = total + 1; }",
+				"            i = i + 1 * 1;",
+				"        }",
+				"        System.out.println(total);",
+				"        System.out.println(check(total) || false);",
+				"    }",
+				"    static boolean check(int total) {",
+				"        return total > 4 * 1000;",
+				"        total = 0;",
+				"    }",
+				"}") },
+	};
+
+	private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+	public static void main(String[] args) {
+		long warmup = 2000;
+		long measure = 5000;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "--warmup":
+					warmup = Long.parseLong(args[i + 1]);
+					break;
+				case "--measure":
+					measure = Long.parseLong(args[i + 1]);
+					break;
+				default:
+					System.out.println("unknown option " + args[i]);
+					return;
+			}
+		}
+
+		List<String[]> programs = new ArrayList<String[]>(Arrays.asList(PROGRAMS));
+		programs.addAll(Arrays.asList(ExecutionBenchmark.PROGRAMS));
+
+		Harness harness = new Harness(warmup, measure);
+		Harness.printHeader();
+		for (String[] program : programs) {
+			String name = program[0];
+			byte[] source = program[1].getBytes(StandardCharsets.US_ASCII);
+			Interpreter plain = new Interpreter(ExecutionBenchmark.resolve(source));
+			Resolver resolver = ExecutionBenchmark.resolve(source);
+			Optimizer optimizer = new Optimizer(resolver, new ErrorReporter(), new LineIndex(ByteBuffer.wrap(source)));
+			optimizer.optimize();
+			Interpreter optimized = new Interpreter(resolver);
+
+			ByteArrayOutputStream before = new ByteArrayOutputStream();
+			plain.run(new PrintStream(before));
+			ByteArrayOutputStream after = new ByteArrayOutputStream();
+			optimized.run(new PrintStream(after));
+			if (!before.toString().equals(after.toString())) {
+				System.out.println(name + ": optimized code prints " + after + " but unoptimized " + before);
+				return;
+			}
+
+			harness.measure(name + ".plain", source.length, 0, () -> plain.run(DISCARD));
+			harness.measure(name + ".optimized", source.length, 0, () -> optimized.run(DISCARD));
+			// The optimizer rewrites the tree it is given, so each run resolves a fresh one.
+			harness.measure(name + ".resolve", source.length, 0, () -> ExecutionBenchmark.resolve(source));
+			harness.measure(name + ".resolveOptimize", source.length, 0,
+					() -> new Optimizer(ExecutionBenchmark.resolve(source), new ErrorReporter(),
+							new LineIndex(ByteBuffer.wrap(source))).optimize());
+			System.out.print(name + " code size " + plain.getCodeSize() + " -> " + optimized.getCodeSize() + ", ");
+			optimizer.print(System.out);
+		}
+	}
+}
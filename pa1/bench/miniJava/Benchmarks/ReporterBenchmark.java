@@ -0,0 +1,153 @@
+package miniJava.Benchmarks;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import miniJava.ConcurrentErrorReporter;
+import miniJava.Diagnostic;
+import miniJava.ErrorCode;
+import miniJava.ErrorReporter;
+
+/*
+ * Usage: ReporterBenchmark [--threads n] [--reports n] [--limit n] [--rounds n]
+ *
+ * Reports from several threads at once into one reporter and checks the totals against
+ * what the same reports made one at a time would give: the error count, the count each
+ * folded diagnostic carries, how many others are kept and how many are suppressed. Each
+ * thread makes --reports reports, mostly of a few repeatable diagnostics, some of them
+ * as one report of three. The plain ErrorReporter is run the same way for comparison.
+ * Thread counts double from one up to --threads.
+ */
+public class ReporterBenchmark {
+	// Distinct repeatable diagnostics; the rest are one of a kind.
+	private static final int REPEATABLE = 16;
+	// One report in this many is not repeatable.
+	private static final int DISTINCT_EVERY = 8;
+
+	public static void main(String[] args) throws InterruptedException {
+		int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		int reports = 200000;
+		int limit = ErrorReporter.DEFAULT_LIMIT;
+		int rounds = 5;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "--threads":
+					maxThreads = Integer.parseInt(args[i + 1]);
+					break;
+				case "--reports":
+					reports = Integer.parseInt(args[i + 1]);
+					break;
+				case "--limit":
+					limit = Integer.parseInt(args[i + 1]);
+					break;
+				case "--rounds":
+					rounds = Integer.parseInt(args[i + 1]);
+					break;
+				default:
+					System.out.println("unknown option " + args[i]);
+					return;
+			}
+		}
+		if (limit < REPEATABLE) {
+			System.out.println("--limit must keep at least " + REPEATABLE + " diagnostics");
+			return;
+		}
+
+		System.out.printf("%-12s %8s %14s %s%n", "reporter", "threads", "reports/s", "result");
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			for (int round = 0; round < rounds; round++) {
+				boolean last = round == rounds - 1;
+				run("concurrent", new ConcurrentErrorReporter(limit), threads, reports, last);
+				run("plain", new ErrorReporter(limit), threads, reports, last);
+			}
+		}
+	}
+
+	private static void run(String name, ErrorReporter errors, int threads, int reports, boolean print)
+			throws InterruptedException {
+		// Each repeatable diagnostic is kept before the threads start, so all their
+		// repeats fold into it whatever order the threads run in.
+		for (int i = 0; i < REPEATABLE; i++) {
+			errors.report(ErrorCode.INVALID_CHARACTER, 1, 1, i);
+		}
+
+		AtomicInteger failures = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			Thread worker = new Thread(() -> {
+				try {
+					start.await();
+					for (int i = 0; i < reports; i++) {
+						if (i % DISTINCT_EVERY == 0) {
+							errors.report(ErrorCode.EXPECTED_SEMICOLON, i, thread, thread + "/" + i);
+						} else if (i % DISTINCT_EVERY == 1) {
+							errors.report(new Diagnostic(ErrorCode.INVALID_CHARACTER, i, thread, i % REPEATABLE), 3);
+						} else {
+							errors.report(ErrorCode.INVALID_CHARACTER, i, thread, i % REPEATABLE);
+						}
+					}
+				} catch (RuntimeException | InterruptedException e) {
+					// The plain reporter's collections can break under concurrent use.
+					failures.incrementAndGet();
+				} finally {
+					done.countDown();
+				}
+			}, "reporter-benchmark-" + t);
+			worker.start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		long elapsed = System.nanoTime() - begin;
+
+		if (print) {
+			String result = failures.get() > 0 ? failures.get() + " threads failed" : check(errors, threads, reports);
+			System.out.printf("%-12s %8d %14.0f %s%n", name, threads, (double) threads * reports * 1e9 / elapsed,
+					result);
+		}
+	}
+
+	// "exact" when every total matches reports made one at a time, else what differs.
+	private static String check(ErrorReporter errors, int threads, int reports) {
+		long[] repeats = new long[REPEATABLE];
+		long distinct = 0;
+		long total = REPEATABLE;
+		for (int i = 0; i < reports; i++) {
+			if (i % DISTINCT_EVERY == 0) {
+				distinct += threads;
+				total += threads;
+			} else {
+				int times = i % DISTINCT_EVERY == 1 ? 3 : 1;
+				repeats[i % REPEATABLE] += (long) threads * times;
+				total += (long) threads * times;
+			}
+		}
+		long kept = Math.min(distinct, errors.getLimit() - REPEATABLE);
+
+		StringBuilder wrong = new StringBuilder();
+		if (errors.getErrorCount() != total) {
+			wrong.append(" errors=").append(errors.getErrorCount()).append("/").append(total);
+		}
+		if (errors.getSuppressedCount() != distinct - kept) {
+			wrong.append(" suppressed=").append(errors.getSuppressedCount()).append("/").append(distinct - kept);
+		}
+		List<Diagnostic> diagnostics = errors.getDiagnostics();
+		if (diagnostics.size() != REPEATABLE + kept) {
+			wrong.append(" kept=").append(diagnostics.size()).append("/").append(REPEATABLE + kept);
+		}
+		for (Diagnostic diagnostic : diagnostics) {
+			if (diagnostic.getCode() == ErrorCode.INVALID_CHARACTER) {
+				int which = (Integer) diagnostic.getArguments()[0];
+				if (diagnostic.getCount() != repeats[which] + 1) {
+					wrong.append(" folded[").append(which).append("]=").append(diagnostic.getCount()).append("/")
+							.append(repeats[which] + 1);
+				}
+			}
+		}
+		return wrong.length() == 0 ? "exact" : "wrong:" + wrong;
+	}
+}
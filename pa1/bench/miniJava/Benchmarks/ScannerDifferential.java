@@ -0,0 +1,167 @@
+package miniJava.Benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import miniJava.Diagnostic;
+import miniJava.ErrorReporter;
+import miniJava.SyntacticAnalyzer.PushScanner;
+import miniJava.SyntacticAnalyzer.Scanner;
+import miniJava.SyntacticAnalyzer.ScannerEngine;
+import miniJava.SyntacticAnalyzer.Token;
+import miniJava.SyntacticAnalyzer.TokenStream;
+import miniJava.SyntacticAnalyzer.TokenType;
+
+/*
+ * Usage: ScannerDifferential [--cases n] [--seed n]
+ *
+ * Scans random fragment soup and a generated corpus with every engine, and pushes it through
+ * a PushScanner in random chunks. Reports any difference from the hand-written scanner in
+ * tokens, positions, lengths or diagnostics.
+ */
+public class ScannerDifferential {
+	private static final String[] FRAGMENTS = {
+		" ", "\t", "\n", "\r", "\f", "\u001C", "\u0000", "\u007F", "//", "/*", "*/", "*", "/", "/* x */",
+		"x", "class", "classy", "cl", "int", "in", "if", "this", "true", "tru", "private", "pub", "boolean",
+		"1", "42", "{", "}", "(", ")", "[", "]", ";", ",", ".", "+", "-", "&&", "&", "|", "||", "=", "==",
+		"!", "!=", "<", "<=", ">", ">=", "_", "_a", "a_1", "#", "@", "$", "\"", "'"
+	};
+
+	public static void main(String[] args) {
+		int cases = 100000;
+		long seed = 1;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "--cases":
+					cases = Integer.parseInt(args[i + 1]);
+					break;
+				case "--seed":
+					seed = Long.parseLong(args[i + 1]);
+					break;
+				default:
+					System.out.println("unknown option " + args[i]);
+					return;
+			}
+		}
+
+		Random random = new Random(seed);
+		int mismatches = 0;
+		for (int i = 0; i < cases; i++) {
+			byte[] source = fragmentSoup(random);
+			if (!agree(source) || !agreePushed(source, random)) {
+				mismatches++;
+			}
+		}
+		byte[] corpus = new CorpusGenerator(seed, 3, 4, 0.5, 2).generate(1 << 20);
+		if (!agree(corpus) || !agreePushed(corpus, random)) {
+			mismatches++;
+		}
+		System.out.printf("%d cases, %d mismatches%n", cases + 1, mismatches);
+		if (mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+	// Prints the first difference, if any.
+	static boolean agree(byte[] source) {
+		String expected = describe(source, ScannerEngine.HAND_WRITTEN);
+		for (ScannerEngine engine : ScannerEngine.values()) {
+			String actual = describe(source, engine);
+			if (!actual.equals(expected)) {
+				System.out.println("mismatch for " + engine + " on " + Arrays.toString(source));
+				System.out.println("expected:\n" + expected + "actual:\n" + actual);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean agreePushed(byte[] source, Random random) {
+		String expected = scanned(source, ScannerEngine.HAND_WRITTEN);
+
+		StringWriter buffer = new StringWriter();
+		PrintWriter out = new PrintWriter(buffer);
+		ErrorReporter errors = new ErrorReporter();
+		PushScanner scanner = new PushScanner(errors, token -> print(out, token));
+		int maxChunk = 1 + random.nextInt(random.nextBoolean() ? 4 : 4096);
+		for (int at = 0; at < source.length;) {
+			int length = Math.min(source.length - at, random.nextInt(maxChunk + 1));
+			scanner.feed(ByteBuffer.wrap(source, at, length));
+			at += length;
+		}
+		scanner.endOfInput();
+		print(out, errors);
+		out.flush();
+
+		String actual = buffer.toString();
+		if (!actual.equals(expected)) {
+			System.out.println("mismatch for PushScanner on " + Arrays.toString(source));
+			System.out.println("expected:\n" + expected + "actual:\n" + actual);
+			return false;
+		}
+		return true;
+	}
+
+	private static byte[] fragmentSoup(Random random) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int n = random.nextInt(40); n > 0; n--) {
+			if (random.nextInt(20) == 0) {
+				out.write(0x80 + random.nextInt(128));
+			} else {
+				out.writeBytes(FRAGMENTS[random.nextInt(FRAGMENTS.length)].getBytes(StandardCharsets.ISO_8859_1));
+			}
+			if (random.nextInt(3) == 0) {
+				out.write(' ');
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static String describe(byte[] source, ScannerEngine engine) {
+		StringWriter buffer = new StringWriter();
+		PrintWriter out = new PrintWriter(buffer);
+		out.print(scanned(source, engine));
+
+		TokenStream tokens = new TokenStream(new Scanner(ByteBuffer.wrap(source), new ErrorReporter(), engine));
+		for (int i = 0; i < tokens.size(); i++) {
+			out.printf("%d+%d ", tokens.getStart(i), tokens.getLength(i));
+		}
+		out.println();
+		out.flush();
+		return buffer.toString();
+	}
+
+	private static String scanned(byte[] source, ScannerEngine engine) {
+		StringWriter buffer = new StringWriter();
+		PrintWriter out = new PrintWriter(buffer);
+
+		ErrorReporter errors = new ErrorReporter();
+		Scanner scanner = new Scanner(ByteBuffer.wrap(source), errors, engine);
+		Token token;
+		do {
+			token = scanner.scan();
+			print(out, token);
+		} while (token.getTokenType() != TokenType.EOT);
+		print(out, errors);
+		out.flush();
+		return buffer.toString();
+	}
+
+	private static void print(PrintWriter out, Token token) {
+		out.printf("%s '%s' %d %d:%d%n", token.getTokenType(), token.getTokenText(), token.getOffset(),
+				token.getLine(), token.getColumn());
+	}
+
+	private static void print(PrintWriter out, ErrorReporter errors) {
+		for (Diagnostic diagnostic : errors.getDiagnostics()) {
+			out.printf("%s at %d:%d x%d: %s%n", diagnostic.getCode(), diagnostic.getLine(), diagnostic.getColumn(),
+					diagnostic.getCount(), diagnostic.getMessage());
+		}
+	}
+}
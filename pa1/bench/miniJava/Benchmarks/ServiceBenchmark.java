@@ -0,0 +1,161 @@
+package miniJava.Benchmarks;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import miniJava.CompileResult;
+import miniJava.Compiler;
+import miniJava.CompilerService;
+import miniJava.ErrorReporter;
+
+/*
+ * Usage: ServiceBenchmark [--files n] [--size bytes] [--threads n] [--seed n]
+ *                         [--warmup ms] [--measure ms]
+ *
+ * Compiles many small files from several threads at once, as an embedding service does,
+ * once constructing a Scanner and Parser per request and once through CompilerService.
+ * Thread counts double from one up to --threads.
+ */
+public class ServiceBenchmark {
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) throws InterruptedException {
+		int files = 256;
+		int size = 8 << 10;
+		int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		long seed = 1;
+		long warmup = 2000;
+		long measure = 5000;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "--files":
+					files = Integer.parseInt(args[i + 1]);
+					break;
+				case "--size":
+					size = Integer.parseInt(args[i + 1]);
+					break;
+				case "--threads":
+					maxThreads = Integer.parseInt(args[i + 1]);
+					break;
+				case "--seed":
+					seed = Long.parseLong(args[i + 1]);
+					break;
+				case "--warmup":
+					warmup = Long.parseLong(args[i + 1]);
+					break;
+				case "--measure":
+					measure = Long.parseLong(args[i + 1]);
+					break;
+				default:
+					System.out.println("unknown option " + args[i]);
+					return;
+			}
+		}
+
+		List<byte[]> sources = new ArrayList<byte[]>();
+		long bytes = 0;
+		for (int i = 0; i < files; i++) {
+			byte[] source = new CorpusGenerator(seed + i, 3, 4, 0.2).generate(size);
+			sources.add(source);
+			bytes += source.length;
+		}
+
+		CompilerService service = new CompilerService();
+		for (byte[] source : sources) {
+			// A truncated copy also exercises error recovery in reused instances.
+			byte[] truncated = Arrays.copyOf(source, source.length / 2);
+			if (!output(source).equals(output(service.compile(source)))
+					|| !output(truncated).equals(output(service.compile(truncated)))) {
+				System.out.println("CompilerService disagrees with Compiler.compile");
+				return;
+			}
+		}
+		System.out.printf("%d files, %d bytes on average, %d processors%n",
+				files, bytes / files, Runtime.getRuntime().availableProcessors());
+
+		System.out.printf("%-10s %8s %12s %10s %14s%n", "mode", "threads", "requests/s", "MB/s", "alloc B/req");
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			measure("fresh", threads, sources, bytes, warmup, measure, source -> {
+				Compiler.compile(ByteBuffer.wrap(source), new ErrorReporter(), 1);
+			});
+			measure("pooled", threads, sources, bytes, warmup, measure, source -> {
+				service.compile(source);
+			});
+		}
+	}
+
+	private static void measure(String mode, int threads, List<byte[]> sources, long bytes, long warmup,
+			long measure, Consumer<byte[]> compile) throws InterruptedException {
+		AtomicLong requests = new AtomicLong();
+		AtomicLong allocated = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(threads);
+		long measureStart = System.nanoTime() + warmup * 1_000_000L;
+		long deadline = measureStart + measure * 1_000_000L;
+
+		for (int t = 0; t < threads; t++) {
+			int first = t * sources.size() / threads;
+			Thread worker = new Thread(() -> {
+				long count = 0;
+				long allocatedBefore = 0;
+				boolean measuring = false;
+				for (int i = first;; i = (i + 1) % sources.size()) {
+					long now = System.nanoTime();
+					if (!measuring && now >= measureStart) {
+						measuring = true;
+						allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+					}
+					if (now >= deadline) {
+						break;
+					}
+					compile.accept(sources.get(i));
+					if (measuring) {
+						count++;
+					}
+				}
+				requests.addAndGet(count);
+				allocated.addAndGet(THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore);
+				done.countDown();
+			}, "service-benchmark-" + t);
+			worker.start();
+		}
+		done.await();
+
+		double seconds = measure / 1e3;
+		long count = Math.max(1, requests.get());
+		System.out.printf("%-10s %8d %12.0f %10.1f %14d%n", mode, threads, count / seconds,
+				count * (bytes / sources.size()) / 1e6 / seconds, allocated.get() / count);
+	}
+
+	private static String output(byte[] source) {
+		ErrorReporter errors = new ErrorReporter();
+		Compiler.compile(ByteBuffer.wrap(source), errors, 1);
+		StringWriter buffer = new StringWriter();
+		PrintWriter out = new PrintWriter(buffer);
+		if (errors.hasErrors()) {
+			out.println("Error");
+			errors.outputErrors(out);
+		} else {
+			out.println("Success");
+		}
+		out.flush();
+		return buffer.toString();
+	}
+
+	private static String output(CompileResult result) {
+		StringWriter buffer = new StringWriter();
+		PrintWriter out = new PrintWriter(buffer);
+		result.printTo(out);
+		out.flush();
+		return buffer.toString();
+	}
+}
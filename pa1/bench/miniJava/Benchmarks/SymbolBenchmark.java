@@ -0,0 +1,173 @@
+package miniJava.Benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import miniJava.Compiler;
+import miniJava.ErrorReporter;
+import miniJava.AbstractSyntaxTrees.AST;
+import miniJava.SyntacticAnalyzer.Scanner;
+import miniJava.SyntacticAnalyzer.SymbolTable;
+import miniJava.SyntacticAnalyzer.Token;
+import miniJava.SyntacticAnalyzer.TokenType;
+
+/*
+ * Usage: SymbolBenchmark [--files n] [--size bytes] [--seed n] [--warmup ms] [--measure ms]
+ *
+ * Reports what interning identifiers saves on a batch of generated files: the heap kept
+ * by every identifier's text and by every file's tree, once with a fresh String per
+ * identifier, once with a symbol table per file and once with one table for the batch.
+ * Then times compiling the batch with a table per file, with a shared one and with one
+ * already holding many names from elsewhere.
+ */
+public class SymbolBenchmark {
+	// What a mode retains is held here, so that it is reachable until released.
+	private static final List<Object> KEPT = new ArrayList<Object>();
+	private static final int CROWDED_NAMES = 1 << 18;
+
+	public static void main(String[] args) {
+		int files = 2000;
+		int size = 16 << 10;
+		long seed = 1;
+		long warmup = 2000;
+		long measure = 5000;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "--files":
+					files = Integer.parseInt(args[i + 1]);
+					break;
+				case "--size":
+					size = Integer.parseInt(args[i + 1]);
+					break;
+				case "--seed":
+					seed = Long.parseLong(args[i + 1]);
+					break;
+				case "--warmup":
+					warmup = Long.parseLong(args[i + 1]);
+					break;
+				case "--measure":
+					measure = Long.parseLong(args[i + 1]);
+					break;
+				default:
+					System.out.println("unknown option " + args[i]);
+					return;
+			}
+		}
+
+		List<byte[]> sources = new ArrayList<byte[]>();
+		long bytes = 0;
+		for (int i = 0; i < files; i++) {
+			byte[] source = new CorpusGenerator(seed + i, 3, 4, 0.2).generate(size);
+			sources.add(source);
+			bytes += source.length;
+		}
+
+		SymbolTable shared = new SymbolTable();
+		long identifiers = 0;
+		for (byte[] source : sources) {
+			Scanner own = new Scanner(ByteBuffer.wrap(source), new ErrorReporter());
+			Scanner sharing = new Scanner(ByteBuffer.wrap(source), new ErrorReporter(), shared);
+			for (Token a = own.scan(), b = sharing.scan();; a = own.scan(), b = sharing.scan()) {
+				if (a.getTokenType() != b.getTokenType() || !a.getTokenText().equals(b.getTokenText())
+						|| a.getTokenType() == TokenType.IDENTIFIER
+								&& !shared.getName(b.getSymbol()).equals(b.getTokenText())) {
+					System.out.println("shared symbols change the tokens scanned");
+					return;
+				}
+				if (a.getTokenType() == TokenType.IDENTIFIER) {
+					identifiers++;
+				}
+				if (a.getTokenType() == TokenType.EOT) {
+					break;
+				}
+			}
+		}
+		System.out.printf("%d files, %d bytes, %d identifiers, %d distinct names (%d chars)%n",
+				files, bytes, identifiers, shared.size(), shared.getCharCount());
+
+		System.out.printf("%-24s %14s %14s%n", "retained", "names MB", "trees MB");
+		retain("fresh strings", sources, () -> null, true);
+		retain("table per file", sources, () -> new SymbolTable(), false);
+		SymbolTable batch = new SymbolTable();
+		retain("shared table", sources, () -> batch, false);
+
+		Harness harness = new Harness(warmup, measure);
+		System.out.println();
+		Harness.printHeader();
+		long batchBytes = bytes;
+		harness.measure("batch.tablePerFile", batchBytes, 0, () -> {
+			for (byte[] source : sources) {
+				Compiler.compile(ByteBuffer.wrap(source), new ErrorReporter(), 1, new SymbolTable());
+			}
+		});
+		harness.measure("batch.sharedTable", batchBytes, 0, () -> {
+			for (byte[] source : sources) {
+				Compiler.compile(ByteBuffer.wrap(source), new ErrorReporter(), 1, shared);
+			}
+		});
+		// A table that already holds many other names, as one shared for long does: what
+		// each file costs should not grow with it.
+		SymbolTable crowded = new SymbolTable();
+		for (int i = 0; i < CROWDED_NAMES; i++) {
+			crowded.intern("unrelated" + i);
+		}
+		harness.measure("batch.crowdedTable", batchBytes, 0, () -> {
+			for (byte[] source : sources) {
+				Compiler.compile(ByteBuffer.wrap(source), new ErrorReporter(), 1, crowded);
+			}
+		});
+	}
+
+	// Keeps every identifier's text and every file's tree, then measures the heap that
+	// releasing each frees. A null table scans with a table per file, and copy makes a
+	// String per identifier as the scanner did before symbols.
+	private static void retain(String mode, List<byte[]> sources, Supplier<SymbolTable> tables, boolean copy) {
+		List<String[]> names = new ArrayList<String[]>(sources.size());
+		for (byte[] source : sources) {
+			SymbolTable symbols = tables.get();
+			Scanner scanner = new Scanner(ByteBuffer.wrap(source), new ErrorReporter(),
+					symbols == null ? new SymbolTable() : symbols);
+			List<String> texts = new ArrayList<String>();
+			for (Token token = scanner.scan(); token.getTokenType() != TokenType.EOT; token = scanner.scan()) {
+				if (token.getTokenType() == TokenType.IDENTIFIER) {
+					texts.add(copy ? new String(token.getTokenText()) : token.getTokenText());
+				}
+			}
+			names.add(texts.toArray(new String[0]));
+		}
+		KEPT.add(names);
+
+		List<AST> trees = new ArrayList<AST>(sources.size());
+		for (byte[] source : sources) {
+			SymbolTable symbols = tables.get();
+			ErrorReporter errors = new ErrorReporter();
+			if (symbols == null) {
+				trees.add(Compiler.compile(ByteBuffer.wrap(source), errors, 1));
+			} else {
+				trees.add(Compiler.compile(ByteBuffer.wrap(source), errors, 1, symbols));
+			}
+		}
+		KEPT.add(trees);
+		names = null;
+		trees = null;
+
+		// Trees refer to the names' Strings, so they are released first.
+		long held = usedHeap();
+		KEPT.remove(1);
+		long namesHeld = usedHeap();
+		KEPT.clear();
+		long none = usedHeap();
+		System.out.printf("%-24s %14.2f %14.2f%n", mode, (namesHeld - none) / 1e6, (held - namesHeld) / 1e6);
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,328 @@
+package miniJava.Benchmarks;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import miniJava.AbstractSyntaxTrees.AST;
+import miniJava.AbstractSyntaxTrees.NodeKind;
+import miniJava.AbstractSyntaxTrees.BodyVisitor;
+import miniJava.ContextualAnalysis.Declarations;
+import miniJava.ContextualAnalysis.Declarations.ClassDecl;
+import miniJava.ContextualAnalysis.Declarations.FieldDecl;
+import miniJava.ContextualAnalysis.Declarations.MethodDecl;
+import miniJava.ContextualAnalysis.Resolver;
+import miniJava.SyntacticAnalyzer.TokenType;
+
+// Runs a resolved program by walking its method bodies, as the baseline that generated
+// code is measured against; declarations come from the resolver. Every value is boxed
+// and every array is an Object[]; a frame holds its locals by the slots the resolver
+// gave them.
+public class TreeInterpreter implements BodyVisitor<Object[], Object> {
+	private static final TokenType[] OPERATORS = TokenType.values();
+
+	private final Resolver _resolver;
+	private final AST _ast;
+	private final PrintStream _out;
+	private final Map<ClassDecl, Object[]> _statics = new IdentityHashMap<ClassDecl, Object[]>();
+	private boolean _returning;
+	private Object _result;
+
+	public TreeInterpreter(Resolver resolver, PrintStream out) {
+		this._resolver = resolver;
+		this._ast = resolver.getAst();
+		this._out = out;
+	}
+
+	public void run() {
+		Declarations declarations = _resolver.getDeclarations();
+		_statics.clear();
+		for (ClassDecl decl : declarations.getClasses()) {
+			Object[] fields = new Object[decl.getStaticFieldCount()];
+			for (FieldDecl field : decl.getFields()) {
+				if (field.isStatic()) {
+					fields[field.getIndex()] = defaultValue(field.getType());
+				}
+			}
+			_statics.put(decl, fields);
+		}
+		invoke(declarations.getMain(), null, new Object[] { new Object[0] });
+	}
+
+	private Object invoke(MethodDecl method, Instance self, Object[] arguments) {
+		Object[] frame = new Object[method.getLocalCount()];
+		int first = 0;
+		if (!method.isStatic()) {
+			frame[first++] = self;
+		}
+		System.arraycopy(arguments, 0, frame, first, arguments.length);
+		_ast.visit(method.getBody(), this, frame);
+		Object result = _result;
+		_returning = false;
+		_result = null;
+		if (result == null && !Declarations.VOID.equals(method.getReturnType())) {
+			result = defaultValue(method.getReturnType());
+		}
+		return result;
+	}
+
+	private static Object defaultValue(String type) {
+		if (Declarations.INT.equals(type)) {
+			return 0;
+		}
+		if (Declarations.BOOLEAN.equals(type)) {
+			return false;
+		}
+		return null;
+	}
+
+	@Override
+	public Object visitBlock(AST ast, int node, Object[] frame) {
+		for (int child = ast.getFirstChild(node); child != AST.NONE && !_returning; child = ast.getNextSibling(child)) {
+			ast.visit(child, this, frame);
+		}
+		return null;
+	}
+
+	@Override
+	public Object visitVarDecl(AST ast, int node, Object[] frame) {
+		int init = ast.getNextSibling(ast.getFirstChild(node));
+		frame[_resolver.getSlot(node)] = init == AST.NONE ? defaultValue(_resolver.getType(node))
+				: ast.visit(init, this, frame);
+		return null;
+	}
+
+	@Override
+	public Object visitAssign(AST ast, int node, Object[] frame) {
+		int target = ast.getFirstChild(node);
+		int value = ast.getNextSibling(target);
+		int first = ast.getFirstChild(target);
+		if (ast.getKind(target) == NodeKind.INDEX) {
+			Object[] array = (Object[]) ast.visit(first, this, frame);
+			int index = (Integer) ast.visit(ast.getNextSibling(first), this, frame);
+			array[index] = ast.visit(value, this, frame);
+			return null;
+		}
+		switch (_resolver.getBinding(target)) {
+			case Resolver.LOCAL:
+				frame[_resolver.getSlot(target)] = ast.visit(value, this, frame);
+				break;
+			case Resolver.FIELD:
+				Instance instance = (Instance) (ast.getKind(target) == NodeKind.IDENTIFIER ? frame[0]
+						: ast.visit(first, this, frame));
+				instance._fields[_resolver.getField(target).getIndex()] = ast.visit(value, this, frame);
+				break;
+			default:
+				discardTarget(target, frame);
+				FieldDecl field = _resolver.getField(target);
+				_statics.get(field.getOwner())[field.getIndex()] = ast.visit(value, this, frame);
+				break;
+		}
+		return null;
+	}
+
+	@Override
+	public Object visitCallStatement(AST ast, int node, Object[] frame) {
+		ast.visit(ast.getFirstChild(node), this, frame);
+		return null;
+	}
+
+	@Override
+	public Object visitIf(AST ast, int node, Object[] frame) {
+		int condition = ast.getFirstChild(node);
+		int then = ast.getNextSibling(condition);
+		if ((Boolean) ast.visit(condition, this, frame)) {
+			ast.visit(then, this, frame);
+		} else if (ast.getNextSibling(then) != AST.NONE) {
+			ast.visit(ast.getNextSibling(then), this, frame);
+		}
+		return null;
+	}
+
+	@Override
+	public Object visitWhile(AST ast, int node, Object[] frame) {
+		int condition = ast.getFirstChild(node);
+		int body = ast.getNextSibling(condition);
+		while (!_returning && (Boolean) ast.visit(condition, this, frame)) {
+			ast.visit(body, this, frame);
+		}
+		return null;
+	}
+
+	@Override
+	public Object visitReturn(AST ast, int node, Object[] frame) {
+		int value = ast.getFirstChild(node);
+		_result = value == AST.NONE ? null : ast.visit(value, this, frame);
+		_returning = true;
+		return null;
+	}
+
+	@Override
+	public Object visitBinary(AST ast, int node, Object[] frame) {
+		int left = ast.getFirstChild(node);
+		int right = ast.getNextSibling(left);
+		TokenType operator = OPERATORS[ast.getValue(node)];
+		if (operator == TokenType.AND) {
+			return (Boolean) ast.visit(left, this, frame) && (Boolean) ast.visit(right, this, frame);
+		}
+		if (operator == TokenType.OR) {
+			return (Boolean) ast.visit(left, this, frame) || (Boolean) ast.visit(right, this, frame);
+		}
+		Object a = ast.visit(left, this, frame);
+		Object b = ast.visit(right, this, frame);
+		switch (operator) {
+			case EQUAL_EQUAL:
+				return a instanceof Integer || a instanceof Boolean ? a.equals(b) : a == b;
+			case NOT_EQUAL:
+				return a instanceof Integer || a instanceof Boolean ? !a.equals(b) : a != b;
+			default:
+				break;
+		}
+		int x = (Integer) a;
+		int y = (Integer) b;
+		switch (operator) {
+			case PLUS:
+				return x + y;
+			case MINUS:
+				return x - y;
+			case TIMES:
+				return x * y;
+			case DIVIDE:
+				return x / y;
+			case SHIFT_LEFT:
+				return x << y;
+			case LESS:
+				return x < y;
+			case GREATER:
+				return x > y;
+			case LESS_EQUAL:
+				return x <= y;
+			case GREATER_EQUAL:
+				return x >= y;
+			default:
+				throw new IllegalStateException(operator.toString());
+		}
+	}
+
+	@Override
+	public Object visitUnary(AST ast, int node, Object[] frame) {
+		Object value = ast.visit(ast.getFirstChild(node), this, frame);
+		if (OPERATORS[ast.getValue(node)] == TokenType.NOT) {
+			return !(Boolean) value;
+		}
+		return -(Integer) value;
+	}
+
+	@Override
+	public Object visitLiteral(AST ast, int node, Object[] frame) {
+		if (ast.getKind(node) == NodeKind.BOOLEAN_LITERAL) {
+			return ast.getValue(node) != 0;
+		}
+		return ast.getValue(node);
+	}
+
+	@Override
+	public Object visitNewObject(AST ast, int node, Object[] frame) {
+		return new Instance(_resolver.getDeclarations().getClass(ast.getName(node)));
+	}
+
+	@Override
+	public Object visitNewArray(AST ast, int node, Object[] frame) {
+		int size = (Integer) ast.visit(ast.getNextSibling(ast.getFirstChild(node)), this, frame);
+		Object[] array = new Object[size];
+		Arrays.fill(array, defaultValue(_resolver.getType(node).substring(1)));
+		return array;
+	}
+
+	@Override
+	public Object visitThis(AST ast, int node, Object[] frame) {
+		return frame[0];
+	}
+
+	@Override
+	public Object visitIdentifier(AST ast, int node, Object[] frame) {
+		switch (_resolver.getBinding(node)) {
+			case Resolver.LOCAL:
+				return frame[_resolver.getSlot(node)];
+			case Resolver.FIELD:
+				return ((Instance) frame[0])._fields[_resolver.getField(node).getIndex()];
+			default:
+				FieldDecl field = _resolver.getField(node);
+				return _statics.get(field.getOwner())[field.getIndex()];
+		}
+	}
+
+	@Override
+	public Object visitFieldAccess(AST ast, int node, Object[] frame) {
+		int target = ast.getFirstChild(node);
+		switch (_resolver.getBinding(node)) {
+			case Resolver.LENGTH:
+				return ((Object[]) ast.visit(target, this, frame)).length;
+			case Resolver.FIELD:
+				return ((Instance) ast.visit(target, this, frame))._fields[_resolver.getField(node).getIndex()];
+			default:
+				discardTarget(node, frame);
+				FieldDecl field = _resolver.getField(node);
+				return _statics.get(field.getOwner())[field.getIndex()];
+		}
+	}
+
+	@Override
+	public Object visitIndex(AST ast, int node, Object[] frame) {
+		int array = ast.getFirstChild(node);
+		Object[] elements = (Object[]) ast.visit(array, this, frame);
+		return elements[(Integer) ast.visit(ast.getNextSibling(array), this, frame)];
+	}
+
+	@Override
+	public Object visitCall(AST ast, int node, Object[] frame) {
+		int callee = ast.getFirstChild(node);
+		if (_resolver.getBinding(node) == Resolver.PRINTLN) {
+			_out.println(ast.visit(ast.getNextSibling(callee), this, frame));
+			return null;
+		}
+
+		MethodDecl method = _resolver.getMethod(node);
+		Instance self = null;
+		if (method.isStatic()) {
+			discardTarget(callee, frame);
+		} else if (ast.getKind(callee) == NodeKind.IDENTIFIER) {
+			self = (Instance) frame[0];
+		} else {
+			self = (Instance) ast.visit(ast.getFirstChild(callee), this, frame);
+		}
+		Object[] arguments = new Object[method.getParameterTypes().length];
+		int count = 0;
+		for (int argument = ast.getNextSibling(callee); argument != AST.NONE; argument = ast.getNextSibling(argument)) {
+			arguments[count++] = ast.visit(argument, this, frame);
+		}
+		if (self == null && !method.isStatic()) {
+			throw new NullPointerException(method.getName());
+		}
+		return invoke(method, self, arguments);
+	}
+
+	private void discardTarget(int node, Object[] frame) {
+		if (_ast.getKind(node) != NodeKind.FIELD_ACCESS) {
+			return;
+		}
+		int target = _ast.getFirstChild(node);
+		if (_resolver.getBinding(target) != Resolver.CLASS) {
+			_ast.visit(target, this, frame);
+		}
+	}
+
+	private static final class Instance {
+		private final Object[] _fields;
+
+		Instance(ClassDecl decl) {
+			this._fields = new Object[decl.getInstanceFieldCount()];
+			for (FieldDecl field : decl.getFields()) {
+				if (!field.isStatic()) {
+					_fields[field.getIndex()] = defaultValue(field.getType());
+				}
+			}
+		}
+	}
+}
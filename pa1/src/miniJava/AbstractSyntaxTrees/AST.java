@@ -0,0 +1,366 @@
+package miniJava.AbstractSyntaxTrees;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// All nodes of one compilation live in parallel arrays and are referred to by index.
+// Children are a first-child/next-sibling chain in source order. Positions are source
+// offsets: of the member name for FIELD_ACCESS, of the first child for BINARY, INDEX and
+// CALL, and of the node's first token otherwise.
+//
+// The value slot depends on the kind: a name index for CLASS, FIELD, METHOD, PARAMETER,
+// CLASS_TYPE, VAR_DECL, NEW_OBJECT, IDENTIFIER and FIELD_ACCESS; the operator's
+// TokenType ordinal for BINARY and UNARY; the value for INT_LITERAL and BOOLEAN_LITERAL
+// (1 for true). Flags are only used on FIELD and METHOD.
+public class AST {
+	public static final int NONE = -1;
+
+	public static final int PUBLIC = 0x1;
+	public static final int PRIVATE = 0x2;
+	public static final int STATIC = 0x4;
+
+	private static final NodeKind[] KINDS = NodeKind.values();
+	private static final boolean[] NAMED = new boolean[KINDS.length];
+
+	static {
+		for (NodeKind kind : new NodeKind[] {
+			NodeKind.CLASS, NodeKind.FIELD, NodeKind.METHOD, NodeKind.PARAMETER, NodeKind.CLASS_TYPE,
+			NodeKind.VAR_DECL, NodeKind.NEW_OBJECT, NodeKind.IDENTIFIER, NodeKind.FIELD_ACCESS
+		}) {
+			NAMED[kind.ordinal()] = true;
+		}
+	}
+
+	private byte[] _kinds;
+	private byte[] _flags;
+	private int[] _positions;
+	private int[] _values;
+	private int[] _firstChildren;
+	private int[] _nextSiblings;
+	private int _size;
+	private int _root = NONE;
+
+	private String[] _names = new String[64];
+	private int _nameCount;
+	// Open addressing over name index + 1, so that names can be looked up straight
+	// from source bytes without building a String first.
+	private int[] _nameSlots = new int[128];
+
+	public AST(int capacity) {
+		capacity = Math.max(16, capacity);
+		this._kinds = new byte[capacity];
+		this._flags = new byte[capacity];
+		this._positions = new int[capacity];
+		this._values = new int[capacity];
+		this._firstChildren = new int[capacity];
+		this._nextSiblings = new int[capacity];
+	}
+
+	public int add(NodeKind kind, int position, int value) {
+		if (_size == _kinds.length) {
+			int capacity = _size * 2;
+			_kinds = Arrays.copyOf(_kinds, capacity);
+			_flags = Arrays.copyOf(_flags, capacity);
+			_positions = Arrays.copyOf(_positions, capacity);
+			_values = Arrays.copyOf(_values, capacity);
+			_firstChildren = Arrays.copyOf(_firstChildren, capacity);
+			_nextSiblings = Arrays.copyOf(_nextSiblings, capacity);
+		}
+		_kinds[_size] = (byte) kind.ordinal();
+		_positions[_size] = position;
+		_values[_size] = value;
+		_firstChildren[_size] = NONE;
+		_nextSiblings[_size] = NONE;
+		return _size++;
+	}
+
+	// Copies every node of other after this tree's own, as if they had been added here in
+	// the same order, and returns the index that other's first node now has. Names are
+	// interned here in other's order, so a tree built piecewise names them as one built
+	// in a single pass would.
+	public int append(AST other) {
+		int offset = _size;
+		int size = _size + other._size;
+		if (size > _kinds.length) {
+			int capacity = Math.max(size, _kinds.length * 2);
+			_kinds = Arrays.copyOf(_kinds, capacity);
+			_flags = Arrays.copyOf(_flags, capacity);
+			_positions = Arrays.copyOf(_positions, capacity);
+			_values = Arrays.copyOf(_values, capacity);
+			_firstChildren = Arrays.copyOf(_firstChildren, capacity);
+			_nextSiblings = Arrays.copyOf(_nextSiblings, capacity);
+		}
+
+		int[] names = new int[other._nameCount];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = intern(other._names[i]);
+		}
+
+		System.arraycopy(other._kinds, 0, _kinds, offset, other._size);
+		System.arraycopy(other._flags, 0, _flags, offset, other._size);
+		System.arraycopy(other._positions, 0, _positions, offset, other._size);
+		System.arraycopy(other._values, 0, _values, offset, other._size);
+		relink(other._firstChildren, _firstChildren, offset, other._size);
+		relink(other._nextSiblings, _nextSiblings, offset, other._size);
+		for (int i = offset; i < size; i++) {
+			int value = _values[i];
+			if (value != NONE && NAMED[_kinds[i]]) {
+				_values[i] = names[value];
+			}
+		}
+		_size = size;
+		return offset;
+	}
+
+	private static void relink(int[] from, int[] to, int offset, int count) {
+		for (int i = 0; i < count; i++) {
+			int node = from[i];
+			to[offset + i] = node == NONE ? NONE : node + offset;
+		}
+	}
+
+	public void setChildren(int node, int[] children, int from, int to) {
+		int previous = NONE;
+		for (int i = to - 1; i >= from; i--) {
+			_nextSiblings[children[i]] = previous;
+			previous = children[i];
+		}
+		_firstChildren[node] = previous;
+	}
+
+	public int intern(String name) {
+		int hash = 0;
+		for (int i = 0; i < name.length(); i++) {
+			hash = 31 * hash + name.charAt(i);
+		}
+		int mask = _nameSlots.length - 1;
+		for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+			int index = _nameSlots[slot] - 1;
+			if (index < 0) {
+				return addName(slot, name);
+			}
+			if (_names[index].equals(name)) {
+				return index;
+			}
+		}
+	}
+
+	// Identifiers are ASCII, so each byte is one char of the name. The scanner drops
+	// non-ASCII bytes from a token, and length counts only the bytes kept, so a name with
+	// one among its first length bytes runs on past start + length.
+	public int intern(ByteBuffer source, int start, int length) {
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			byte b = source.get(start + i);
+			if (b < 0) {
+				return intern(asciiText(source, start, length));
+			}
+			hash = 31 * hash + b;
+		}
+		int mask = _nameSlots.length - 1;
+		for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+			int index = _nameSlots[slot] - 1;
+			if (index < 0) {
+				char[] text = new char[length];
+				for (int i = 0; i < length; i++) {
+					text[i] = (char) source.get(start + i);
+				}
+				return addName(slot, new String(text));
+			}
+			if (matches(_names[index], source, start, length)) {
+				return index;
+			}
+		}
+	}
+
+	// The first length ASCII bytes from start.
+	private static String asciiText(ByteBuffer source, int start, int length) {
+		char[] text = new char[length];
+		for (int i = 0, at = start; i < length; at++) {
+			byte b = source.get(at);
+			if (b >= 0) {
+				text[i++] = (char) b;
+			}
+		}
+		return new String(text);
+	}
+
+	private static boolean matches(String name, ByteBuffer source, int start, int length) {
+		if (name.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (name.charAt(i) != source.get(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int addName(int slot, String name) {
+		if (_nameCount == _names.length) {
+			_names = Arrays.copyOf(_names, _nameCount * 2);
+		}
+		_names[_nameCount] = name;
+		_nameSlots[slot] = _nameCount + 1;
+		if (++_nameCount * 2 > _nameSlots.length) {
+			rehash();
+		}
+		return _nameCount - 1;
+	}
+
+	private void rehash() {
+		_nameSlots = new int[_nameSlots.length * 2];
+		int mask = _nameSlots.length - 1;
+		for (int index = 0; index < _nameCount; index++) {
+			int slot = mix(_names[index].hashCode()) & mask;
+			while (_nameSlots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			_nameSlots[slot] = index + 1;
+		}
+	}
+
+	private static int mix(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public int getNameCount() {
+		return _nameCount;
+	}
+
+	public int getRoot() {
+		return _root;
+	}
+
+	public void setRoot(int node) {
+		this._root = node;
+	}
+
+	public NodeKind getKind(int node) {
+		return KINDS[_kinds[node]];
+	}
+
+	public void setKind(int node, NodeKind kind) {
+		_kinds[node] = (byte) kind.ordinal();
+	}
+
+	public int getFlags(int node) {
+		return _flags[node];
+	}
+
+	public void setFlags(int node, int flags) {
+		_flags[node] = (byte) flags;
+	}
+
+	public int getPosition(int node) {
+		return _positions[node];
+	}
+
+	public int getValue(int node) {
+		return _values[node];
+	}
+
+	public void setValue(int node, int value) {
+		_values[node] = value;
+	}
+
+	public String getName(int node) {
+		int value = _values[node];
+		return value == NONE ? null : _names[value];
+	}
+
+	public int getFirstChild(int node) {
+		return _firstChildren[node];
+	}
+
+	public int getNextSibling(int node) {
+		return _nextSiblings[node];
+	}
+
+	public int getChild(int node, int index) {
+		int child = _firstChildren[node];
+		while (index-- > 0 && child != NONE) {
+			child = _nextSiblings[child];
+		}
+		return child;
+	}
+
+	public int getChildCount(int node) {
+		int count = 0;
+		for (int child = _firstChildren[node]; child != NONE; child = _nextSiblings[child]) {
+			count++;
+		}
+		return count;
+	}
+
+	public <A, R> R visit(int node, Visitor<A, R> visitor, A arg) {
+		switch (getKind(node)) {
+			case PROGRAM:
+				return visitor.visitProgram(this, node, arg);
+			case CLASS:
+				return visitor.visitClass(this, node, arg);
+			case FIELD:
+				return visitor.visitField(this, node, arg);
+			case METHOD:
+				return visitor.visitMethod(this, node, arg);
+			case PARAMETER:
+				return visitor.visitParameter(this, node, arg);
+			case VOID_TYPE:
+			case INT_TYPE:
+			case BOOLEAN_TYPE:
+			case CLASS_TYPE:
+			case ARRAY_TYPE:
+				return visitor.visitType(this, node, arg);
+			default:
+				return visit(node, (BodyVisitor<A, R>) visitor, arg);
+		}
+	}
+
+	// Throws IllegalArgumentException for a declaration or type node.
+	public <A, R> R visit(int node, BodyVisitor<A, R> visitor, A arg) {
+		switch (getKind(node)) {
+			case BLOCK:
+				return visitor.visitBlock(this, node, arg);
+			case VAR_DECL:
+				return visitor.visitVarDecl(this, node, arg);
+			case ASSIGN:
+				return visitor.visitAssign(this, node, arg);
+			case CALL_STATEMENT:
+				return visitor.visitCallStatement(this, node, arg);
+			case IF:
+				return visitor.visitIf(this, node, arg);
+			case WHILE:
+				return visitor.visitWhile(this, node, arg);
+			case RETURN:
+				return visitor.visitReturn(this, node, arg);
+			case BINARY:
+				return visitor.visitBinary(this, node, arg);
+			case UNARY:
+				return visitor.visitUnary(this, node, arg);
+			case INT_LITERAL:
+			case BOOLEAN_LITERAL:
+				return visitor.visitLiteral(this, node, arg);
+			case NEW_OBJECT:
+				return visitor.visitNewObject(this, node, arg);
+			case NEW_ARRAY:
+				return visitor.visitNewArray(this, node, arg);
+			case THIS:
+				return visitor.visitThis(this, node, arg);
+			case IDENTIFIER:
+				return visitor.visitIdentifier(this, node, arg);
+			case FIELD_ACCESS:
+				return visitor.visitFieldAccess(this, node, arg);
+			case INDEX:
+				return visitor.visitIndex(this, node, arg);
+			case CALL:
+				return visitor.visitCall(this, node, arg);
+			default:
+				throw new IllegalArgumentException(getKind(node) + " is not a statement or expression");
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package miniJava.AbstractSyntaxTrees;
+
+// Visits statements and expressions, for walks that start inside a method body and
+// never meet a declaration or type node.
+public interface BodyVisitor<A, R> {
+	R visitBlock(AST ast, int node, A arg);
+
+	R visitVarDecl(AST ast, int node, A arg);
+
+	R visitAssign(AST ast, int node, A arg);
+
+	R visitCallStatement(AST ast, int node, A arg);
+
+	R visitIf(AST ast, int node, A arg);
+
+	R visitWhile(AST ast, int node, A arg);
+
+	R visitReturn(AST ast, int node, A arg);
+
+	R visitBinary(AST ast, int node, A arg);
+
+	R visitUnary(AST ast, int node, A arg);
+
+	R visitLiteral(AST ast, int node, A arg);
+
+	R visitNewObject(AST ast, int node, A arg);
+
+	R visitNewArray(AST ast, int node, A arg);
+
+	R visitThis(AST ast, int node, A arg);
+
+	R visitIdentifier(AST ast, int node, A arg);
+
+	R visitFieldAccess(AST ast, int node, A arg);
+
+	R visitIndex(AST ast, int node, A arg);
+
+	R visitCall(AST ast, int node, A arg);
+}
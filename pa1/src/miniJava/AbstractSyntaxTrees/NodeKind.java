@@ -0,0 +1,16 @@
+package miniJava.AbstractSyntaxTrees;
+
+public enum NodeKind {
+	// Declarations
+	PROGRAM, CLASS, FIELD, METHOD, PARAMETER,
+
+	// Types
+	VOID_TYPE, INT_TYPE, BOOLEAN_TYPE, CLASS_TYPE, ARRAY_TYPE,
+
+	// Statements
+	BLOCK, VAR_DECL, ASSIGN, CALL_STATEMENT, IF, WHILE, RETURN,
+
+	// Expressions and references
+	BINARY, UNARY, INT_LITERAL, BOOLEAN_LITERAL, NEW_OBJECT, NEW_ARRAY, THIS, IDENTIFIER, FIELD_ACCESS, INDEX,
+	CALL
+}
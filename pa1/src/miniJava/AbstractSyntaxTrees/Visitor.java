@@ -0,0 +1,16 @@
+package miniJava.AbstractSyntaxTrees;
+
+// Visits every kind of node, declarations and types as well as method bodies.
+public interface Visitor<A, R> extends BodyVisitor<A, R> {
+	R visitProgram(AST ast, int node, A arg);
+
+	R visitClass(AST ast, int node, A arg);
+
+	R visitField(AST ast, int node, A arg);
+
+	R visitMethod(AST ast, int node, A arg);
+
+	R visitParameter(AST ast, int node, A arg);
+
+	R visitType(AST ast, int node, A arg);
+}
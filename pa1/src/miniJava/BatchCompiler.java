@@ -0,0 +1,183 @@
+package miniJava;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import miniJava.CompileStats.Phase;
+import miniJava.SyntacticAnalyzer.SourceFile;
+import miniJava.SyntacticAnalyzer.SymbolTable;
+
+public class BatchCompiler {
+	private static final String SOURCE_EXTENSION = ".java";
+	private static final int SLOWEST_SHOWN = 5;
+
+	private BatchCompiler() {
+	}
+
+	public static int run(List<String> inputs, int maxErrors) {
+		return run(inputs, maxErrors, null);
+	}
+
+	public static int run(List<String> inputs, int maxErrors, ParseCache cache) {
+		return run(inputs, maxErrors, cache, false);
+	}
+
+	public static int run(List<String> inputs, int maxErrors, ParseCache cache, boolean showStats) {
+		List<String> files = new ArrayList<String>();
+		for (String input : inputs) {
+			Path path = Path.of(input);
+			if (Files.isDirectory(path)) {
+				try (Stream<Path> walk = Files.walk(path)) {
+					files.addAll(walk
+							.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(SOURCE_EXTENSION))
+							.map(Path::toString)
+							.sorted()
+							.collect(Collectors.toList()));
+				} catch (IOException e) {
+					System.out.println("cannot read directory " + input);
+					return 1;
+				}
+			} else {
+				files.add(input);
+			}
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		// Files of one batch mostly use the same names, so they share their symbols.
+		SymbolTable symbols = new SymbolTable();
+		List<Future<Result>> results = new ArrayList<Future<Result>>(files.size());
+		for (String file : files) {
+			results.add(pool.submit(() -> compileFile(file, maxErrors, cache, showStats, symbols)));
+		}
+
+		int failed = 0;
+		CompileStats total = null;
+		long[] latencies = new long[files.size()];
+		// Files whose compile threw have no latency and are left out of the percentiles.
+		List<Integer> timed = new ArrayList<Integer>(files.size());
+		try {
+			for (int i = 0; i < results.size(); i++) {
+				Result r;
+				try {
+					r = results.get(i).get();
+				} catch (ExecutionException e) {
+					// One file failing to compile does not stop the others.
+					System.out.println(files.get(i) + ": compilation failed: " + e.getCause());
+					failed++;
+					continue;
+				}
+				System.out.print(r.output);
+				if (!r.success) {
+					failed++;
+				}
+				latencies[i] = r.nanos;
+				timed.add(i);
+				if (total == null) {
+					total = r.stats;
+				} else {
+					total.add(r.stats);
+				}
+			}
+		} catch (InterruptedException e) {
+			System.out.println("batch compilation aborted: " + e);
+			return 1;
+		} finally {
+			pool.shutdownNow();
+		}
+
+		if (showStats && total != null) {
+			total.print(System.err);
+			printLatencies(files, latencies, timed);
+		}
+		return failed == 0 ? 0 : 1;
+	}
+
+	// Latencies use the nearest-rank percentile over per-file wall time, of the files
+	// indexed by timed.
+	private static void printLatencies(List<String> files, long[] latencies, List<Integer> timed) {
+		Integer[] order = timed.toArray(new Integer[0]);
+		Arrays.sort(order, (a, b) -> Long.compare(latencies[a], latencies[b]));
+		System.err.printf("latency ms: p50 %.3f, p90 %.3f, p99 %.3f, max %.3f%n",
+				percentile(latencies, order, 50), percentile(latencies, order, 90),
+				percentile(latencies, order, 99), percentile(latencies, order, 100));
+		for (int i = order.length - 1; i >= Math.max(0, order.length - SLOWEST_SHOWN); i--) {
+			System.err.printf("  %10.3f ms  %s%n", latencies[order[i]] / 1e6, files.get(order[i]));
+		}
+	}
+
+	private static double percentile(long[] latencies, Integer[] order, int percent) {
+		int rank = (int) Math.ceil(percent / 100.0 * order.length);
+		return latencies[order[Math.max(rank, 1) - 1]] / 1e6;
+	}
+
+	private static Result compileFile(String filePath, int maxErrors, ParseCache cache, boolean showStats,
+			SymbolTable symbols) {
+		long start = System.nanoTime();
+		StringWriter buffer = new StringWriter();
+		PrintWriter out = new PrintWriter(buffer);
+		ErrorReporter errorReporter = new ErrorReporter();
+		CompileStats stats = new CompileStats(filePath, showStats);
+		ByteBuffer source;
+
+		stats.begin(Phase.READ);
+		try {
+			source = SourceFile.read(filePath);
+		} catch (IOException e) {
+			out.println(filePath + ": file not found");
+			out.flush();
+			stats.end();
+			return new Result(buffer.toString(), false, stats, System.nanoTime() - start);
+		}
+		stats.setBytes(source.remaining());
+		stats.end();
+
+		if (cache != null) {
+			stats.begin(Phase.PARSE);
+			cache.compile(source, errorReporter, maxErrors);
+			stats.setErrors(errorReporter.getErrorCount());
+			stats.end();
+		} else if (stats.isEnabled()) {
+			Compiler.compile(source, errorReporter, maxErrors, stats);
+		} else {
+			Compiler.compile(source, errorReporter, maxErrors, symbols);
+		}
+
+		stats.begin(Phase.REPORT);
+		if (errorReporter.hasErrors()) {
+			out.println(filePath + ": Error");
+			errorReporter.outputErrors(out);
+		} else {
+			out.println(filePath + ": Success");
+		}
+		out.flush();
+		stats.end();
+		return new Result(buffer.toString(), !errorReporter.hasErrors(), stats, System.nanoTime() - start);
+	}
+
+	private static class Result {
+		private final String output;
+		private final boolean success;
+		private final CompileStats stats;
+		private final long nanos;
+
+		Result(String output, boolean success, CompileStats stats, long nanos) {
+			this.output = output;
+			this.success = success;
+			this.stats = stats;
+			this.nanos = nanos;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package miniJava.CodeGenerator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Writes one class file: a constant pool built up as entries are asked for, then the
+// fields and methods in the order they were added. Only what the code generator needs
+// is supported, so there are no interfaces and no attributes beyond Code.
+//
+// Version 49 is the last that HotSpot verifies by type inference, without the stack map
+// frames that later versions require of every branch target.
+final class ClassFileWriter {
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_PRIVATE = 0x0002;
+	static final int ACC_STATIC = 0x0008;
+	static final int ACC_SUPER = 0x0020;
+
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final int MAJOR_VERSION = 49;
+	private static final int MAX_POOL_ENTRIES = 0xFFFF;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	private final Bytes _pool = new Bytes();
+	private final Map<String, Integer> _entries = new HashMap<String, Integer>();
+	private int _poolCount = 1;
+	private final Bytes _fields = new Bytes();
+	private int _fieldCount;
+	private final Bytes _methods = new Bytes();
+	private int _methodCount;
+	private final int _thisClass;
+	private final int _superClass;
+	private final int _code;
+
+	ClassFileWriter(String name, String superName) {
+		this._thisClass = classRef(name);
+		this._superClass = classRef(superName);
+		this._code = utf8("Code");
+	}
+
+	int utf8(String value) {
+		Integer index = _entries.get("U" + value);
+		if (index != null) {
+			return index;
+		}
+		// Names in miniJava are ASCII, for which modified UTF-8 is the same bytes.
+		_pool.u1(CONSTANT_UTF8);
+		_pool.u2(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			_pool.u1(value.charAt(i));
+		}
+		return add("U" + value);
+	}
+
+	int integer(int value) {
+		Integer index = _entries.get("I" + value);
+		if (index != null) {
+			return index;
+		}
+		_pool.u1(CONSTANT_INTEGER);
+		_pool.u4(value);
+		return add("I" + value);
+	}
+
+	int classRef(String name) {
+		Integer index = _entries.get("C" + name);
+		if (index != null) {
+			return index;
+		}
+		int utf8 = utf8(name);
+		_pool.u1(CONSTANT_CLASS);
+		_pool.u2(utf8);
+		return add("C" + name);
+	}
+
+	int fieldRef(String owner, String name, String descriptor) {
+		return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+	}
+
+	int methodRef(String owner, String name, String descriptor) {
+		return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+	}
+
+	private int memberRef(int tag, String owner, String name, String descriptor) {
+		String key = tag + owner + "." + name + ":" + descriptor;
+		Integer index = _entries.get(key);
+		if (index != null) {
+			return index;
+		}
+		int classIndex = classRef(owner);
+		int nameAndType = nameAndType(name, descriptor);
+		_pool.u1(tag);
+		_pool.u2(classIndex);
+		_pool.u2(nameAndType);
+		return add(key);
+	}
+
+	private int nameAndType(String name, String descriptor) {
+		String key = "N" + name + ":" + descriptor;
+		Integer index = _entries.get(key);
+		if (index != null) {
+			return index;
+		}
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		_pool.u1(CONSTANT_NAME_AND_TYPE);
+		_pool.u2(nameIndex);
+		_pool.u2(descriptorIndex);
+		return add(key);
+	}
+
+	private int add(String key) {
+		if (_poolCount == MAX_POOL_ENTRIES) {
+			throw new IllegalStateException("constant pool is full");
+		}
+		_entries.put(key, _poolCount);
+		return _poolCount++;
+	}
+
+	void addField(int flags, String name, String descriptor) {
+		_fields.u2(flags);
+		_fields.u2(utf8(name));
+		_fields.u2(utf8(descriptor));
+		_fields.u2(0);
+		_fieldCount++;
+	}
+
+	void addMethod(int flags, String name, String descriptor, CodeBuffer code, int maxLocals) {
+		_methods.u2(flags);
+		_methods.u2(utf8(name));
+		_methods.u2(utf8(descriptor));
+		_methods.u2(1);
+		_methods.u2(_code);
+		_methods.u4(12 + code.size());
+		_methods.u2(code.getMaxStack());
+		_methods.u2(maxLocals);
+		_methods.u4(code.size());
+		code.copyTo(_methods);
+		// No exception table and no attributes of the code.
+		_methods.u2(0);
+		_methods.u2(0);
+		_methodCount++;
+	}
+
+	byte[] toByteArray() {
+		Bytes out = new Bytes();
+		out.u4(MAGIC);
+		out.u2(0);
+		out.u2(MAJOR_VERSION);
+		out.u2(_poolCount);
+		_pool.copyTo(out);
+		out.u2(ACC_PUBLIC | ACC_SUPER);
+		out.u2(_thisClass);
+		out.u2(_superClass);
+		out.u2(0);
+		out.u2(_fieldCount);
+		_fields.copyTo(out);
+		out.u2(_methodCount);
+		_methods.copyTo(out);
+		out.u2(0);
+		return out.toByteArray();
+	}
+
+	// A growable big-endian byte array, as class files are written.
+	static final class Bytes {
+		private byte[] _bytes = new byte[256];
+		private int _size;
+
+		void u1(int value) {
+			if (_size == _bytes.length) {
+				_bytes = Arrays.copyOf(_bytes, _size * 2);
+			}
+			_bytes[_size++] = (byte) value;
+		}
+
+		void u2(int value) {
+			u1(value >>> 8);
+			u1(value);
+		}
+
+		void u4(int value) {
+			u2(value >>> 16);
+			u2(value);
+		}
+
+		int size() {
+			return _size;
+		}
+
+		// Overwrites two bytes already written, for branch offsets known only later.
+		void set2(int at, int value) {
+			_bytes[at] = (byte) (value >>> 8);
+			_bytes[at + 1] = (byte) value;
+		}
+
+		void copyTo(Bytes out) {
+			if (out._size + _size > out._bytes.length) {
+				out._bytes = Arrays.copyOf(out._bytes, Math.max(out._size + _size, out._bytes.length * 2));
+			}
+			System.arraycopy(_bytes, 0, out._bytes, out._size, _size);
+			out._size += _size;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(_bytes, _size);
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package miniJava.CodeGenerator;
+
+import java.util.Arrays;
+
+import miniJava.CodeGenerator.ClassFileWriter.Bytes;
+
+// The code of one method. Every instruction is emitted with its effect on the operand
+// stack, so that the deepest the stack gets is known when the method is done. After an
+// unconditional jump the stack is whatever the next label placed was jumped to with.
+final class CodeBuffer {
+	static final int ACONST_NULL = 1;
+	static final int ICONST_0 = 3;
+	static final int BIPUSH = 16;
+	static final int SIPUSH = 17;
+	static final int LDC = 18;
+	static final int LDC_W = 19;
+	static final int ILOAD = 21;
+	static final int ALOAD = 25;
+	static final int IALOAD = 46;
+	static final int AALOAD = 50;
+	static final int ISTORE = 54;
+	static final int ASTORE = 58;
+	static final int IASTORE = 79;
+	static final int AASTORE = 83;
+	static final int POP = 87;
+	static final int DUP = 89;
+	static final int IADD = 96;
+	static final int ISUB = 100;
+	static final int IMUL = 104;
+	static final int IDIV = 108;
+	static final int INEG = 116;
+	static final int ISHL = 120;
+	static final int IXOR = 130;
+	static final int IFEQ = 153;
+	static final int IFNE = 154;
+	static final int IF_ICMPEQ = 159;
+	static final int IF_ICMPNE = 160;
+	static final int IF_ICMPLT = 161;
+	static final int IF_ICMPGE = 162;
+	static final int IF_ICMPGT = 163;
+	static final int IF_ICMPLE = 164;
+	static final int IF_ACMPEQ = 165;
+	static final int IF_ACMPNE = 166;
+	static final int GOTO = 167;
+	static final int IRETURN = 172;
+	static final int ARETURN = 176;
+	static final int RETURN = 177;
+	static final int GETSTATIC = 178;
+	static final int PUTSTATIC = 179;
+	static final int GETFIELD = 180;
+	static final int PUTFIELD = 181;
+	static final int INVOKEVIRTUAL = 182;
+	static final int INVOKESPECIAL = 183;
+	static final int INVOKESTATIC = 184;
+	static final int NEW = 187;
+	static final int NEWARRAY = 188;
+	static final int ANEWARRAY = 189;
+	static final int ARRAYLENGTH = 190;
+	static final int WIDE = 196;
+
+	static final int T_INT = 10;
+
+	private static final int MAX_CODE = 0xFFFF;
+
+	private final Bytes _code = new Bytes();
+	private int _stack;
+	private int _maxStack;
+	private boolean _reachable = true;
+	private boolean _tooLarge;
+
+	void op(int opcode, int stackEffect) {
+		_code.u1(opcode);
+		adjust(stackEffect);
+		if (opcode == GOTO || opcode >= IRETURN && opcode <= RETURN) {
+			_reachable = false;
+		}
+	}
+
+	void op1(int opcode, int operand, int stackEffect) {
+		op(opcode, stackEffect);
+		_code.u1(operand);
+	}
+
+	void op2(int opcode, int operand, int stackEffect) {
+		op(opcode, stackEffect);
+		_code.u2(operand);
+	}
+
+	// Loads or stores a local with the shortest encoding: the one-byte forms for slots 0
+	// to 3, wide for slots past 255.
+	void local(int opcode, int slot) {
+		int stackEffect = opcode == ILOAD || opcode == ALOAD ? 1 : -1;
+		if (slot <= 3) {
+			int base = opcode == ILOAD ? 26 : opcode == ALOAD ? 42 : opcode == ISTORE ? 59 : 75;
+			op(base + slot, stackEffect);
+		} else if (slot <= 0xFF) {
+			op1(opcode, slot, stackEffect);
+		} else {
+			op(WIDE, 0);
+			op2(opcode, slot, stackEffect);
+		}
+	}
+
+	void pushInt(int value, ClassFileWriter pool) {
+		if (value >= -1 && value <= 5) {
+			op(ICONST_0 + value, 1);
+		} else if (value == (byte) value) {
+			op1(BIPUSH, value, 1);
+		} else if (value == (short) value) {
+			op2(SIPUSH, value, 1);
+		} else {
+			int index = pool.integer(value);
+			if (index <= 0xFF) {
+				op1(LDC, index, 1);
+			} else {
+				op2(LDC_W, index, 1);
+			}
+		}
+	}
+
+	// Conditional jumps pop their operands before jumping.
+	void jump(int opcode, Label target, int stackEffect) {
+		int at = _code.size();
+		op2(opcode, 0, stackEffect);
+		target.jumpFrom(at, _stack);
+		if (target._position >= 0) {
+			patch(at, target._position);
+		}
+	}
+
+	void place(Label label) {
+		label._position = _code.size();
+		for (int i = 0; i < label._jumpCount; i++) {
+			patch(label._jumps[i], label._position);
+		}
+		if (label._stack >= 0) {
+			_stack = label._stack;
+			_reachable = true;
+		}
+	}
+
+	private void patch(int at, int target) {
+		int offset = target - at;
+		if (offset != (short) offset) {
+			_tooLarge = true;
+			return;
+		}
+		_code.set2(at + 1, offset);
+	}
+
+	private void adjust(int stackEffect) {
+		_stack += stackEffect;
+		_maxStack = Math.max(_maxStack, _stack);
+	}
+
+	boolean isReachable() {
+		return _reachable;
+	}
+
+	boolean isTooLarge() {
+		return _tooLarge || _code.size() > MAX_CODE;
+	}
+
+	int getMaxStack() {
+		return _maxStack;
+	}
+
+	int size() {
+		return _code.size();
+	}
+
+	void copyTo(Bytes out) {
+		_code.copyTo(out);
+	}
+
+	// A jump target, placed before or after the jumps to it.
+	static final class Label {
+		private int _position = -1;
+		private int _stack = -1;
+		private int[] _jumps = new int[2];
+		private int _jumpCount;
+
+		private void jumpFrom(int at, int stack) {
+			_stack = stack;
+			if (_jumpCount == _jumps.length) {
+				_jumps = Arrays.copyOf(_jumps, _jumpCount * 2);
+			}
+			_jumps[_jumpCount++] = at;
+		}
+	}
+}
@@ -0,0 +1,478 @@
+package miniJava.CodeGenerator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import miniJava.ErrorCode;
+import miniJava.ErrorReporter;
+import miniJava.AbstractSyntaxTrees.AST;
+import miniJava.AbstractSyntaxTrees.NodeKind;
+import miniJava.CodeGenerator.CodeBuffer.Label;
+import miniJava.ContextualAnalysis.Declarations;
+import miniJava.ContextualAnalysis.Declarations.ClassDecl;
+import miniJava.ContextualAnalysis.Declarations.FieldDecl;
+import miniJava.ContextualAnalysis.Declarations.MethodDecl;
+import miniJava.ContextualAnalysis.Resolver;
+import miniJava.SyntacticAnalyzer.LineIndex;
+import miniJava.SyntacticAnalyzer.TokenType;
+
+// Compiles a resolved program to one class file per class, each extending Object with a
+// default constructor. Members keep their names and access, so the classes can be run
+// and called like any other; && and || short-circuit as in Java.
+//
+// Conditions compile to jumps rather than to a boolean that is then tested, and a
+// comparison is only turned into 0 or 1 where its value is stored or passed.
+public class CodeGenerator {
+	private static final TokenType[] OPERATORS = TokenType.values();
+	private static final String OBJECT = "java/lang/Object";
+
+	private final AST _ast;
+	private final Resolver _resolver;
+	private final ErrorReporter _errors;
+	private final LineIndex _lines;
+
+	private ClassFileWriter _class;
+	private CodeBuffer _code;
+
+	public CodeGenerator(Resolver resolver, ErrorReporter errors, LineIndex lines) {
+		this._ast = resolver.getAst();
+		this._resolver = resolver;
+		this._errors = errors;
+		this._lines = lines;
+	}
+
+	// Class files by class name, in declaration order, or null if a class could not be
+	// written.
+	public Map<String, byte[]> generate() {
+		int reported = _errors.getErrorCount();
+		Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+		for (ClassDecl decl : _resolver.getDeclarations().getClasses()) {
+			try {
+				classes.put(decl.getName(), generate(decl));
+			} catch (IllegalStateException e) {
+				report(ErrorCode.CODE_TOO_LARGE, decl.getNode(), decl.getName());
+			}
+		}
+		return _errors.getErrorCount() == reported ? classes : null;
+	}
+
+	private byte[] generate(ClassDecl decl) {
+		_class = new ClassFileWriter(decl.getName(), OBJECT);
+		for (FieldDecl field : decl.getFields()) {
+			_class.addField(access(field.getFlags()), field.getName(), field.getType());
+		}
+
+		_code = new CodeBuffer();
+		_code.local(CodeBuffer.ALOAD, 0);
+		_code.op2(CodeBuffer.INVOKESPECIAL, _class.methodRef(OBJECT, "<init>", "()V"), -1);
+		_code.op(CodeBuffer.RETURN, 0);
+		_class.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", _code, 1);
+
+		for (MethodDecl method : decl.getMethods()) {
+			generate(method);
+		}
+		return _class.toByteArray();
+	}
+
+	private void generate(MethodDecl method) {
+		_code = new CodeBuffer();
+		try {
+			statement(method.getBody());
+		} catch (StackOverflowError e) {
+			report(ErrorCode.UNSUPPORTED, method.getNode(), "nesting too deep in " + method.getName());
+			return;
+		}
+		// The resolver does not require a non-void method to end in a return, so one
+		// that runs off its end returns the default value.
+		if (_code.isReachable()) {
+			String type = method.getReturnType();
+			if (Declarations.VOID.equals(type)) {
+				_code.op(CodeBuffer.RETURN, 0);
+			} else if (isInt(type)) {
+				_code.op(CodeBuffer.ICONST_0, 1);
+				_code.op(CodeBuffer.IRETURN, -1);
+			} else {
+				_code.op(CodeBuffer.ACONST_NULL, 1);
+				_code.op(CodeBuffer.ARETURN, -1);
+			}
+		}
+		if (_code.isTooLarge()) {
+			report(ErrorCode.CODE_TOO_LARGE, method.getNode(), method.getName());
+			return;
+		}
+		_class.addMethod(access(method.getFlags()), method.getName(), method.getDescriptor(), _code,
+				method.getLocalCount());
+	}
+
+	private void statement(int node) {
+		int first = _ast.getFirstChild(node);
+		switch (_ast.getKind(node)) {
+			case BLOCK:
+				for (int child = first; child != AST.NONE; child = _ast.getNextSibling(child)) {
+					statement(child);
+				}
+				break;
+			case VAR_DECL:
+				int init = _ast.getNextSibling(first);
+				if (init != AST.NONE) {
+					value(init);
+				} else {
+					_code.op(isInt(_resolver.getType(node)) ? CodeBuffer.ICONST_0 : CodeBuffer.ACONST_NULL, 1);
+				}
+				_code.local(isInt(_resolver.getType(node)) ? CodeBuffer.ISTORE : CodeBuffer.ASTORE,
+						_resolver.getSlot(node));
+				break;
+			case ASSIGN:
+				assign(first, _ast.getNextSibling(first));
+				break;
+			case CALL_STATEMENT:
+				value(first);
+				String type = _resolver.getType(first);
+				if (type != null && !Declarations.VOID.equals(type)) {
+					_code.op(CodeBuffer.POP, -1);
+				}
+				break;
+			case IF:
+				Label otherwise = new Label();
+				condition(first, otherwise, false);
+				int then = _ast.getNextSibling(first);
+				statement(then);
+				int alternative = _ast.getNextSibling(then);
+				if (alternative == AST.NONE) {
+					_code.place(otherwise);
+				} else {
+					Label end = new Label();
+					_code.jump(CodeBuffer.GOTO, end, 0);
+					_code.place(otherwise);
+					statement(alternative);
+					_code.place(end);
+				}
+				break;
+			case WHILE:
+				// The test is at the bottom, so each iteration takes one jump.
+				Label body = new Label();
+				Label test = new Label();
+				_code.jump(CodeBuffer.GOTO, test, 0);
+				_code.place(body);
+				statement(_ast.getNextSibling(first));
+				_code.place(test);
+				condition(first, body, true);
+				break;
+			case RETURN:
+				if (first == AST.NONE) {
+					_code.op(CodeBuffer.RETURN, 0);
+				} else {
+					value(first);
+					_code.op(isInt(_resolver.getType(first)) ? CodeBuffer.IRETURN : CodeBuffer.ARETURN, -1);
+				}
+				break;
+			default:
+				throw new IllegalArgumentException(_ast.getKind(node).toString());
+		}
+	}
+
+	private void assign(int target, int value) {
+		int first = _ast.getFirstChild(target);
+		if (_ast.getKind(target) == NodeKind.INDEX) {
+			value(first);
+			value(_ast.getNextSibling(first));
+			value(value);
+			_code.op(isInt(_resolver.getType(target)) ? CodeBuffer.IASTORE : CodeBuffer.AASTORE, -3);
+			return;
+		}
+
+		switch (_resolver.getBinding(target)) {
+			case Resolver.LOCAL:
+				value(value);
+				_code.local(isInt(_resolver.getType(target)) ? CodeBuffer.ISTORE : CodeBuffer.ASTORE,
+						_resolver.getSlot(target));
+				break;
+			case Resolver.FIELD:
+				if (_ast.getKind(target) == NodeKind.IDENTIFIER) {
+					_code.local(CodeBuffer.ALOAD, 0);
+				} else {
+					value(first);
+				}
+				value(value);
+				_code.op2(CodeBuffer.PUTFIELD, fieldRef(_resolver.getField(target)), -2);
+				break;
+			default:
+				discardTarget(target);
+				value(value);
+				_code.op2(CodeBuffer.PUTSTATIC, fieldRef(_resolver.getField(target)), -1);
+				break;
+		}
+	}
+
+	// Jumps to target if the condition is jumpIf, and falls through otherwise.
+	private void condition(int node, Label target, boolean jumpIf) {
+		int first = _ast.getFirstChild(node);
+		switch (_ast.getKind(node)) {
+			case BOOLEAN_LITERAL:
+				if ((_ast.getValue(node) != 0) == jumpIf) {
+					_code.jump(CodeBuffer.GOTO, target, 0);
+				}
+				return;
+			case UNARY:
+				condition(first, target, !jumpIf);
+				return;
+			case BINARY:
+				break;
+			default:
+				value(node);
+				_code.jump(jumpIf ? CodeBuffer.IFNE : CodeBuffer.IFEQ, target, -1);
+				return;
+		}
+
+		int second = _ast.getNextSibling(first);
+		TokenType operator = OPERATORS[_ast.getValue(node)];
+		if (operator == TokenType.AND || operator == TokenType.OR) {
+			// The left operand alone decides when it is false for && or true for ||.
+			boolean decides = operator == TokenType.OR;
+			if (decides == jumpIf) {
+				condition(first, target, jumpIf);
+				condition(second, target, jumpIf);
+			} else {
+				Label skip = new Label();
+				condition(first, skip, decides);
+				condition(second, target, jumpIf);
+				_code.place(skip);
+			}
+			return;
+		}
+
+		int opcode;
+		switch (operator) {
+			case LESS:
+				opcode = CodeBuffer.IF_ICMPLT;
+				break;
+			case GREATER:
+				opcode = CodeBuffer.IF_ICMPGT;
+				break;
+			case LESS_EQUAL:
+				opcode = CodeBuffer.IF_ICMPLE;
+				break;
+			case GREATER_EQUAL:
+				opcode = CodeBuffer.IF_ICMPGE;
+				break;
+			case EQUAL_EQUAL:
+				opcode = isInt(_resolver.getType(first)) ? CodeBuffer.IF_ICMPEQ : CodeBuffer.IF_ACMPEQ;
+				break;
+			case NOT_EQUAL:
+				opcode = isInt(_resolver.getType(first)) ? CodeBuffer.IF_ICMPNE : CodeBuffer.IF_ACMPNE;
+				break;
+			default:
+				value(node);
+				_code.jump(jumpIf ? CodeBuffer.IFNE : CodeBuffer.IFEQ, target, -1);
+				return;
+		}
+		value(first);
+		value(second);
+		_code.jump(jumpIf ? opcode : negate(opcode), target, -2);
+	}
+
+	// The comparisons come in pairs whose opcodes differ in the lowest bit.
+	private static int negate(int opcode) {
+		return (opcode - CodeBuffer.IFEQ ^ 1) + CodeBuffer.IFEQ;
+	}
+
+	private void value(int node) {
+		int first = _ast.getFirstChild(node);
+		switch (_ast.getKind(node)) {
+			case INT_LITERAL:
+			case BOOLEAN_LITERAL:
+				_code.pushInt(_ast.getValue(node), _class);
+				break;
+			case THIS:
+				_code.local(CodeBuffer.ALOAD, 0);
+				break;
+			case IDENTIFIER:
+			case FIELD_ACCESS:
+				reference(node, first);
+				break;
+			case INDEX:
+				value(first);
+				value(_ast.getNextSibling(first));
+				_code.op(isInt(_resolver.getType(node)) ? CodeBuffer.IALOAD : CodeBuffer.AALOAD, -1);
+				break;
+			case CALL:
+				call(node, first);
+				break;
+			case NEW_OBJECT:
+				String name = _ast.getName(node);
+				_code.op2(CodeBuffer.NEW, _class.classRef(name), 1);
+				_code.op(CodeBuffer.DUP, 1);
+				_code.op2(CodeBuffer.INVOKESPECIAL, _class.methodRef(name, "<init>", "()V"), -1);
+				break;
+			case NEW_ARRAY:
+				value(_ast.getNextSibling(first));
+				String element = _resolver.getType(node).substring(1);
+				if (isInt(element)) {
+					_code.op1(CodeBuffer.NEWARRAY, CodeBuffer.T_INT, 0);
+				} else {
+					_code.op2(CodeBuffer.ANEWARRAY, _class.classRef(internalName(element)), 0);
+				}
+				break;
+			case UNARY:
+				value(first);
+				if (OPERATORS[_ast.getValue(node)] == TokenType.NOT) {
+					_code.op(CodeBuffer.ICONST_0 + 1, 1);
+					_code.op(CodeBuffer.IXOR, -1);
+				} else {
+					_code.op(CodeBuffer.INEG, 0);
+				}
+				break;
+			case BINARY:
+				binary(node, first, _ast.getNextSibling(first));
+				break;
+			default:
+				throw new IllegalArgumentException(_ast.getKind(node).toString());
+		}
+	}
+
+	private void reference(int node, int target) {
+		switch (_resolver.getBinding(node)) {
+			case Resolver.LOCAL:
+				_code.local(isInt(_resolver.getType(node)) ? CodeBuffer.ILOAD : CodeBuffer.ALOAD, _resolver.getSlot(node));
+				break;
+			case Resolver.FIELD:
+				if (_ast.getKind(node) == NodeKind.IDENTIFIER) {
+					_code.local(CodeBuffer.ALOAD, 0);
+				} else {
+					value(target);
+				}
+				_code.op2(CodeBuffer.GETFIELD, fieldRef(_resolver.getField(node)), 0);
+				break;
+			case Resolver.STATIC_FIELD:
+				discardTarget(node);
+				_code.op2(CodeBuffer.GETSTATIC, fieldRef(_resolver.getField(node)), 1);
+				break;
+			case Resolver.LENGTH:
+				value(target);
+				_code.op(CodeBuffer.ARRAYLENGTH, 0);
+				break;
+			default:
+				throw new IllegalArgumentException("unbound " + _ast.getName(node));
+		}
+	}
+
+	// A static member named through an instance still evaluates the instance, as Java
+	// does, though only the class is used.
+	private void discardTarget(int node) {
+		if (_ast.getKind(node) != NodeKind.FIELD_ACCESS) {
+			return;
+		}
+		int target = _ast.getFirstChild(node);
+		if (_resolver.getBinding(target) != Resolver.CLASS) {
+			value(target);
+			_code.op(CodeBuffer.POP, -1);
+		}
+	}
+
+	private void call(int node, int callee) {
+		int binding = _resolver.getBinding(node);
+		if (binding == Resolver.PRINTLN) {
+			int argument = _ast.getNextSibling(callee);
+			_code.op2(CodeBuffer.GETSTATIC, _class.fieldRef("java/lang/System", "out", "Ljava/io/PrintStream;"), 1);
+			value(argument);
+			String descriptor = "(" + _resolver.getType(argument) + ")V";
+			_code.op2(CodeBuffer.INVOKEVIRTUAL, _class.methodRef("java/io/PrintStream", "println", descriptor), -2);
+			return;
+		}
+
+		MethodDecl method = _resolver.getMethod(node);
+		boolean instance = binding == Resolver.METHOD;
+		if (!instance) {
+			discardTarget(callee);
+		} else if (_ast.getKind(callee) == NodeKind.IDENTIFIER) {
+			_code.local(CodeBuffer.ALOAD, 0);
+		} else {
+			value(_ast.getFirstChild(callee));
+		}
+		int arguments = 0;
+		for (int argument = _ast.getNextSibling(callee); argument != AST.NONE; argument = _ast.getNextSibling(argument)) {
+			value(argument);
+			arguments++;
+		}
+
+		int stackEffect = (Declarations.VOID.equals(method.getReturnType()) ? 0 : 1) - arguments - (instance ? 1 : 0);
+		int ref = _class.methodRef(method.getOwner().getName(), method.getName(), method.getDescriptor());
+		if (!instance) {
+			_code.op2(CodeBuffer.INVOKESTATIC, ref, stackEffect);
+		} else if ((method.getFlags() & AST.PRIVATE) != 0) {
+			// Private methods are not virtual, and before nestmates had to be invoked so.
+			_code.op2(CodeBuffer.INVOKESPECIAL, ref, stackEffect);
+		} else {
+			_code.op2(CodeBuffer.INVOKEVIRTUAL, ref, stackEffect);
+		}
+	}
+
+	private void binary(int node, int left, int right) {
+		int opcode;
+		switch (OPERATORS[_ast.getValue(node)]) {
+			case PLUS:
+				opcode = CodeBuffer.IADD;
+				break;
+			case MINUS:
+				opcode = CodeBuffer.ISUB;
+				break;
+			case TIMES:
+				opcode = CodeBuffer.IMUL;
+				break;
+			case DIVIDE:
+				opcode = CodeBuffer.IDIV;
+				break;
+			case SHIFT_LEFT:
+				opcode = CodeBuffer.ISHL;
+				break;
+			default:
+				// A boolean operator as a value: 1 if the condition holds, else 0.
+				Label isFalse = new Label();
+				Label end = new Label();
+				condition(node, isFalse, false);
+				_code.op(CodeBuffer.ICONST_0 + 1, 1);
+				_code.jump(CodeBuffer.GOTO, end, 0);
+				_code.place(isFalse);
+				_code.op(CodeBuffer.ICONST_0, 1);
+				_code.place(end);
+				return;
+		}
+		value(left);
+		value(right);
+		_code.op(opcode, -1);
+	}
+
+	private int fieldRef(FieldDecl field) {
+		return _class.fieldRef(field.getOwner().getName(), field.getName(), field.getType());
+	}
+
+	private static int access(int flags) {
+		int access = 0;
+		if ((flags & AST.PUBLIC) != 0) {
+			access |= ClassFileWriter.ACC_PUBLIC;
+		}
+		if ((flags & AST.PRIVATE) != 0) {
+			access |= ClassFileWriter.ACC_PRIVATE;
+		}
+		if ((flags & AST.STATIC) != 0) {
+			access |= ClassFileWriter.ACC_STATIC;
+		}
+		return access;
+	}
+
+	// Booleans are ints on the JVM's stack and in its locals.
+	private static boolean isInt(String type) {
+		return Declarations.INT.equals(type) || Declarations.BOOLEAN.equals(type);
+	}
+
+	// The name a class file uses for the class of a reference type: its descriptor for
+	// an array, else the name within L;.
+	private static String internalName(String type) {
+		return type.startsWith("[") ? type : type.substring(1, type.length() - 1);
+	}
+
+	private void report(ErrorCode code, int node, Object... arguments) {
+		int offset = _ast.getPosition(node);
+		_errors.report(code, _lines.getLine(offset), _lines.getColumn(offset), arguments);
+	}
+}
@@ -0,0 +1,54 @@
+package miniJava;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+import miniJava.AbstractSyntaxTrees.AST;
+
+// The outcome of one CompilerService compile. The tree is returned even on errors; its
+// root is then NONE if parsing stopped early.
+public class CompileResult {
+	private final AST _ast;
+	private final ErrorReporter _errors;
+	private final long _nanos;
+
+	CompileResult(AST ast, ErrorReporter errors, long nanos) {
+		this._ast = ast;
+		this._errors = errors;
+		this._nanos = nanos;
+	}
+
+	public boolean isSuccess() {
+		return !_errors.hasErrors();
+	}
+
+	public AST getAst() {
+		return _ast;
+	}
+
+	public List<Diagnostic> getDiagnostics() {
+		return _errors.getDiagnostics();
+	}
+
+	public int getErrorCount() {
+		return _errors.getErrorCount();
+	}
+
+	public int getSuppressedCount() {
+		return _errors.getSuppressedCount();
+	}
+
+	public long getNanos() {
+		return _nanos;
+	}
+
+	// Writes what Compiler.main prints for the same source.
+	public void printTo(PrintWriter out) {
+		if (_errors.hasErrors()) {
+			out.println("Error");
+			_errors.outputErrors(out);
+		} else {
+			out.println("Success");
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package miniJava;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import jdk.jfr.FlightRecorder;
+
+import miniJava.SyntacticAnalyzer.TokenStream;
+import miniJava.SyntacticAnalyzer.TokenType;
+
+// Per-phase time and allocation plus front-end counters for one compile, or the sum
+// of several. Each phase is also committed as a PhaseEvent when a flight recording
+// is enabled for it. Phases must begin and end on the same thread.
+//
+// Loading a JFR event class or the thread MXBean adds hundreds of milliseconds to
+// start-up, so disabled stats touch neither and every method is a no-op.
+public class CompileStats {
+	public enum Phase {
+		READ, LEX, PARSE, REPORT
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+	private static final TokenType[] TOKEN_TYPES = TokenType.values();
+	private final String _file;
+	private final boolean _enabled;
+	private final boolean _recording;
+	private final ThreadMXBean _threads;
+	private final long[] _nanos = new long[PHASES.length];
+	private final long[] _allocated = new long[PHASES.length];
+	private final long[] _tokenCounts = new long[TOKEN_TYPES.length];
+	private long _bytes;
+	private long _tokens;
+	private int _maxDepth;
+	private int _errors;
+	private int _files;
+
+	private Phase _phase;
+	private PhaseEvent _event;
+	private long _phaseStart;
+	private long _phaseAllocated;
+
+	// Enabled when a summary is wanted or a flight recording is running.
+	public CompileStats(String file, boolean showStats) {
+		this._file = file;
+		this._files = 1;
+		this._recording = FlightRecorder.isInitialized();
+		this._enabled = showStats || _recording;
+		this._threads = _enabled ? ManagementFactory.getThreadMXBean() : null;
+	}
+
+	public boolean isEnabled() {
+		return _enabled;
+	}
+
+	public void begin(Phase phase) {
+		if (!_enabled) {
+			return;
+		}
+		_phase = phase;
+		if (_recording) {
+			_event = new PhaseEvent();
+			_event.begin();
+		}
+		_phaseAllocated = allocatedBytes();
+		_phaseStart = System.nanoTime();
+	}
+
+	public void end() {
+		if (!_enabled) {
+			return;
+		}
+		Phase phase = _phase;
+		_nanos[phase.ordinal()] += System.nanoTime() - _phaseStart;
+		long allocated = allocatedBytes() - _phaseAllocated;
+		_allocated[phase.ordinal()] += allocated;
+
+		PhaseEvent event = _event;
+		_event = null;
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.file = _file;
+			event.phase = phase.name();
+			event.bytes = _bytes;
+			event.tokens = _tokens;
+			event.errors = _errors;
+			event.allocated = allocated;
+			event.commit();
+		}
+	}
+
+	public void setBytes(long bytes) {
+		this._bytes = bytes;
+	}
+
+	public void setErrors(int errors) {
+		this._errors = errors;
+	}
+
+	// Nesting depth counts open parentheses, braces and brackets together.
+	public void countTokens(TokenStream tokens) {
+		if (!_enabled) {
+			return;
+		}
+		int depth = 0;
+		for (int i = 0; i < tokens.size(); i++) {
+			TokenType type = tokens.getTokenType(i);
+			_tokenCounts[type.ordinal()]++;
+			switch (type) {
+				case LPAREN:
+				case LCURLY:
+				case LSQUARE:
+					_maxDepth = Math.max(_maxDepth, ++depth);
+					break;
+				case RPAREN:
+				case RCURLY:
+				case RSQUARE:
+					depth--;
+					break;
+				default:
+					break;
+			}
+		}
+		_tokens += tokens.size();
+	}
+
+	public void add(CompileStats other) {
+		for (int i = 0; i < PHASES.length; i++) {
+			_nanos[i] += other._nanos[i];
+			_allocated[i] += other._allocated[i];
+		}
+		for (int i = 0; i < TOKEN_TYPES.length; i++) {
+			_tokenCounts[i] += other._tokenCounts[i];
+		}
+		_bytes += other._bytes;
+		_tokens += other._tokens;
+		_maxDepth = Math.max(_maxDepth, other._maxDepth);
+		_errors += other._errors;
+		_files += other._files;
+	}
+
+	public long getNanos(Phase phase) {
+		return _nanos[phase.ordinal()];
+	}
+
+	public long getAllocatedBytes(Phase phase) {
+		return _allocated[phase.ordinal()];
+	}
+
+	public long getBytes() {
+		return _bytes;
+	}
+
+	public long getTokens() {
+		return _tokens;
+	}
+
+	public long getTokenCount(TokenType type) {
+		return _tokenCounts[type.ordinal()];
+	}
+
+	public int getMaxDepth() {
+		return _maxDepth;
+	}
+
+	public int getErrors() {
+		return _errors;
+	}
+
+	public void print(PrintStream out) {
+		out.printf("%-8s %10s %14s%n", "phase", "ms", "allocated B");
+		for (Phase phase : PHASES) {
+			out.printf("%-8s %10.3f %14d%n", phase.name().toLowerCase(), _nanos[phase.ordinal()] / 1e6,
+					_allocated[phase.ordinal()]);
+		}
+		out.printf("files %d, bytes %d, tokens %d, max nesting depth %d, errors %d%n",
+				_files, _bytes, _tokens, _maxDepth, _errors);
+		StringBuilder types = new StringBuilder("tokens by type:");
+		for (TokenType type : TOKEN_TYPES) {
+			if (_tokenCounts[type.ordinal()] > 0) {
+				types.append(' ').append(type).append('=').append(_tokenCounts[type.ordinal()]);
+			}
+		}
+		out.println(types);
+	}
+
+	private long allocatedBytes() {
+		if (_threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) _threads).getCurrentThreadAllocatedBytes();
+		}
+		return 0;
+	}
+}
@@ -1,40 +1,325 @@
 package miniJava;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
 
+import miniJava.CompileStats.Phase;
+import miniJava.AbstractSyntaxTrees.AST;
+import miniJava.CodeGenerator.CodeGenerator;
+import miniJava.ContextualAnalysis.Resolver;
+import miniJava.Interpreter.Interpreter;
+import miniJava.Optimizer.Optimizer;
+import miniJava.SyntacticAnalyzer.LineIndex;
+import miniJava.SyntacticAnalyzer.ParallelParser;
 import miniJava.SyntacticAnalyzer.Parser;
 import miniJava.SyntacticAnalyzer.Scanner;
+import miniJava.SyntacticAnalyzer.SourceFile;
+import miniJava.SyntacticAnalyzer.SymbolTable;
+import miniJava.SyntacticAnalyzer.TokenPipe;
+import miniJava.SyntacticAnalyzer.TokenStream;
 
 public class Compiler {
 	public static void main(String[] args) {
 		ErrorReporter errorReporter = new ErrorReporter();
 
-		if (args.length == 0) {
+		int maxErrors = 1;
+		ParseCache cache = null;
+		boolean pipelined = false;
+		boolean parallel = false;
+		boolean showStats = false;
+		boolean run = false;
+		Set<Optimizer.Pass> skipped = EnumSet.noneOf(Optimizer.Pass.class);
+		boolean optimize = false;
+		Path emitDirectory = null;
+		int first = 0;
+
+		while (first < args.length) {
+			if (args[first].equals("--pipeline")) {
+				pipelined = true;
+				first++;
+			} else if (args[first].equals("--parallel")) {
+				parallel = true;
+				first++;
+			} else if (args[first].equals("--run")) {
+				run = true;
+				first++;
+			} else if (args[first].equals("--optimize")) {
+				optimize = true;
+				first++;
+			} else if (first + 1 < args.length && args[first].equals("--skip-pass")) {
+				Optimizer.Pass pass = pass(args[first + 1]);
+				if (pass == null) {
+					System.out.println("unknown pass " + args[first + 1]);
+					return;
+				}
+				skipped.add(pass);
+				first += 2;
+			} else if (args[first].equals("--stats")) {
+				showStats = true;
+				first++;
+			} else if (first + 1 < args.length && args[first].equals("--max-errors")) {
+				maxErrors = positive(args[first + 1]);
+				if (maxErrors == 0) {
+					System.out.println("--max-errors takes a positive number, not " + args[first + 1]);
+					return;
+				}
+				first += 2;
+			} else if (first + 1 < args.length && args[first].equals("--cache")) {
+				try {
+					cache = new ParseCache(Path.of(args[first + 1]), ParseCache.DEFAULT_MAX_BYTES);
+				} catch (IOException e) {
+					System.out.println("cannot use cache directory " + args[first + 1]);
+				}
+				first += 2;
+			} else if (first + 1 < args.length && args[first].equals("--emit")) {
+				emitDirectory = Path.of(args[first + 1]);
+				first += 2;
+			} else {
+				break;
+			}
+		}
+
+		if (args.length == first) {
 			System.out.println("no input file specified");
 			return;
 		}
 
-		String filePath = args[0];
-		FileInputStream inputStream;
+		if (args.length - first > 1 || Files.isDirectory(Path.of(args[first]))) {
+			System.exit(BatchCompiler.run(Arrays.asList(args).subList(first, args.length), maxErrors, cache, showStats));
+		}
 
+		String filePath = args[first];
+		CompileStats stats = new CompileStats(filePath, showStats);
+		ByteBuffer source;
+
+		stats.begin(Phase.READ);
 		try {
-			inputStream = new FileInputStream(filePath);
-		} catch (FileNotFoundException e) {
+			source = SourceFile.read(filePath);
+		} catch (IOException e) {
 			System.out.println("file not found" + filePath);
 			return;
 		}
+		stats.setBytes(source.remaining());
+		stats.end();
 
-		Scanner scanner = new Scanner(inputStream, errorReporter);
-		Parser parser = new Parser(scanner, errorReporter);
+		// Compiling advances the source, which positions are later resolved against.
+		ByteBuffer text = source.duplicate();
+		AST ast = null;
+		boolean overlapped = false;
+		if (cache != null && emitDirectory == null && !run) {
+			stats.begin(Phase.PARSE);
+			cache.compile(source, errorReporter, maxErrors);
+			stats.setErrors(errorReporter.getErrorCount());
+			stats.end();
+		} else if (parallel) {
+			ast = compileParallel(source, errorReporter, maxErrors, stats);
+		} else if (pipelined && TokenPipe.isWorthwhile(source)) {
+			// Lexing overlaps parsing here, so both are measured as the parse.
+			overlapped = true;
+			stats.begin(Phase.PARSE);
+			ast = compile(source, errorReporter, maxErrors, true);
+			stats.setErrors(errorReporter.getErrorCount());
+			stats.end();
+		} else if (stats.isEnabled()) {
+			ast = compile(source, errorReporter, maxErrors, stats);
+		} else {
+			ast = compile(source, errorReporter, maxErrors, false);
+		}
 
-		parser.parse();
+		Resolver resolver = null;
+		Optimizer optimizer = null;
+		if ((emitDirectory != null || run) && !errorReporter.hasErrors()) {
+			LineIndex lines = new LineIndex(text);
+			resolver = new Resolver(ast, errorReporter, lines);
+			if (resolver.resolve()) {
+				// Only a program that resolves is optimized, so that dead code is checked too.
+				boolean optimized = true;
+				if (optimize) {
+					optimizer = new Optimizer(resolver, errorReporter, lines);
+					for (Optimizer.Pass pass : skipped) {
+						optimizer.setEnabled(pass, false);
+					}
+					optimized = optimizer.optimize();
+				}
+				// A program the optimizer could not finish is neither run nor emitted.
+				if (optimized && run && resolver.getDeclarations().getMain() == null) {
+					errorReporter.report(ErrorCode.NO_MAIN, 0, 0);
+				} else if (optimized && emitDirectory != null) {
+					emit(resolver, lines, errorReporter, emitDirectory);
+				}
+			}
+		}
 
+		stats.begin(Phase.REPORT);
 		if (errorReporter.hasErrors()) {
 			System.out.println("Error");
 			errorReporter.outputErrors();
 		} else {
 			System.out.println("Success");
 		}
+		stats.end();
+
+		if (showStats) {
+			stats.print(System.err);
+			if (overlapped) {
+				System.err.println("lexing ran alongside parsing and is included in parse; tokens are not counted");
+			}
+			if (optimizer != null) {
+				optimizer.print(System.err);
+			}
+		}
+
+		if (run && !errorReporter.hasErrors()) {
+			run(resolver);
+		}
+	}
+
+	// The number text spells if it is positive, and 0 otherwise.
+	private static int positive(String text) {
+		try {
+			return Math.max(0, Integer.parseInt(text));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	// A pass is named as in --skip-pass dead-code.
+	private static Optimizer.Pass pass(String name) {
+		for (Optimizer.Pass pass : Optimizer.Pass.values()) {
+			if (pass.name().replace('_', '-').equalsIgnoreCase(name)) {
+				return pass;
+			}
+		}
+		return null;
+	}
+
+	// Runs main in process. A runtime error ends the program as an uncaught exception
+	// ends a Java one.
+	private static void run(Resolver resolver) {
+		PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+		try {
+			new Interpreter(resolver).run(out);
+		} catch (RuntimeException | StackOverflowError e) {
+			out.flush();
+			System.err.println("Exception in miniJava program: " + e);
+			System.exit(1);
+		}
+		out.flush();
+	}
+
+	// Writes a class file per class of a resolved program into directory.
+	public static void emit(Resolver resolver, LineIndex lines, ErrorReporter errorReporter, Path directory) {
+		Map<String, byte[]> classes = new CodeGenerator(resolver, errorReporter, lines).generate();
+		if (classes == null) {
+			return;
+		}
+		try {
+			Files.createDirectories(directory);
+			for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+				Files.write(directory.resolve(entry.getKey() + ".class"), entry.getValue());
+			}
+		} catch (IOException e) {
+			errorReporter.report(ErrorCode.IO_ERROR, 0, 0, e.getMessage());
+		}
+	}
+
+	public static AST compile(ByteBuffer source, ErrorReporter errorReporter) {
+		return compile(source, errorReporter, 1);
+	}
+
+	public static AST compile(ByteBuffer source, ErrorReporter errorReporter, int maxErrors) {
+		return compile(source, errorReporter, maxErrors, false);
+	}
+
+	// Identifiers are interned into symbols, a table that other compiles may share.
+	public static AST compile(ByteBuffer source, ErrorReporter errorReporter, int maxErrors, SymbolTable symbols) {
+		Scanner scanner = new Scanner(source, errorReporter, symbols);
+		Parser parser = new Parser(scanner, errorReporter);
+
+		parser.setMaxErrors(maxErrors);
+		return parser.parse();
+	}
+
+	public static AST compile(ByteBuffer source, ErrorReporter errorReporter, int maxErrors, boolean pipelined) {
+		if (pipelined) {
+			try (TokenPipe pipe = new TokenPipe(source)) {
+				Parser parser = new Parser(pipe, errorReporter);
+				parser.setMaxErrors(maxErrors);
+				return parser.parse();
+			}
+		}
+
+		Scanner scanner = new Scanner(source, errorReporter);
+		Parser parser = new Parser(scanner, errorReporter);
+
+		parser.setMaxErrors(maxErrors);
+		return parser.parse();
+	}
+
+	// Parses the classes of a lexically clean source in parallel when there are enough
+	// tokens for that to pay off.
+	public static AST compileParallel(ByteBuffer source, ErrorReporter errorReporter, int maxErrors) {
+		return compileParallel(source, errorReporter, maxErrors, new CompileStats(null, false));
+	}
+
+	// Lexing and parsing are measured as separate phases, as they run one after the other.
+	public static AST compileParallel(ByteBuffer source, ErrorReporter errorReporter, int maxErrors,
+			CompileStats stats) {
+		stats.begin(Phase.LEX);
+		ErrorReporter lexicalErrors = new ErrorReporter();
+		TokenStream tokens = new TokenStream(new Scanner(source.duplicate(), lexicalErrors));
+		stats.countTokens(tokens);
+		stats.end();
+
+		stats.begin(Phase.PARSE);
+		AST ast;
+		if (lexicalErrors.hasErrors()) {
+			// Only a streaming compile interleaves lexical and syntax errors in the
+			// usual order.
+			ast = compile(source, errorReporter, maxErrors);
+		} else if (!ParallelParser.isWorthwhile(tokens)) {
+			Parser parser = new Parser(tokens, errorReporter);
+			parser.setMaxErrors(maxErrors);
+			ast = parser.parse();
+		} else {
+			ParallelParser parser = new ParallelParser(tokens, errorReporter);
+			parser.setMaxErrors(maxErrors);
+			ast = parser.parse();
+		}
+		stats.setErrors(errorReporter.getErrorCount());
+		stats.end();
+		return ast;
+	}
+
+	// Lexes and parses as separate phases so that each can be measured.
+	public static AST compile(ByteBuffer source, ErrorReporter errorReporter, int maxErrors, CompileStats stats) {
+		stats.begin(Phase.LEX);
+		ErrorReporter lexicalErrors = new ErrorReporter();
+		TokenStream tokens = new TokenStream(new Scanner(source.duplicate(), lexicalErrors));
+		stats.countTokens(tokens);
+		stats.end();
+
+		stats.begin(Phase.PARSE);
+		AST ast;
+		if (lexicalErrors.hasErrors()) {
+			// Only a streaming compile interleaves lexical and syntax errors in the
+			// usual order, so this parse lexes again.
+			ast = compile(source, errorReporter, maxErrors);
+		} else {
+			Parser parser = new Parser(tokens, errorReporter);
+			parser.setMaxErrors(maxErrors);
+			ast = parser.parse();
+		}
+		stats.setErrors(errorReporter.getErrorCount());
+		stats.end();
+		return ast;
 	}
-}
\ No newline at end of file
+}
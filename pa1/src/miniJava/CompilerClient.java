@@ -0,0 +1,47 @@
+package miniJava;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+public class CompilerClient {
+	public static void main(String[] args) throws IOException {
+		Path socketPath = CompilerDaemon.defaultSocketPath();
+		int next = 0;
+
+		if (args.length > 1 && args[0].equals("--socket")) {
+			socketPath = Path.of(args[1]);
+			next = 2;
+		}
+
+		if (next >= args.length) {
+			System.out.println("no input file specified");
+			return;
+		}
+
+		try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+			channel.connect(UnixDomainSocketAddress.of(socketPath));
+			OutputStream out = Channels.newOutputStream(channel);
+
+			if (args[next].equals("-")) {
+				byte[] source = System.in.readAllBytes();
+				out.write((CompilerDaemon.SOURCE_REQUEST + source.length + "\n").getBytes(StandardCharsets.UTF_8));
+				out.write(source);
+			} else {
+				String filePath = Path.of(args[next]).toAbsolutePath().toString();
+				out.write((CompilerDaemon.FILE_REQUEST + filePath + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+			out.flush();
+
+			InputStream in = Channels.newInputStream(channel);
+			System.out.write(in.readAllBytes());
+			System.out.flush();
+		}
+	}
+}
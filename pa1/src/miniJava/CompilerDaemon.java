@@ -0,0 +1,208 @@
+package miniJava;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import jdk.net.ExtendedSocketOptions;
+import jdk.net.UnixDomainPrincipal;
+
+import miniJava.SyntacticAnalyzer.SourceFile;
+
+// Compiles for clients of the same user over a Unix socket. The default socket lives in
+// a directory only that user can enter, and a client of another user is turned away
+// where the platform reports who is connecting.
+public class CompilerDaemon {
+	static final String FILE_REQUEST = "FILE ";
+	static final String SOURCE_REQUEST = "SOURCE ";
+	static final int MAX_HEADER_BYTES = 4096;
+	static final int MAX_SOURCE_BYTES = 64 << 20;
+
+	private final Path _socketPath;
+	private final ExecutorService _workers;
+	// Shared by the workers, each of which reuses its own scanner and parser.
+	private final CompilerService _service = new CompilerService();
+
+	public CompilerDaemon(Path socketPath) {
+		this._socketPath = socketPath;
+		this._workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	public static void main(String[] args) {
+		Path socketPath = args.length > 0 ? Path.of(args[0]) : defaultSocketPath();
+		try {
+			new CompilerDaemon(socketPath).serve();
+		} catch (IOException e) {
+			System.err.println("cannot serve: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	static Path defaultSocketPath() {
+		return Path.of(System.getProperty("java.io.tmpdir"), "minijava-" + System.getProperty("user.name"),
+				"minijava.sock");
+	}
+
+	public void serve() throws IOException {
+		if (_socketPath.equals(defaultSocketPath())) {
+			createPrivateDirectory(_socketPath.getParent());
+		}
+		if (Files.exists(_socketPath, LinkOption.NOFOLLOW_LINKS)) {
+			if (isLive(_socketPath)) {
+				throw new IOException("a daemon is already listening on " + _socketPath);
+			}
+			// Left behind by a daemon that did not exit cleanly.
+			Files.delete(_socketPath);
+		}
+		try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+			server.bind(UnixDomainSocketAddress.of(_socketPath));
+			_socketPath.toFile().deleteOnExit();
+			System.out.println("listening on " + _socketPath);
+
+			while (true) {
+				SocketChannel client = server.accept();
+				_workers.execute(() -> handle(client));
+			}
+		} finally {
+			_workers.shutdownNow();
+		}
+	}
+
+	// The directory must belong to this user and be closed to everyone else, since
+	// whoever can write to it can put their own socket in the daemon's place.
+	private static void createPrivateDirectory(Path directory) throws IOException {
+		Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rwx------");
+		try {
+			if (!Files.exists(directory, LinkOption.NOFOLLOW_LINKS)) {
+				Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(ownerOnly));
+			}
+			if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)
+					|| !Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS).getName()
+							.equals(System.getProperty("user.name"))
+					|| !Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS).equals(ownerOnly)) {
+				throw new IOException(directory + " must be a directory of this user with permissions rwx------");
+			}
+		} catch (UnsupportedOperationException e) {
+			// Without POSIX permissions the temporary directory is already per user.
+			Files.createDirectories(directory);
+		}
+	}
+
+	private static boolean isLive(Path socketPath) throws IOException {
+		try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+			channel.connect(UnixDomainSocketAddress.of(socketPath));
+			return true;
+		} catch (ConnectException e) {
+			return false;
+		}
+	}
+
+	private static boolean isSameUser(SocketChannel channel) throws IOException {
+		if (!channel.supportedOptions().contains(ExtendedSocketOptions.SO_PEERCRED)) {
+			return true;
+		}
+		UnixDomainPrincipal peer = channel.getOption(ExtendedSocketOptions.SO_PEERCRED);
+		return peer.user().getName().equals(System.getProperty("user.name"));
+	}
+
+	private void handle(SocketChannel client) {
+		try (SocketChannel channel = client) {
+			if (!isSameUser(channel)) {
+				System.err.println("refused a client of another user");
+				return;
+			}
+			InputStream in = Channels.newInputStream(channel);
+			PrintWriter out = new PrintWriter(
+					new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+			String request = readLine(in);
+			ByteBuffer source;
+
+			if (request == null) {
+				out.println("request header longer than " + MAX_HEADER_BYTES + " bytes");
+				out.flush();
+				return;
+			} else if (request.startsWith(FILE_REQUEST)) {
+				// Only source files are read, so a request cannot have the daemon echo
+				// any other file back in its diagnostics.
+				Path filePath = Path.of(request.substring(FILE_REQUEST.length()));
+				if (!filePath.toString().endsWith(".java") || !Files.isRegularFile(filePath)
+						|| Files.size(filePath) > MAX_SOURCE_BYTES) {
+					out.println("not a source file of at most " + MAX_SOURCE_BYTES + " bytes: " + filePath);
+					out.flush();
+					return;
+				}
+				try {
+					source = SourceFile.read(filePath.toString());
+				} catch (IOException e) {
+					out.println("file not found" + filePath);
+					out.flush();
+					return;
+				}
+			} else if (request.startsWith(SOURCE_REQUEST)) {
+				int length = parseLength(request.substring(SOURCE_REQUEST.length()).trim());
+				if (length < 0) {
+					out.println("source length must be 0 to " + MAX_SOURCE_BYTES + " bytes");
+					out.flush();
+					return;
+				}
+				byte[] bytes = in.readNBytes(length);
+				if (bytes.length != length) {
+					out.println("source ended after " + bytes.length + " of " + length + " bytes");
+					out.flush();
+					return;
+				}
+				source = ByteBuffer.wrap(bytes);
+			} else {
+				out.println("unknown request: " + request);
+				out.flush();
+				return;
+			}
+
+			_service.compile(source).printTo(out);
+			out.flush();
+		} catch (IOException | RuntimeException e) {
+			System.err.println("request failed: " + e);
+		}
+	}
+
+	// The length a SOURCE request declares, or -1 if it is not one the daemon accepts.
+	private static int parseLength(String text) {
+		try {
+			int length = Integer.parseInt(text);
+			return length >= 0 && length <= MAX_SOURCE_BYTES ? length : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	// The request line, or null if it is longer than MAX_HEADER_BYTES.
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int c;
+		while ((c = in.read()) != -1 && c != '\n') {
+			if (line.size() == MAX_HEADER_BYTES) {
+				return null;
+			}
+			line.write(c);
+		}
+		return line.toString(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,85 @@
+package miniJava;
+
+import java.nio.ByteBuffer;
+
+import miniJava.AbstractSyntaxTrees.AST;
+import miniJava.SyntacticAnalyzer.Parser;
+import miniJava.SyntacticAnalyzer.Scanner;
+import miniJava.SyntacticAnalyzer.SymbolTable;
+
+// Compiles sources in memory for callers that embed the compiler. One instance can be
+// shared by any number of threads: each thread keeps its own Scanner and Parser and
+// resets them per compile, so their buffers and stacks are only grown once. Results
+// are the same as a streaming Compiler.compile with the same limits.
+//
+// A thread's instances hold on to the last source it compiled until its next compile.
+// Identifiers are interned into a SymbolTable shared by the service's compiles. Once it
+// holds more than a set number of names, the next compile starts a fresh one, so a
+// long-lived service keeps a bounded number of the names it has been sent.
+public class CompilerService {
+	public static final int DEFAULT_MAX_SYMBOLS = 1 << 16;
+
+	private final int _maxErrors;
+	private final int _errorLimit;
+	private final int _maxSymbols;
+	private volatile SymbolTable _symbols = new SymbolTable();
+	private final ThreadLocal<Instances> _instances = ThreadLocal.withInitial(Instances::new);
+
+	public CompilerService() {
+		this(1, ErrorReporter.DEFAULT_LIMIT);
+	}
+
+	public CompilerService(int maxErrors, int errorLimit) {
+		this(maxErrors, errorLimit, DEFAULT_MAX_SYMBOLS);
+	}
+
+	public CompilerService(int maxErrors, int errorLimit, int maxSymbols) {
+		this._maxErrors = maxErrors;
+		this._errorLimit = errorLimit;
+		this._maxSymbols = maxSymbols;
+	}
+
+	// Drops every name interned so far. Compiles under way keep the table they started
+	// with.
+	public void clearSymbols() {
+		_symbols = new SymbolTable();
+	}
+
+	public int getSymbolCount() {
+		return _symbols.size();
+	}
+
+	public CompileResult compile(byte[] source) {
+		return compile(ByteBuffer.wrap(source));
+	}
+
+	// Reads the source from its position without moving it.
+	public CompileResult compile(ByteBuffer source) {
+		long start = System.nanoTime();
+		ErrorReporter errors = new ErrorReporter(_errorLimit);
+		Instances instances = _instances.get();
+		SymbolTable symbols = _symbols;
+		if (symbols.size() > _maxSymbols) {
+			// Racing compiles may each start a table; all but one are dropped after use.
+			symbols = new SymbolTable();
+			_symbols = symbols;
+		}
+
+		instances.scanner.reset(source.duplicate(), errors, symbols);
+		instances.parser.reset(instances.scanner, errors);
+		instances.parser.setMaxErrors(_maxErrors);
+		AST ast = instances.parser.parse();
+		return new CompileResult(ast, errors, System.nanoTime() - start);
+	}
+
+	private static final class Instances {
+		private final Scanner scanner;
+		private final Parser parser;
+
+		Instances() {
+			ErrorReporter unused = new ErrorReporter();
+			this.scanner = new Scanner(ByteBuffer.allocate(0), unused, new SymbolTable());
+			this.parser = new Parser(scanner, unused);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package miniJava;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+// An ErrorReporter that several compiler threads can report to at once. Every report
+// and read takes the reporter's lock, so counts, folding and the limit come out as if
+// the reports had been made one after another, in the order they took the lock.
+public class ConcurrentErrorReporter extends ErrorReporter {
+	public ConcurrentErrorReporter() {
+		super();
+	}
+
+	public ConcurrentErrorReporter(int limit) {
+		super(limit);
+	}
+
+	@Override
+	public synchronized boolean hasErrors() {
+		return super.hasErrors();
+	}
+
+	@Override
+	public synchronized int getErrorCount() {
+		return super.getErrorCount();
+	}
+
+	@Override
+	public synchronized int getSuppressedCount() {
+		return super.getSuppressedCount();
+	}
+
+	// A copy, since reports may still be made while it is read.
+	@Override
+	public synchronized List<Diagnostic> getDiagnostics() {
+		return new ArrayList<Diagnostic>(super.getDiagnostics());
+	}
+
+	@Override
+	public synchronized void outputErrors(PrintWriter out) {
+		super.outputErrors(out);
+	}
+
+	@Override
+	public synchronized void report(Diagnostic diagnostic) {
+		super.report(diagnostic);
+	}
+
+	@Override
+	public synchronized void report(Diagnostic diagnostic, int times) {
+		super.report(diagnostic, times);
+	}
+
+	@Override
+	synchronized void restore(List<Diagnostic> diagnostics, int suppressed, int errorCount) {
+		super.restore(diagnostics, suppressed, errorCount);
+	}
+}
@@ -0,0 +1,349 @@
+package miniJava.ContextualAnalysis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import miniJava.ErrorCode;
+import miniJava.ErrorReporter;
+import miniJava.AbstractSyntaxTrees.AST;
+import miniJava.AbstractSyntaxTrees.NodeKind;
+import miniJava.SyntacticAnalyzer.LineIndex;
+
+// The classes of a program and their members. Types are JVM descriptors: I, Z and V for
+// int, boolean and void, [I for int[], LName; for a class and [LName; for an array of
+// one. String need not be declared, so that main can take a String[]; it is then
+// java.lang.String, and nothing else can be done with it.
+public class Declarations {
+	public static final String INT = "I";
+	public static final String BOOLEAN = "Z";
+	public static final String VOID = "V";
+	public static final String INT_ARRAY = "[I";
+	public static final String STRING_ARRAY = "[Ljava/lang/String;";
+
+	private final AST _ast;
+	private final ErrorReporter _errors;
+	private final LineIndex _lines;
+	private final Map<String, ClassDecl> _classes = new LinkedHashMap<String, ClassDecl>();
+	private final List<MethodDecl> _methods = new ArrayList<MethodDecl>();
+	private MethodDecl _main;
+
+	Declarations(AST ast, ErrorReporter errors, LineIndex lines) {
+		this._ast = ast;
+		this._errors = errors;
+		this._lines = lines;
+
+		int root = ast.getRoot();
+		for (int node = ast.getFirstChild(root); node != AST.NONE; node = ast.getNextSibling(node)) {
+			String name = ast.getName(node);
+			if (_classes.containsKey(name)) {
+				report(ErrorCode.DUPLICATE_DECLARATION, node, name);
+			} else {
+				_classes.put(name, new ClassDecl(name, node));
+			}
+		}
+		// Member types can name any class, so classes are all known before members.
+		for (ClassDecl decl : _classes.values()) {
+			declareMembers(decl);
+		}
+	}
+
+	public Collection<ClassDecl> getClasses() {
+		return _classes.values();
+	}
+
+	public ClassDecl getClass(String name) {
+		return _classes.get(name);
+	}
+
+	// Every method of the program, indexed by MethodDecl.getId().
+	public List<MethodDecl> getMethods() {
+		return _methods;
+	}
+
+	// The first public static void main(String[]), or null.
+	public MethodDecl getMain() {
+		return _main;
+	}
+
+	private void declareMembers(ClassDecl decl) {
+		for (int node = _ast.getFirstChild(decl._node); node != AST.NONE; node = _ast.getNextSibling(node)) {
+			String name = _ast.getName(node);
+			int flags = _ast.getFlags(node);
+			String type = typeOf(_ast.getFirstChild(node));
+			if (_ast.getKind(node) == NodeKind.FIELD) {
+				if (decl._fields.containsKey(name)) {
+					report(ErrorCode.DUPLICATE_DECLARATION, node, name);
+				} else {
+					int index = (flags & AST.STATIC) != 0 ? decl._staticFieldCount++ : decl._instanceFieldCount++;
+					decl._fields.put(name, new FieldDecl(decl, name, node, type, flags, index));
+				}
+				continue;
+			}
+
+			List<String> parameters = new ArrayList<String>();
+			int body = AST.NONE;
+			for (int child = _ast.getNextSibling(_ast.getFirstChild(node)); child != AST.NONE;
+					child = _ast.getNextSibling(child)) {
+				if (_ast.getKind(child) == NodeKind.PARAMETER) {
+					parameters.add(typeOf(_ast.getFirstChild(child)));
+				} else {
+					body = child;
+				}
+			}
+			if (body == AST.NONE) {
+				report(ErrorCode.UNSUPPORTED, node, "method without a body");
+			}
+			if (decl._methods.containsKey(name)) {
+				report(ErrorCode.DUPLICATE_DECLARATION, node, name);
+				continue;
+			}
+			MethodDecl method = new MethodDecl(decl, name, node, type, parameters.toArray(new String[0]), body,
+					flags, _methods.size());
+			decl._methods.put(name, method);
+			_methods.add(method);
+			if (_main == null && name.equals("main") && flags == (AST.PUBLIC | AST.STATIC) && VOID.equals(type)
+					&& parameters.size() == 1 && STRING_ARRAY.equals(parameters.get(0))) {
+				_main = method;
+			}
+		}
+	}
+
+	// The descriptor of a type node, or null if it names no class.
+	String typeOf(int node) {
+		switch (_ast.getKind(node)) {
+			case INT_TYPE:
+				return INT;
+			case BOOLEAN_TYPE:
+				return BOOLEAN;
+			case VOID_TYPE:
+				return VOID;
+			case ARRAY_TYPE:
+				if (_ast.getChildCount(node) > 1) {
+					report(ErrorCode.UNSUPPORTED, node, "array size in a type");
+					return null;
+				}
+				String element = typeOf(_ast.getFirstChild(node));
+				return element == null ? null : "[" + element;
+			default:
+				String name = _ast.getName(node);
+				if (_classes.containsKey(name)) {
+					return "L" + name + ";";
+				}
+				if (name.equals("String")) {
+					return "Ljava/lang/String;";
+				}
+				report(ErrorCode.UNDECLARED, node, name);
+				return null;
+		}
+	}
+
+	// The declared class of a descriptor, or null for any other type.
+	public ClassDecl classOf(String type) {
+		if (type == null || !type.startsWith("L")) {
+			return null;
+		}
+		return _classes.get(type.substring(1, type.length() - 1));
+	}
+
+	// A type as it is written in source.
+	public static String display(String type) {
+		if (type == null) {
+			return "?";
+		}
+		switch (type.charAt(0)) {
+			case 'I':
+				return "int";
+			case 'Z':
+				return "boolean";
+			case 'V':
+				return "void";
+			case '[':
+				return display(type.substring(1)) + "[]";
+			default:
+				String name = type.substring(1, type.length() - 1);
+				return name.substring(name.lastIndexOf('/') + 1);
+		}
+	}
+
+	private void report(ErrorCode code, int node, Object... arguments) {
+		int offset = _ast.getPosition(node);
+		_errors.report(code, _lines.getLine(offset), _lines.getColumn(offset), arguments);
+	}
+
+	public static final class ClassDecl {
+		private final String _name;
+		private final int _node;
+		private final Map<String, FieldDecl> _fields = new LinkedHashMap<String, FieldDecl>();
+		private final Map<String, MethodDecl> _methods = new LinkedHashMap<String, MethodDecl>();
+		private int _instanceFieldCount;
+		private int _staticFieldCount;
+
+		ClassDecl(String name, int node) {
+			this._name = name;
+			this._node = node;
+		}
+
+		public String getName() {
+			return _name;
+		}
+
+		public int getNode() {
+			return _node;
+		}
+
+		public String getType() {
+			return "L" + _name + ";";
+		}
+
+		public Collection<FieldDecl> getFields() {
+			return _fields.values();
+		}
+
+		public FieldDecl getField(String name) {
+			return _fields.get(name);
+		}
+
+		public Collection<MethodDecl> getMethods() {
+			return _methods.values();
+		}
+
+		public MethodDecl getMethod(String name) {
+			return _methods.get(name);
+		}
+
+		public int getInstanceFieldCount() {
+			return _instanceFieldCount;
+		}
+
+		public int getStaticFieldCount() {
+			return _staticFieldCount;
+		}
+	}
+
+	public static final class FieldDecl {
+		private final ClassDecl _owner;
+		private final String _name;
+		private final int _node;
+		private final String _type;
+		private final int _flags;
+		private final int _index;
+
+		FieldDecl(ClassDecl owner, String name, int node, String type, int flags, int index) {
+			this._owner = owner;
+			this._name = name;
+			this._node = node;
+			this._type = type;
+			this._flags = flags;
+			this._index = index;
+		}
+
+		public ClassDecl getOwner() {
+			return _owner;
+		}
+
+		public String getName() {
+			return _name;
+		}
+
+		public int getNode() {
+			return _node;
+		}
+
+		public String getType() {
+			return _type;
+		}
+
+		public int getFlags() {
+			return _flags;
+		}
+
+		public boolean isStatic() {
+			return (_flags & AST.STATIC) != 0;
+		}
+
+		// Among the owner's static fields if static, else among its instance fields.
+		public int getIndex() {
+			return _index;
+		}
+	}
+
+	public static final class MethodDecl {
+		private final ClassDecl _owner;
+		private final String _name;
+		private final int _node;
+		private final String _returnType;
+		private final String[] _parameterTypes;
+		private final int _body;
+		private final int _flags;
+		private final int _id;
+		private int _localCount;
+
+		MethodDecl(ClassDecl owner, String name, int node, String returnType, String[] parameterTypes, int body,
+				int flags, int id) {
+			this._owner = owner;
+			this._name = name;
+			this._node = node;
+			this._returnType = returnType;
+			this._parameterTypes = parameterTypes;
+			this._body = body;
+			this._flags = flags;
+			this._id = id;
+		}
+
+		public ClassDecl getOwner() {
+			return _owner;
+		}
+
+		public String getName() {
+			return _name;
+		}
+
+		public int getNode() {
+			return _node;
+		}
+
+		public String getReturnType() {
+			return _returnType;
+		}
+
+		public String[] getParameterTypes() {
+			return _parameterTypes;
+		}
+
+		public int getBody() {
+			return _body;
+		}
+
+		public int getFlags() {
+			return _flags;
+		}
+
+		public boolean isStatic() {
+			return (_flags & AST.STATIC) != 0;
+		}
+
+		public int getId() {
+			return _id;
+		}
+
+		public String getDescriptor() {
+			StringBuilder descriptor = new StringBuilder("(");
+			for (String type : _parameterTypes) {
+				descriptor.append(type);
+			}
+			return descriptor.append(')').append(_returnType).toString();
+		}
+
+		// Slots for this, the parameters and every local, numbered as the JVM does.
+		public int getLocalCount() {
+			return _localCount;
+		}
+
+		void setLocalCount(int localCount) {
+			this._localCount = localCount;
+		}
+	}
+}
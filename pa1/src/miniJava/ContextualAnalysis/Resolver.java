@@ -0,0 +1,537 @@
+package miniJava.ContextualAnalysis;
+
+import java.util.Arrays;
+
+import miniJava.ErrorCode;
+import miniJava.ErrorReporter;
+import miniJava.AbstractSyntaxTrees.AST;
+import miniJava.AbstractSyntaxTrees.NodeKind;
+import miniJava.ContextualAnalysis.Declarations.ClassDecl;
+import miniJava.ContextualAnalysis.Declarations.FieldDecl;
+import miniJava.ContextualAnalysis.Declarations.MethodDecl;
+import miniJava.SyntacticAnalyzer.LineIndex;
+import miniJava.SyntacticAnalyzer.TokenType;
+
+// Binds every name in the method bodies of a parsed program and types every expression,
+// as far as code generation needs: there is no inheritance or overloading, and a type is
+// only checked where a wrong one could not be compiled or run. Results are kept per node.
+//
+// Locals, including this and the parameters, get JVM slot numbers. A local is in scope
+// from its declaration to the end of its block, and may not hide another local.
+public class Resolver {
+	// What a node was bound to. IDENTIFIER and FIELD_ACCESS nodes bind to a local, a
+	// field, a class or an array's length; CALL nodes to the method called.
+	public static final int UNBOUND = 0;
+	public static final int LOCAL = 1;
+	public static final int FIELD = 2;
+	public static final int STATIC_FIELD = 3;
+	public static final int CLASS = 4;
+	public static final int LENGTH = 5;
+	public static final int METHOD = 6;
+	public static final int STATIC_METHOD = 7;
+	// System.out.println, unless a declaration hides System.
+	public static final int PRINTLN = 8;
+
+	private static final TokenType[] OPERATORS = TokenType.values();
+
+	private final AST _ast;
+	private final ErrorReporter _errors;
+	private final LineIndex _lines;
+	private Declarations _declarations;
+	private byte[] _bindings;
+	private int[] _slots;
+	private Object[] _declared;
+	private String[] _types;
+
+	private ClassDecl _class;
+	private MethodDecl _method;
+	private int[] _localNames = new int[16];
+	private int[] _localSlots = new int[16];
+	private String[] _localTypes = new String[16];
+	private int _localCount;
+	private int _nextSlot;
+	private int _maxSlot;
+
+	public Resolver(AST ast, ErrorReporter errors, LineIndex lines) {
+		this._ast = ast;
+		this._errors = errors;
+		this._lines = lines;
+	}
+
+	// Returns whether the program resolved without errors.
+	public boolean resolve() {
+		int reported = _errors.getErrorCount();
+		_bindings = new byte[_ast.size()];
+		_slots = new int[_ast.size()];
+		_declared = new Object[_ast.size()];
+		_types = new String[_ast.size()];
+		_declarations = new Declarations(_ast, _errors, _lines);
+		if (_errors.getErrorCount() != reported) {
+			return false;
+		}
+
+		for (MethodDecl method : _declarations.getMethods()) {
+			resolveMethod(method);
+		}
+		return _errors.getErrorCount() == reported;
+	}
+
+	public AST getAst() {
+		return _ast;
+	}
+
+	public Declarations getDeclarations() {
+		return _declarations;
+	}
+
+	public int getBinding(int node) {
+		return _bindings[node];
+	}
+
+	// The slot of a LOCAL reference, VAR_DECL or PARAMETER.
+	public int getSlot(int node) {
+		return _slots[node];
+	}
+
+	public FieldDecl getField(int node) {
+		return (FieldDecl) _declared[node];
+	}
+
+	public MethodDecl getMethod(int node) {
+		return (MethodDecl) _declared[node];
+	}
+
+	public ClassDecl getClassDecl(int node) {
+		return (ClassDecl) _declared[node];
+	}
+
+	// The type of an expression, or of the local a VAR_DECL or PARAMETER declares.
+	public String getType(int node) {
+		return _types[node];
+	}
+
+	private void resolveMethod(MethodDecl method) {
+		_class = method.getOwner();
+		_method = method;
+		_localCount = 0;
+		_nextSlot = method.isStatic() ? 0 : 1;
+		_maxSlot = _nextSlot;
+
+		String[] parameterTypes = method.getParameterTypes();
+		int index = 0;
+		for (int child = _ast.getNextSibling(_ast.getFirstChild(method.getNode())); child != AST.NONE;
+				child = _ast.getNextSibling(child)) {
+			if (_ast.getKind(child) == NodeKind.PARAMETER) {
+				declareLocal(child, parameterTypes[index++]);
+			}
+		}
+		if (method.getBody() != AST.NONE) {
+			try {
+				statement(method.getBody());
+			} catch (StackOverflowError e) {
+				report(ErrorCode.UNSUPPORTED, method.getNode(), "nesting too deep in " + method.getName());
+			}
+		}
+		method.setLocalCount(_maxSlot);
+	}
+
+	private void declareLocal(int node, String type) {
+		int name = _ast.getValue(node);
+		for (int i = 0; i < _localCount; i++) {
+			if (_localNames[i] == name) {
+				report(ErrorCode.DUPLICATE_DECLARATION, node, _ast.getName(node));
+				break;
+			}
+		}
+		if (_localCount == _localNames.length) {
+			_localNames = Arrays.copyOf(_localNames, _localCount * 2);
+			_localSlots = Arrays.copyOf(_localSlots, _localCount * 2);
+			_localTypes = Arrays.copyOf(_localTypes, _localCount * 2);
+		}
+		_localNames[_localCount] = name;
+		_localSlots[_localCount] = _nextSlot;
+		_localTypes[_localCount] = type;
+		_localCount++;
+		_bindings[node] = LOCAL;
+		_slots[node] = _nextSlot++;
+		_types[node] = type;
+		_maxSlot = Math.max(_maxSlot, _nextSlot);
+	}
+
+	// A statement that is not a block still gets a scope of its own, so that a
+	// declaration as the branch of an if ends with it.
+	private void statement(int node) {
+		int localMark = _localCount;
+		int slotMark = _nextSlot;
+		int first = _ast.getFirstChild(node);
+		switch (_ast.getKind(node)) {
+			case BLOCK:
+				for (int child = first; child != AST.NONE; child = _ast.getNextSibling(child)) {
+					statement(child);
+				}
+				break;
+			case VAR_DECL:
+				String type = _declarations.typeOf(first);
+				int init = _ast.getNextSibling(first);
+				if (init != AST.NONE) {
+					expect(init, type);
+				}
+				// Declared in the enclosing block, which restores the marks.
+				declareLocal(node, type);
+				return;
+			case ASSIGN:
+				expect(_ast.getNextSibling(first), assignable(first));
+				break;
+			case CALL_STATEMENT:
+				if (_ast.getKind(first) == NodeKind.CALL) {
+					expression(first);
+				} else {
+					value(first);
+				}
+				break;
+			case IF:
+			case WHILE:
+				expect(first, Declarations.BOOLEAN);
+				for (int child = _ast.getNextSibling(first); child != AST.NONE; child = _ast.getNextSibling(child)) {
+					statement(child);
+				}
+				break;
+			case RETURN:
+				String returnType = _method.getReturnType();
+				if (first == AST.NONE) {
+					if (!Declarations.VOID.equals(returnType)) {
+						report(ErrorCode.TYPE_MISMATCH, node, Declarations.display(returnType), "void");
+					}
+				} else if (Declarations.VOID.equals(returnType)) {
+					report(ErrorCode.TYPE_MISMATCH, first, "void", Declarations.display(value(first)));
+				} else {
+					expect(first, returnType);
+				}
+				break;
+			default:
+				report(ErrorCode.UNSUPPORTED, node, _ast.getKind(node));
+				break;
+		}
+		_localCount = localMark;
+		_nextSlot = slotMark;
+	}
+
+	// The type a reference can be assigned, or null.
+	private String assignable(int node) {
+		String type = expression(node);
+		switch (_ast.getKind(node)) {
+			case IDENTIFIER:
+			case FIELD_ACCESS:
+				int binding = _bindings[node];
+				if (binding == LOCAL || binding == FIELD || binding == STATIC_FIELD) {
+					return type;
+				}
+				if (binding == CLASS) {
+					report(ErrorCode.NOT_A_VALUE, node, _ast.getName(node));
+				} else if (binding == LENGTH) {
+					report(ErrorCode.UNSUPPORTED, node, "assignment to length");
+				}
+				return null;
+			case INDEX:
+				return type;
+			default:
+				report(ErrorCode.UNSUPPORTED, node, "assignment to " + _ast.getKind(node));
+				return null;
+		}
+	}
+
+	private void expect(int node, String type) {
+		String actual = value(node);
+		if (actual != null && type != null && !actual.equals(type)) {
+			report(ErrorCode.TYPE_MISMATCH, node, Declarations.display(type), Declarations.display(actual));
+		}
+	}
+
+	// The type of an expression that must have a value, or null.
+	private String value(int node) {
+		String type = expression(node);
+		if (_bindings[node] == CLASS) {
+			report(ErrorCode.NOT_A_VALUE, node, _ast.getName(node));
+			return null;
+		}
+		if (Declarations.VOID.equals(type)) {
+			report(ErrorCode.NOT_A_VALUE, node, "void");
+			return null;
+		}
+		return type;
+	}
+
+	// The type of an expression, null if it has none or could not be typed. A class name
+	// is bound to its class but has no type.
+	private String expression(int node) {
+		String type = null;
+		int first = _ast.getFirstChild(node);
+		switch (_ast.getKind(node)) {
+			case INT_LITERAL:
+				type = Declarations.INT;
+				break;
+			case BOOLEAN_LITERAL:
+				type = Declarations.BOOLEAN;
+				break;
+			case THIS:
+				if (_method.isStatic()) {
+					report(ErrorCode.STATIC_CONTEXT, node, "this");
+				} else {
+					type = _class.getType();
+				}
+				break;
+			case IDENTIFIER:
+				type = identifier(node);
+				break;
+			case FIELD_ACCESS:
+				type = member(node, first);
+				break;
+			case INDEX:
+				if (_ast.getNextSibling(first) == AST.NONE) {
+					report(ErrorCode.UNSUPPORTED, node, "empty index");
+					break;
+				}
+				String array = value(first);
+				expect(_ast.getNextSibling(first), Declarations.INT);
+				if (array != null && array.startsWith("[")) {
+					type = array.substring(1);
+				} else if (array != null) {
+					report(ErrorCode.TYPE_MISMATCH, first, "array", Declarations.display(array));
+				}
+				break;
+			case CALL:
+				type = call(node, first);
+				break;
+			case NEW_OBJECT:
+				ClassDecl decl = _declarations.getClass(_ast.getName(node));
+				if (decl == null) {
+					report(ErrorCode.UNDECLARED, node, _ast.getName(node));
+				} else {
+					type = decl.getType();
+				}
+				break;
+			case NEW_ARRAY:
+				String element = _declarations.typeOf(first);
+				expect(_ast.getNextSibling(first), Declarations.INT);
+				type = element == null ? null : "[" + element;
+				break;
+			case UNARY:
+				type = OPERATORS[_ast.getValue(node)] == TokenType.NOT ? Declarations.BOOLEAN : Declarations.INT;
+				expect(first, type);
+				break;
+			case BINARY:
+				type = binary(node, first, _ast.getNextSibling(first));
+				break;
+			default:
+				report(ErrorCode.UNSUPPORTED, node, _ast.getKind(node));
+				break;
+		}
+		_types[node] = type;
+		return type;
+	}
+
+	private String identifier(int node) {
+		int name = _ast.getValue(node);
+		for (int i = _localCount - 1; i >= 0; i--) {
+			if (_localNames[i] == name) {
+				_bindings[node] = LOCAL;
+				_slots[node] = _localSlots[i];
+				return _localTypes[i];
+			}
+		}
+
+		FieldDecl field = _class.getField(_ast.getName(node));
+		if (field != null) {
+			if (!field.isStatic() && _method.isStatic()) {
+				report(ErrorCode.STATIC_CONTEXT, node, field.getName());
+				return null;
+			}
+			_bindings[node] = (byte) (field.isStatic() ? STATIC_FIELD : FIELD);
+			_declared[node] = field;
+			return field.getType();
+		}
+
+		ClassDecl decl = _declarations.getClass(_ast.getName(node));
+		if (decl != null) {
+			_bindings[node] = CLASS;
+			_declared[node] = decl;
+			return null;
+		}
+		report(ErrorCode.UNDECLARED, node, _ast.getName(node));
+		return null;
+	}
+
+	private String member(int node, int target) {
+		String name = _ast.getName(node);
+		String type = expression(target);
+		if (_bindings[target] == CLASS) {
+			ClassDecl decl = (ClassDecl) _declared[target];
+			FieldDecl field = decl.getField(name);
+			if (field == null) {
+				report(ErrorCode.UNDECLARED_MEMBER, node, decl.getName(), name);
+			} else if (!field.isStatic()) {
+				report(ErrorCode.STATIC_CONTEXT, node, name);
+			} else {
+				return bindField(node, field);
+			}
+			return null;
+		}
+
+		if (type == null) {
+			return null;
+		}
+		if (type.startsWith("[") && name.equals("length")) {
+			_bindings[node] = LENGTH;
+			return Declarations.INT;
+		}
+		ClassDecl decl = _declarations.classOf(type);
+		FieldDecl field = decl == null ? null : decl.getField(name);
+		if (field == null) {
+			report(ErrorCode.UNDECLARED_MEMBER, node, Declarations.display(type), name);
+			return null;
+		}
+		return bindField(node, field);
+	}
+
+	private String bindField(int node, FieldDecl field) {
+		if ((field.getFlags() & AST.PRIVATE) != 0 && field.getOwner() != _class) {
+			report(ErrorCode.PRIVATE_MEMBER, node, field.getName(), field.getOwner().getName());
+			return null;
+		}
+		_bindings[node] = (byte) (field.isStatic() ? STATIC_FIELD : FIELD);
+		_declared[node] = field;
+		return field.getType();
+	}
+
+	private String call(int node, int callee) {
+		MethodDecl method = null;
+		String name = _ast.getName(callee);
+		if (isPrintln(callee)) {
+			_bindings[node] = PRINTLN;
+			int argument = _ast.getNextSibling(callee);
+			if (argument == AST.NONE || _ast.getNextSibling(argument) != AST.NONE) {
+				report(ErrorCode.ARGUMENT_COUNT, node, name, 1, _ast.getChildCount(node) - 1);
+				return null;
+			}
+			String type = value(argument);
+			if (type != null && !type.equals(Declarations.INT) && !type.equals(Declarations.BOOLEAN)) {
+				report(ErrorCode.TYPE_MISMATCH, argument, "int", Declarations.display(type));
+			}
+			return Declarations.VOID;
+		}
+
+		if (_ast.getKind(callee) == NodeKind.IDENTIFIER) {
+			method = _class.getMethod(name);
+			if (method == null) {
+				report(ErrorCode.UNDECLARED, callee, name);
+			} else if (!method.isStatic() && _method.isStatic()) {
+				report(ErrorCode.STATIC_CONTEXT, callee, name);
+				method = null;
+			}
+		} else if (_ast.getKind(callee) == NodeKind.FIELD_ACCESS) {
+			int target = _ast.getFirstChild(callee);
+			String type = expression(target);
+			if (_bindings[target] == CLASS) {
+				ClassDecl decl = (ClassDecl) _declared[target];
+				method = decl.getMethod(name);
+				if (method == null) {
+					report(ErrorCode.UNDECLARED_MEMBER, callee, decl.getName(), name);
+				} else if (!method.isStatic()) {
+					report(ErrorCode.STATIC_CONTEXT, callee, name);
+					method = null;
+				}
+			} else if (type != null) {
+				ClassDecl decl = _declarations.classOf(type);
+				method = decl == null ? null : decl.getMethod(name);
+				if (method == null) {
+					report(ErrorCode.UNDECLARED_MEMBER, callee, Declarations.display(type), name);
+				}
+			}
+			if (method != null && (method.getFlags() & AST.PRIVATE) != 0 && method.getOwner() != _class) {
+				report(ErrorCode.PRIVATE_MEMBER, callee, name, method.getOwner().getName());
+				method = null;
+			}
+		} else {
+			report(ErrorCode.UNSUPPORTED, callee, "call of " + _ast.getKind(callee));
+		}
+
+		String[] parameters = method == null ? null : method.getParameterTypes();
+		int count = 0;
+		for (int argument = _ast.getNextSibling(callee); argument != AST.NONE; argument = _ast.getNextSibling(argument)) {
+			if (parameters != null && count < parameters.length) {
+				expect(argument, parameters[count]);
+			} else {
+				value(argument);
+			}
+			count++;
+		}
+		if (method == null) {
+			return null;
+		}
+		if (count != parameters.length) {
+			report(ErrorCode.ARGUMENT_COUNT, node, name, parameters.length, count);
+			return null;
+		}
+		_bindings[node] = (byte) (method.isStatic() ? STATIC_METHOD : METHOD);
+		_declared[node] = method;
+		return method.getReturnType();
+	}
+
+	private boolean isPrintln(int callee) {
+		if (_ast.getKind(callee) != NodeKind.FIELD_ACCESS || !"println".equals(_ast.getName(callee))) {
+			return false;
+		}
+		int out = _ast.getFirstChild(callee);
+		if (_ast.getKind(out) != NodeKind.FIELD_ACCESS || !"out".equals(_ast.getName(out))) {
+			return false;
+		}
+		int system = _ast.getFirstChild(out);
+		if (_ast.getKind(system) != NodeKind.IDENTIFIER || !"System".equals(_ast.getName(system))) {
+			return false;
+		}
+		int name = _ast.getValue(system);
+		for (int i = 0; i < _localCount; i++) {
+			if (_localNames[i] == name) {
+				return false;
+			}
+		}
+		return _class.getField("System") == null && _declarations.getClass("System") == null;
+	}
+
+	private String binary(int node, int left, int right) {
+		switch (OPERATORS[_ast.getValue(node)]) {
+			case PLUS:
+			case MINUS:
+			case TIMES:
+			case DIVIDE:
+				expect(left, Declarations.INT);
+				expect(right, Declarations.INT);
+				return Declarations.INT;
+			case LESS:
+			case GREATER:
+			case LESS_EQUAL:
+			case GREATER_EQUAL:
+				expect(left, Declarations.INT);
+				expect(right, Declarations.INT);
+				return Declarations.BOOLEAN;
+			case AND:
+			case OR:
+				expect(left, Declarations.BOOLEAN);
+				expect(right, Declarations.BOOLEAN);
+				return Declarations.BOOLEAN;
+			default:
+				String type = value(left);
+				if (type != null) {
+					expect(right, type);
+				} else {
+					value(right);
+				}
+				return Declarations.BOOLEAN;
+		}
+	}
+
+	private void report(ErrorCode code, int node, Object... arguments) {
+		int offset = _ast.getPosition(node);
+		_errors.report(code, _lines.getLine(offset), _lines.getColumn(offset), arguments);
+	}
+}
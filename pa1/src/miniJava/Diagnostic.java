@@ -0,0 +1,86 @@
+package miniJava;
+
+import java.util.Arrays;
+
+// Equality covers the code and arguments but not the position, which is what
+// deduplication of repeatable codes keys on.
+public class Diagnostic {
+	private final ErrorCode _code;
+	private final int _line;
+	private final int _column;
+	private final Object[] _arguments;
+	private int _count = 1;
+
+	public Diagnostic(ErrorCode code, int line, int column, Object... arguments) {
+		this._code = code;
+		this._line = line;
+		this._column = column;
+		this._arguments = arguments;
+	}
+
+	public ErrorCode getCode() {
+		return _code;
+	}
+
+	public int getLine() {
+		return _line;
+	}
+
+	public int getColumn() {
+		return _column;
+	}
+
+	public Object[] getArguments() {
+		return _arguments;
+	}
+
+	public int getCount() {
+		return _count;
+	}
+
+	void setCount(int count) {
+		this._count = count;
+	}
+
+	public String getMessage() {
+		String template = _code.getTemplate();
+		StringBuilder sb = new StringBuilder();
+		int argument = 0;
+		int from = 0;
+		for (int at = template.indexOf("{}"); at >= 0; at = template.indexOf("{}", from)) {
+			sb.append(template, from, at);
+			if (argument < _arguments.length) {
+				sb.append(_arguments[argument++]);
+			}
+			from = at + 2;
+		}
+		sb.append(template, from, template.length());
+		while (argument < _arguments.length) {
+			sb.append(_arguments[argument++]);
+		}
+		return sb.toString();
+	}
+
+	// The message prefixed by where it was reported, when that is known. Line 0 marks a
+	// diagnostic about the whole compile, such as a missing main.
+	public String format() {
+		if (_line <= 0) {
+			return getMessage();
+		}
+		return "line " + _line + ", column " + _column + ": " + getMessage();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof Diagnostic)) {
+			return false;
+		}
+		Diagnostic diagnostic = (Diagnostic) other;
+		return _code == diagnostic._code && Arrays.equals(_arguments, diagnostic._arguments);
+	}
+
+	@Override
+	public int hashCode() {
+		return _code.hashCode() * 31 + Arrays.hashCode(_arguments);
+	}
+}
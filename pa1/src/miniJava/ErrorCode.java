@@ -0,0 +1,59 @@
+package miniJava;
+
+// Templates are filled left to right, one argument per {}; arguments beyond the last
+// placeholder are appended. Repeatable codes are reported once with an occurrence count.
+public enum ErrorCode {
+	MESSAGE(""),
+
+	UNKNOWN_OPERATOR("Unknown operator: {}", true),
+	UNCLOSED_COMMENT("Unclosed multiline comment"),
+	INVALID_CHARACTER("Invalid character: {}", true),
+	IO_ERROR("I/O error: {}"),
+
+	EXPECTED_MEMBER("Expected field or method declaration, but got {}"),
+	VOID_FIELD("'void' is not a valid type for field declarations{}"),
+	EXPECTED_SEMICOLON("Expected token SEMICOLON, but got {}"),
+	EXPECTED_METHOD_BODY("Expected method body or semicolon, but got {}"),
+	BOOLEAN_ARRAY("Arrays of type boolean are not allowed: {}"),
+	EXPECTED_TYPE("Expected type, but got {}"),
+	UNINITIALIZED_LOCAL("Local variable declaration without initialization is not allowed: {}"),
+	EMPTY_STATEMENT("Empty statement is not allowed: {}"),
+	EXPECTED_REFERENCE("Expected 'this' or identifier, but got {}"),
+	UNEXPECTED_PRIMARY("Unexpected token in primary expression: {}"),
+	MULTIPLE_INDEXING("Multiple indexing operations are not allowed: {}"),
+	INDEXED_CALL("Array access on method call is not allowed: {}"),
+	MULTI_DIMENSIONAL_INDEX("Multi-dimensional array indexing is not allowed: {}"),
+	EXPECTED_TOKEN("Expected token {}, but got {} of type {}"),
+
+	UNDECLARED("Undeclared identifier: {}"),
+	UNDECLARED_MEMBER("{} has no member {}"),
+	DUPLICATE_DECLARATION("Duplicate declaration of {}"),
+	TYPE_MISMATCH("Expected type {}, but got {}"),
+	STATIC_CONTEXT("Cannot refer to {} from a static method"),
+	PRIVATE_MEMBER("{} is private to {}"),
+	ARGUMENT_COUNT("{} takes {} arguments, but got {}"),
+	NOT_A_VALUE("{} is not a value"),
+	NO_MAIN("No method public static void main(String[]) to run"),
+	UNSUPPORTED("Not supported: {}"),
+	CODE_TOO_LARGE("Method {} is too large for a class file");
+
+	private final String _template;
+	private final boolean _repeatable;
+
+	ErrorCode(String template) {
+		this(template, false);
+	}
+
+	ErrorCode(String template, boolean repeatable) {
+		this._template = template;
+		this._repeatable = repeatable;
+	}
+
+	public String getTemplate() {
+		return _template;
+	}
+
+	public boolean isRepeatable() {
+		return _repeatable;
+	}
+}
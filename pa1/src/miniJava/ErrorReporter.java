@@ -1,31 +1,133 @@
 package miniJava;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+// Diagnostics are kept structured and only formatted on output. At most a fixed number
+// are kept; the rest are counted and summarized. A repeatable diagnostic that has already
+// been kept is folded into it, so a mis-encoded file reports each bad byte once.
+// getErrorCount() counts every report, kept or not, so parser recovery is unaffected.
+// Each is printed with its position; a folded one with the position of its first report.
+// A reporter is for one thread at a time; ConcurrentErrorReporter is the one to share.
 public class ErrorReporter {
-	private List<String> _errorQueue;
+	public static final int DEFAULT_LIMIT = 100;
+
+	private final int _limit;
+	private final List<Diagnostic> _diagnostics = new ArrayList<Diagnostic>();
+	private final Map<Diagnostic, Diagnostic> _repeatable = new HashMap<Diagnostic, Diagnostic>();
+	private int _errorCount;
+	private int _suppressed;
 
 	public ErrorReporter() {
-		this._errorQueue = new ArrayList<String>();
+		this(DEFAULT_LIMIT);
+	}
+
+	public ErrorReporter(int limit) {
+		this._limit = limit;
+	}
+
+	public int getLimit() {
+		return _limit;
 	}
 
 	public boolean hasErrors() {
-		return !_errorQueue.isEmpty();
+		return _errorCount > 0;
+	}
+
+	public int getErrorCount() {
+		return _errorCount;
+	}
+
+	public int getSuppressedCount() {
+		return _suppressed;
+	}
+
+	public List<Diagnostic> getDiagnostics() {
+		return Collections.unmodifiableList(_diagnostics);
 	}
 
 	public void outputErrors() {
-		for (String error : _errorQueue) {
-			System.out.println(error);
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+		outputErrors(out);
+		out.flush();
+	}
+
+	public void outputErrors(PrintWriter out) {
+		for (Diagnostic diagnostic : _diagnostics) {
+			if (diagnostic.getCount() > 1) {
+				out.println(diagnostic.format() + " (" + diagnostic.getCount() + " occurrences)");
+			} else {
+				out.println(diagnostic.format());
+			}
+		}
+		if (_suppressed > 0) {
+			out.println(_suppressed + " more errors suppressed");
 		}
 	}
 
-	public void reportError(String... error) {
-		StringBuilder sb = new StringBuilder();
+	public void report(ErrorCode code, int line, int column, Object... arguments) {
+		report(new Diagnostic(code, line, column, arguments));
+	}
+
+	public void report(Diagnostic diagnostic) {
+		_errorCount++;
+		boolean repeatable = diagnostic.getCode().isRepeatable();
+		if (repeatable) {
+			Diagnostic first = _repeatable.get(diagnostic);
+			if (first != null) {
+				first.setCount(first.getCount() + 1);
+				return;
+			}
+		}
+		if (_diagnostics.size() >= _limit) {
+			_suppressed++;
+			return;
+		}
+		if (repeatable) {
+			_repeatable.put(diagnostic, diagnostic);
+		}
+		_diagnostics.add(diagnostic);
+	}
 
-		for (String s : error)
-			sb.append(s);
+	// Reports diagnostic times over, as that many reports of it in a row would.
+	public void report(Diagnostic diagnostic, int times) {
+		if (!diagnostic.getCode().isRepeatable()) {
+			for (int i = 0; i < times; i++) {
+				report(diagnostic);
+			}
+			return;
+		}
+		report(diagnostic);
+		if (times > 1) {
+			_errorCount += times - 1;
+			Diagnostic first = _repeatable.get(diagnostic);
+			if (first != null) {
+				first.setCount(first.getCount() + times - 1);
+			} else {
+				_suppressed += times - 1;
+			}
+		}
+	}
 
-		_errorQueue.add(sb.toString());
+	public void reportError(String... error) {
+		report(ErrorCode.MESSAGE, 0, 0, (Object[]) error);
+	}
+
+	// Copies another reporter's final state, as if its reports had been made here.
+	void restore(List<Diagnostic> diagnostics, int suppressed, int errorCount) {
+		for (Diagnostic diagnostic : diagnostics) {
+			if (diagnostic.getCode().isRepeatable()) {
+				_repeatable.put(diagnostic, diagnostic);
+			}
+			_diagnostics.add(diagnostic);
+		}
+		_suppressed += suppressed;
+		_errorCount += errorCount;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,342 @@
+package miniJava.Interpreter;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import miniJava.ContextualAnalysis.Resolver;
+
+// Runs a resolved program in process, from the Routines its methods linearize to. All
+// frames share one int[] and one Object[] of slots: a frame's locals are followed by its
+// operand stack, and a call's arguments on that stack become the callee's first locals.
+// Each slot is used as an int or as a reference, never both at once, as the routine's
+// instructions say.
+//
+// int[] arrays are int[], and other arrays are Object[]. Errors a program can run into,
+// such as dividing by zero or indexing out of bounds, are thrown as the JVM would.
+public class Interpreter {
+	private static final int INITIAL_SLOTS = 1 << 10;
+	private static final int MAX_SLOTS = 1 << 24;
+	private static final int[] NO_INTS = new int[0];
+	private static final Object[] NO_REFERENCES = new Object[0];
+
+	private final Routine[] _routines;
+	private final int _main;
+	private final int[] _intFieldCounts;
+	private final int[] _referenceFieldCounts;
+	private final int _staticIntCount;
+	private final int _staticReferenceCount;
+
+	public Interpreter(Resolver resolver) {
+		Linearizer linearizer = new Linearizer(resolver);
+		this._routines = linearizer.getRoutines();
+		this._main = resolver.getDeclarations().getMain().getId();
+		this._intFieldCounts = linearizer.getIntFieldCounts();
+		this._referenceFieldCounts = linearizer.getReferenceFieldCounts();
+		this._staticIntCount = linearizer.getStaticIntCount();
+		this._staticReferenceCount = linearizer.getStaticReferenceCount();
+	}
+
+	// The length of the linearized code of every method together.
+	public int getCodeSize() {
+		int size = 0;
+		for (Routine routine : _routines) {
+			size += routine.getCode().length;
+		}
+		return size;
+	}
+
+	// Runs main with static fields zero and no arguments, and prints to out.
+	public void run(PrintStream out) {
+		int[] ints = new int[INITIAL_SLOTS];
+		Object[] references = new Object[INITIAL_SLOTS];
+		int[] staticInts = new int[_staticIntCount];
+		Object[] staticReferences = new Object[_staticReferenceCount];
+		// The routine, return address and base of each caller.
+		int[] frames = new int[3 * 64];
+		int depth = 0;
+
+		int current = _main;
+		Routine routine = _routines[current];
+		int[] code = routine.getCode();
+		int pc = 0;
+		int base = 0;
+		int sp = routine.getLocalCount();
+		if (routine.getFrameSize() > ints.length) {
+			ints = Arrays.copyOf(ints, grow(routine.getFrameSize()));
+			references = Arrays.copyOf(references, ints.length);
+		}
+		// main's String[] parameter; strings are never created, so an empty Object[] will do.
+		references[0] = NO_REFERENCES;
+
+		for (;;) {
+			switch (code[pc++]) {
+				case Opcode.ICONST:
+					ints[sp++] = code[pc++];
+					break;
+				case Opcode.ACONST_NULL:
+					references[sp++] = null;
+					break;
+				case Opcode.ILOAD:
+					ints[sp++] = ints[base + code[pc++]];
+					break;
+				case Opcode.ALOAD:
+					references[sp++] = references[base + code[pc++]];
+					break;
+				case Opcode.ISTORE:
+					ints[base + code[pc++]] = ints[--sp];
+					break;
+				case Opcode.ASTORE:
+					references[base + code[pc++]] = references[--sp];
+					break;
+				case Opcode.IINC:
+					ints[base + code[pc]] += code[pc + 1];
+					pc += 2;
+					break;
+				case Opcode.POP:
+					references[--sp] = null;
+					break;
+				case Opcode.ILOAD2:
+					ints[sp] = ints[base + code[pc]];
+					ints[sp + 1] = ints[base + code[pc + 1]];
+					sp += 2;
+					pc += 2;
+					break;
+
+				case Opcode.IADD:
+					sp--;
+					ints[sp - 1] += ints[sp];
+					break;
+				case Opcode.ISUB:
+					sp--;
+					ints[sp - 1] -= ints[sp];
+					break;
+				case Opcode.IMUL:
+					sp--;
+					ints[sp - 1] *= ints[sp];
+					break;
+				case Opcode.IDIV:
+					sp--;
+					ints[sp - 1] /= ints[sp];
+					break;
+				case Opcode.ISHL:
+					sp--;
+					ints[sp - 1] <<= ints[sp];
+					break;
+				case Opcode.INEG:
+					ints[sp - 1] = -ints[sp - 1];
+					break;
+				case Opcode.INOT:
+					ints[sp - 1] ^= 1;
+					break;
+				case Opcode.IADD_CONST:
+					ints[sp - 1] += code[pc++];
+					break;
+				case Opcode.IMUL_CONST:
+					ints[sp - 1] *= code[pc++];
+					break;
+				case Opcode.IDIV_CONST:
+					ints[sp - 1] /= code[pc++];
+					break;
+				case Opcode.ISHL_CONST:
+					ints[sp - 1] <<= code[pc++];
+					break;
+
+				case Opcode.GOTO:
+					pc = code[pc];
+					break;
+				case Opcode.IFEQ:
+					pc = ints[--sp] == 0 ? code[pc] : pc + 1;
+					break;
+				case Opcode.IFNE:
+					pc = ints[--sp] != 0 ? code[pc] : pc + 1;
+					break;
+				case Opcode.IF_ICMPEQ:
+					sp -= 2;
+					pc = ints[sp] == ints[sp + 1] ? code[pc] : pc + 1;
+					break;
+				case Opcode.IF_ICMPNE:
+					sp -= 2;
+					pc = ints[sp] != ints[sp + 1] ? code[pc] : pc + 1;
+					break;
+				case Opcode.IF_ICMPLT:
+					sp -= 2;
+					pc = ints[sp] < ints[sp + 1] ? code[pc] : pc + 1;
+					break;
+				case Opcode.IF_ICMPGE:
+					sp -= 2;
+					pc = ints[sp] >= ints[sp + 1] ? code[pc] : pc + 1;
+					break;
+				case Opcode.IF_ICMPGT:
+					sp -= 2;
+					pc = ints[sp] > ints[sp + 1] ? code[pc] : pc + 1;
+					break;
+				case Opcode.IF_ICMPLE:
+					sp -= 2;
+					pc = ints[sp] <= ints[sp + 1] ? code[pc] : pc + 1;
+					break;
+				case Opcode.IF_ACMPEQ:
+					sp -= 2;
+					pc = references[sp] == references[sp + 1] ? code[pc] : pc + 1;
+					break;
+				case Opcode.IF_ACMPNE:
+					sp -= 2;
+					pc = references[sp] != references[sp + 1] ? code[pc] : pc + 1;
+					break;
+				case Opcode.IF_ICMPEQ_CONST:
+					pc = ints[--sp] == code[pc] ? code[pc + 1] : pc + 2;
+					break;
+				case Opcode.IF_ICMPNE_CONST:
+					pc = ints[--sp] != code[pc] ? code[pc + 1] : pc + 2;
+					break;
+				case Opcode.IF_ICMPLT_CONST:
+					pc = ints[--sp] < code[pc] ? code[pc + 1] : pc + 2;
+					break;
+				case Opcode.IF_ICMPGE_CONST:
+					pc = ints[--sp] >= code[pc] ? code[pc + 1] : pc + 2;
+					break;
+				case Opcode.IF_ICMPGT_CONST:
+					pc = ints[--sp] > code[pc] ? code[pc + 1] : pc + 2;
+					break;
+				case Opcode.IF_ICMPLE_CONST:
+					pc = ints[--sp] <= code[pc] ? code[pc + 1] : pc + 2;
+					break;
+
+				case Opcode.IGETFIELD:
+					ints[sp - 1] = ((Instance) references[sp - 1])._ints[code[pc++]];
+					break;
+				case Opcode.AGETFIELD:
+					references[sp - 1] = ((Instance) references[sp - 1])._references[code[pc++]];
+					break;
+				case Opcode.IPUTFIELD:
+					sp -= 2;
+					((Instance) references[sp])._ints[code[pc++]] = ints[sp + 1];
+					break;
+				case Opcode.APUTFIELD:
+					sp -= 2;
+					((Instance) references[sp])._references[code[pc++]] = references[sp + 1];
+					break;
+				case Opcode.IGETSTATIC:
+					ints[sp++] = staticInts[code[pc++]];
+					break;
+				case Opcode.AGETSTATIC:
+					references[sp++] = staticReferences[code[pc++]];
+					break;
+				case Opcode.IPUTSTATIC:
+					staticInts[code[pc++]] = ints[--sp];
+					break;
+				case Opcode.APUTSTATIC:
+					staticReferences[code[pc++]] = references[--sp];
+					break;
+
+				case Opcode.NEW:
+					references[sp++] = new Instance(_intFieldCounts[code[pc]], _referenceFieldCounts[code[pc]]);
+					pc++;
+					break;
+				case Opcode.INEWARRAY:
+					references[sp - 1] = new int[ints[sp - 1]];
+					break;
+				case Opcode.ANEWARRAY:
+					references[sp - 1] = new Object[ints[sp - 1]];
+					break;
+				case Opcode.IARRAYLENGTH:
+					ints[sp - 1] = ((int[]) references[sp - 1]).length;
+					break;
+				case Opcode.AARRAYLENGTH:
+					ints[sp - 1] = ((Object[]) references[sp - 1]).length;
+					break;
+				case Opcode.IALOAD:
+					sp--;
+					ints[sp - 1] = ((int[]) references[sp - 1])[ints[sp]];
+					break;
+				case Opcode.AALOAD:
+					sp--;
+					references[sp - 1] = ((Object[]) references[sp - 1])[ints[sp]];
+					break;
+				case Opcode.IASTORE:
+					sp -= 3;
+					((int[]) references[sp])[ints[sp + 1]] = ints[sp + 2];
+					break;
+				case Opcode.AASTORE:
+					sp -= 3;
+					((Object[]) references[sp])[ints[sp + 1]] = references[sp + 2];
+					break;
+
+				case Opcode.CALL_INSTANCE:
+				case Opcode.CALL: {
+					int callee = code[pc++];
+					Routine next = _routines[callee];
+					int nextBase = sp - next.getArgumentCount();
+					if (code[pc - 2] == Opcode.CALL_INSTANCE && references[nextBase] == null) {
+						throw new NullPointerException("Cannot invoke " + next.getName() + " on null");
+					}
+					if (3 * depth + 3 > frames.length) {
+						frames = Arrays.copyOf(frames, frames.length * 2);
+					}
+					frames[3 * depth] = current;
+					frames[3 * depth + 1] = pc;
+					frames[3 * depth + 2] = base;
+					depth++;
+
+					current = callee;
+					code = next.getCode();
+					pc = 0;
+					base = nextBase;
+					sp = base + next.getLocalCount();
+					if (base + next.getFrameSize() > ints.length) {
+						ints = Arrays.copyOf(ints, grow(base + next.getFrameSize()));
+						references = Arrays.copyOf(references, ints.length);
+					}
+					break;
+				}
+				case Opcode.RETURN:
+				case Opcode.IRETURN:
+				case Opcode.ARETURN: {
+					if (depth == 0) {
+						return;
+					}
+					int opcode = code[pc - 1];
+					if (opcode == Opcode.IRETURN) {
+						ints[base] = ints[sp - 1];
+						sp = base + 1;
+					} else if (opcode == Opcode.ARETURN) {
+						references[base] = references[sp - 1];
+						sp = base + 1;
+					} else {
+						sp = base;
+					}
+					depth--;
+					current = frames[3 * depth];
+					pc = frames[3 * depth + 1];
+					base = frames[3 * depth + 2];
+					code = _routines[current].getCode();
+					break;
+				}
+				case Opcode.PRINT_INT:
+					out.println(ints[--sp]);
+					break;
+				case Opcode.PRINT_BOOLEAN:
+					out.println(ints[--sp] != 0);
+					break;
+				default:
+					throw new IllegalStateException("bad opcode " + code[pc - 1] + " in " + _routines[current].getName());
+			}
+		}
+	}
+
+	private static int grow(int needed) {
+		if (needed > MAX_SLOTS) {
+			throw new StackOverflowError();
+		}
+		return Math.min(MAX_SLOTS, Math.max(needed, Integer.highestOneBit(needed) << 1));
+	}
+
+	private static final class Instance {
+		private final int[] _ints;
+		private final Object[] _references;
+
+		Instance(int intCount, int referenceCount) {
+			this._ints = intCount == 0 ? NO_INTS : new int[intCount];
+			this._references = referenceCount == 0 ? NO_REFERENCES : new Object[referenceCount];
+		}
+	}
+}
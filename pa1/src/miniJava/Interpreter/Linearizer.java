@@ -0,0 +1,546 @@
+package miniJava.Interpreter;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import miniJava.AbstractSyntaxTrees.AST;
+import miniJava.AbstractSyntaxTrees.NodeKind;
+import miniJava.ContextualAnalysis.Declarations;
+import miniJava.ContextualAnalysis.Declarations.ClassDecl;
+import miniJava.ContextualAnalysis.Declarations.FieldDecl;
+import miniJava.ContextualAnalysis.Declarations.MethodDecl;
+import miniJava.ContextualAnalysis.Resolver;
+import miniJava.SyntacticAnalyzer.TokenType;
+
+// Flattens the method bodies of a resolved program into Routines, one per method and
+// indexed as the methods are. Code is laid out as the code generator lays out bytecode:
+// conditions jump and loops test at the bottom. A local incremented by a constant, an
+// operation on a literal and two locals pushed in a row are one instruction each.
+//
+// Fields are numbered per class and static fields across the program, separately for
+// the int and the reference fields, so that objects hold an int[] and an Object[].
+final class Linearizer {
+	private static final TokenType[] OPERATORS = TokenType.values();
+
+	private final Resolver _resolver;
+	private final AST _ast;
+	private final Map<ClassDecl, Integer> _classIds = new IdentityHashMap<ClassDecl, Integer>();
+	private final Map<FieldDecl, Integer> _fieldIndexes = new IdentityHashMap<FieldDecl, Integer>();
+	private final int[] _intFieldCounts;
+	private final int[] _referenceFieldCounts;
+	private int _staticIntCount;
+	private int _staticReferenceCount;
+	private final Routine[] _routines;
+
+	private int[] _code = new int[64];
+	private int _size;
+	// Where the last instruction starts, or -1 if the next cannot be merged into it.
+	private int _last;
+	private int _stack;
+	private int _maxStack;
+	private boolean _reachable;
+
+	Linearizer(Resolver resolver) {
+		this._resolver = resolver;
+		this._ast = resolver.getAst();
+
+		Declarations declarations = resolver.getDeclarations();
+		_intFieldCounts = new int[declarations.getClasses().size()];
+		_referenceFieldCounts = new int[_intFieldCounts.length];
+		for (ClassDecl decl : declarations.getClasses()) {
+			int id = _classIds.size();
+			_classIds.put(decl, id);
+			for (FieldDecl field : decl.getFields()) {
+				boolean isInt = isInt(field.getType());
+				int index;
+				if (field.isStatic()) {
+					index = isInt ? _staticIntCount++ : _staticReferenceCount++;
+				} else {
+					index = isInt ? _intFieldCounts[id]++ : _referenceFieldCounts[id]++;
+				}
+				_fieldIndexes.put(field, index);
+			}
+		}
+
+		List<MethodDecl> methods = declarations.getMethods();
+		_routines = new Routine[methods.size()];
+		for (MethodDecl method : methods) {
+			_routines[method.getId()] = linearize(method);
+		}
+	}
+
+	Routine[] getRoutines() {
+		return _routines;
+	}
+
+	int[] getIntFieldCounts() {
+		return _intFieldCounts;
+	}
+
+	int[] getReferenceFieldCounts() {
+		return _referenceFieldCounts;
+	}
+
+	int getStaticIntCount() {
+		return _staticIntCount;
+	}
+
+	int getStaticReferenceCount() {
+		return _staticReferenceCount;
+	}
+
+	private Routine linearize(MethodDecl method) {
+		_size = 0;
+		_last = -1;
+		_stack = 0;
+		_maxStack = 0;
+		_reachable = true;
+		statement(method.getBody());
+		if (_reachable) {
+			String type = method.getReturnType();
+			if (Declarations.VOID.equals(type)) {
+				emit(Opcode.RETURN, 0);
+			} else if (isInt(type)) {
+				emit(Opcode.ICONST, 0, 1);
+				emit(Opcode.IRETURN, -1);
+			} else {
+				emit(Opcode.ACONST_NULL, 1);
+				emit(Opcode.ARETURN, -1);
+			}
+		}
+		int arguments = method.getParameterTypes().length + (method.isStatic() ? 0 : 1);
+		return new Routine(method.getOwner().getName() + "." + method.getName(), Arrays.copyOf(_code, _size),
+				arguments, method.getLocalCount(), _maxStack);
+	}
+
+	private void statement(int node) {
+		int first = _ast.getFirstChild(node);
+		switch (_ast.getKind(node)) {
+			case BLOCK:
+				for (int child = first; child != AST.NONE; child = _ast.getNextSibling(child)) {
+					statement(child);
+				}
+				break;
+			case VAR_DECL:
+				int init = _ast.getNextSibling(first);
+				boolean isInt = isInt(_resolver.getType(node));
+				if (init != AST.NONE) {
+					value(init);
+				} else if (isInt) {
+					emit(Opcode.ICONST, 0, 1);
+				} else {
+					emit(Opcode.ACONST_NULL, 1);
+				}
+				emit(isInt ? Opcode.ISTORE : Opcode.ASTORE, _resolver.getSlot(node), -1);
+				break;
+			case ASSIGN:
+				assign(first, _ast.getNextSibling(first));
+				break;
+			case CALL_STATEMENT:
+				value(first);
+				String type = _resolver.getType(first);
+				if (type != null && !Declarations.VOID.equals(type)) {
+					emit(Opcode.POP, -1);
+				}
+				break;
+			case IF:
+				Label otherwise = new Label();
+				condition(first, otherwise, false);
+				int then = _ast.getNextSibling(first);
+				statement(then);
+				int alternative = _ast.getNextSibling(then);
+				if (alternative == AST.NONE) {
+					place(otherwise);
+				} else {
+					Label end = new Label();
+					jump(Opcode.GOTO, end, 0);
+					place(otherwise);
+					statement(alternative);
+					place(end);
+				}
+				break;
+			case WHILE:
+				Label body = new Label();
+				Label test = new Label();
+				jump(Opcode.GOTO, test, 0);
+				place(body);
+				statement(_ast.getNextSibling(first));
+				place(test);
+				condition(first, body, true);
+				break;
+			case RETURN:
+				if (first == AST.NONE) {
+					emit(Opcode.RETURN, 0);
+				} else {
+					value(first);
+					emit(isInt(_resolver.getType(first)) ? Opcode.IRETURN : Opcode.ARETURN, -1);
+				}
+				break;
+			default:
+				throw new IllegalArgumentException(_ast.getKind(node).toString());
+		}
+	}
+
+	private void assign(int target, int value) {
+		int first = _ast.getFirstChild(target);
+		boolean isInt = isInt(_resolver.getType(target));
+		if (_ast.getKind(target) == NodeKind.INDEX) {
+			value(first);
+			value(_ast.getNextSibling(first));
+			value(value);
+			emit(isInt ? Opcode.IASTORE : Opcode.AASTORE, -3);
+			return;
+		}
+
+		switch (_resolver.getBinding(target)) {
+			case Resolver.LOCAL:
+				int slot = _resolver.getSlot(target);
+				if (isInt && isIncrement(slot, value)) {
+					int amount = _ast.getValue(_ast.getNextSibling(_ast.getFirstChild(value)));
+					boolean add = OPERATORS[_ast.getValue(value)] == TokenType.PLUS;
+					emit(Opcode.IINC, slot, add ? amount : -amount, 0);
+					break;
+				}
+				value(value);
+				emit(isInt ? Opcode.ISTORE : Opcode.ASTORE, slot, -1);
+				break;
+			case Resolver.FIELD:
+				if (_ast.getKind(target) == NodeKind.IDENTIFIER) {
+					emit(Opcode.ALOAD, 0, 1);
+				} else {
+					value(first);
+				}
+				value(value);
+				emit(isInt ? Opcode.IPUTFIELD : Opcode.APUTFIELD, _fieldIndexes.get(_resolver.getField(target)), -2);
+				break;
+			default:
+				discardTarget(target);
+				value(value);
+				emit(isInt ? Opcode.IPUTSTATIC : Opcode.APUTSTATIC, _fieldIndexes.get(_resolver.getField(target)), -1);
+				break;
+		}
+	}
+
+	// Whether a value is the local in slot plus or minus a literal.
+	private boolean isIncrement(int slot, int value) {
+		if (_ast.getKind(value) != NodeKind.BINARY) {
+			return false;
+		}
+		TokenType operator = OPERATORS[_ast.getValue(value)];
+		int left = _ast.getFirstChild(value);
+		int right = _ast.getNextSibling(left);
+		return (operator == TokenType.PLUS || operator == TokenType.MINUS) && _ast.getKind(right) == NodeKind.INT_LITERAL
+				&& _ast.getKind(left) == NodeKind.IDENTIFIER && _resolver.getBinding(left) == Resolver.LOCAL
+				&& _resolver.getSlot(left) == slot;
+	}
+
+	// Jumps to target if the condition is jumpIf, and falls through otherwise.
+	private void condition(int node, Label target, boolean jumpIf) {
+		int first = _ast.getFirstChild(node);
+		switch (_ast.getKind(node)) {
+			case BOOLEAN_LITERAL:
+				if ((_ast.getValue(node) != 0) == jumpIf) {
+					jump(Opcode.GOTO, target, 0);
+				}
+				return;
+			case UNARY:
+				condition(first, target, !jumpIf);
+				return;
+			case BINARY:
+				break;
+			default:
+				value(node);
+				jump(jumpIf ? Opcode.IFNE : Opcode.IFEQ, target, -1);
+				return;
+		}
+
+		int second = _ast.getNextSibling(first);
+		TokenType operator = OPERATORS[_ast.getValue(node)];
+		if (operator == TokenType.AND || operator == TokenType.OR) {
+			boolean decides = operator == TokenType.OR;
+			if (decides == jumpIf) {
+				condition(first, target, jumpIf);
+				condition(second, target, jumpIf);
+			} else {
+				Label skip = new Label();
+				condition(first, skip, decides);
+				condition(second, target, jumpIf);
+				place(skip);
+			}
+			return;
+		}
+
+		int opcode;
+		switch (operator) {
+			case LESS:
+				opcode = Opcode.IF_ICMPLT;
+				break;
+			case GREATER:
+				opcode = Opcode.IF_ICMPGT;
+				break;
+			case LESS_EQUAL:
+				opcode = Opcode.IF_ICMPLE;
+				break;
+			case GREATER_EQUAL:
+				opcode = Opcode.IF_ICMPGE;
+				break;
+			case EQUAL_EQUAL:
+				opcode = isInt(_resolver.getType(first)) ? Opcode.IF_ICMPEQ : Opcode.IF_ACMPEQ;
+				break;
+			case NOT_EQUAL:
+				opcode = isInt(_resolver.getType(first)) ? Opcode.IF_ICMPNE : Opcode.IF_ACMPNE;
+				break;
+			default:
+				value(node);
+				jump(jumpIf ? Opcode.IFNE : Opcode.IFEQ, target, -1);
+				return;
+		}
+		if (!jumpIf) {
+			opcode = Opcode.negate(opcode);
+		}
+		value(first);
+		if (_ast.getKind(second) == NodeKind.INT_LITERAL && opcode < Opcode.IF_ACMPEQ) {
+			jump(Opcode.withConstant(opcode), _ast.getValue(second), target, -1);
+		} else {
+			value(second);
+			jump(opcode, target, -2);
+		}
+	}
+
+	private void value(int node) {
+		int first = _ast.getFirstChild(node);
+		switch (_ast.getKind(node)) {
+			case INT_LITERAL:
+			case BOOLEAN_LITERAL:
+				emit(Opcode.ICONST, _ast.getValue(node), 1);
+				break;
+			case THIS:
+				emit(Opcode.ALOAD, 0, 1);
+				break;
+			case IDENTIFIER:
+			case FIELD_ACCESS:
+				reference(node, first);
+				break;
+			case INDEX:
+				value(first);
+				value(_ast.getNextSibling(first));
+				emit(isInt(_resolver.getType(node)) ? Opcode.IALOAD : Opcode.AALOAD, -1);
+				break;
+			case CALL:
+				call(node, first);
+				break;
+			case NEW_OBJECT:
+				ClassDecl decl = _resolver.getDeclarations().getClass(_ast.getName(node));
+				emit(Opcode.NEW, _classIds.get(decl), 1);
+				break;
+			case NEW_ARRAY:
+				value(_ast.getNextSibling(first));
+				emit(isInt(_resolver.getType(node).substring(1)) ? Opcode.INEWARRAY : Opcode.ANEWARRAY, 0);
+				break;
+			case UNARY:
+				value(first);
+				emit(OPERATORS[_ast.getValue(node)] == TokenType.NOT ? Opcode.INOT : Opcode.INEG, 0);
+				break;
+			case BINARY:
+				binary(node, first, _ast.getNextSibling(first));
+				break;
+			default:
+				throw new IllegalArgumentException(_ast.getKind(node).toString());
+		}
+	}
+
+	private void reference(int node, int target) {
+		boolean isInt = isInt(_resolver.getType(node));
+		switch (_resolver.getBinding(node)) {
+			case Resolver.LOCAL:
+				emit(isInt ? Opcode.ILOAD : Opcode.ALOAD, _resolver.getSlot(node), 1);
+				break;
+			case Resolver.FIELD:
+				if (_ast.getKind(node) == NodeKind.IDENTIFIER) {
+					emit(Opcode.ALOAD, 0, 1);
+				} else {
+					value(target);
+				}
+				emit(isInt ? Opcode.IGETFIELD : Opcode.AGETFIELD, _fieldIndexes.get(_resolver.getField(node)), 0);
+				break;
+			case Resolver.STATIC_FIELD:
+				discardTarget(node);
+				emit(isInt ? Opcode.IGETSTATIC : Opcode.AGETSTATIC, _fieldIndexes.get(_resolver.getField(node)), 1);
+				break;
+			case Resolver.LENGTH:
+				value(target);
+				emit(isInt(_resolver.getType(target).substring(1)) ? Opcode.IARRAYLENGTH : Opcode.AARRAYLENGTH, 0);
+				break;
+			default:
+				throw new IllegalArgumentException("unbound " + _ast.getName(node));
+		}
+	}
+
+	// A static member named through an instance still evaluates the instance.
+	private void discardTarget(int node) {
+		if (_ast.getKind(node) != NodeKind.FIELD_ACCESS) {
+			return;
+		}
+		int target = _ast.getFirstChild(node);
+		if (_resolver.getBinding(target) != Resolver.CLASS) {
+			value(target);
+			emit(Opcode.POP, -1);
+		}
+	}
+
+	private void call(int node, int callee) {
+		int binding = _resolver.getBinding(node);
+		if (binding == Resolver.PRINTLN) {
+			int argument = _ast.getNextSibling(callee);
+			value(argument);
+			emit(Declarations.INT.equals(_resolver.getType(argument)) ? Opcode.PRINT_INT : Opcode.PRINT_BOOLEAN, -1);
+			return;
+		}
+
+		MethodDecl method = _resolver.getMethod(node);
+		boolean instance = binding == Resolver.METHOD;
+		if (!instance) {
+			discardTarget(callee);
+		} else if (_ast.getKind(callee) == NodeKind.IDENTIFIER) {
+			emit(Opcode.ALOAD, 0, 1);
+		} else {
+			value(_ast.getFirstChild(callee));
+		}
+		int arguments = instance ? 1 : 0;
+		for (int argument = _ast.getNextSibling(callee); argument != AST.NONE; argument = _ast.getNextSibling(argument)) {
+			value(argument);
+			arguments++;
+		}
+		int result = Declarations.VOID.equals(method.getReturnType()) ? 0 : 1;
+		emit(instance ? Opcode.CALL_INSTANCE : Opcode.CALL, method.getId(), result - arguments);
+	}
+
+	private void binary(int node, int left, int right) {
+		int opcode;
+		switch (OPERATORS[_ast.getValue(node)]) {
+			case PLUS:
+				opcode = Opcode.IADD;
+				break;
+			case MINUS:
+				opcode = Opcode.ISUB;
+				break;
+			case TIMES:
+				opcode = Opcode.IMUL;
+				break;
+			case DIVIDE:
+				opcode = Opcode.IDIV;
+				break;
+			case SHIFT_LEFT:
+				opcode = Opcode.ISHL;
+				break;
+			default:
+				Label isFalse = new Label();
+				Label end = new Label();
+				condition(node, isFalse, false);
+				emit(Opcode.ICONST, 1, 1);
+				jump(Opcode.GOTO, end, 0);
+				place(isFalse);
+				emit(Opcode.ICONST, 0, 1);
+				place(end);
+				return;
+		}
+		value(left);
+		if (_ast.getKind(right) != NodeKind.INT_LITERAL) {
+			value(right);
+			emit(opcode, -1);
+		} else if (opcode == Opcode.IADD || opcode == Opcode.ISUB) {
+			int value = _ast.getValue(right);
+			emit(Opcode.IADD_CONST, opcode == Opcode.IADD ? value : -value, 0);
+		} else if (opcode == Opcode.IMUL || opcode == Opcode.IDIV) {
+			emit(opcode == Opcode.IMUL ? Opcode.IMUL_CONST : Opcode.IDIV_CONST, _ast.getValue(right), 0);
+		} else {
+			emit(Opcode.ISHL_CONST, _ast.getValue(right), 0);
+		}
+	}
+
+	private static boolean isInt(String type) {
+		return Declarations.INT.equals(type) || Declarations.BOOLEAN.equals(type);
+	}
+
+	private void emit(int opcode, int stackEffect) {
+		_last = _size;
+		append(opcode);
+		_stack += stackEffect;
+		_maxStack = Math.max(_maxStack, _stack);
+		if (opcode == Opcode.GOTO || opcode >= Opcode.RETURN && opcode <= Opcode.ARETURN) {
+			_reachable = false;
+		}
+	}
+
+	private void emit(int opcode, int operand, int stackEffect) {
+		if (opcode == Opcode.ILOAD && _last == _size - 2 && _code[_last] == Opcode.ILOAD) {
+			_code[_last] = Opcode.ILOAD2;
+			append(operand);
+			_stack++;
+			_maxStack = Math.max(_maxStack, _stack);
+			_last = -1;
+			return;
+		}
+		emit(opcode, stackEffect);
+		append(operand);
+	}
+
+	private void emit(int opcode, int first, int second, int stackEffect) {
+		emit(opcode, first, stackEffect);
+		append(second);
+	}
+
+	private void append(int value) {
+		if (_size == _code.length) {
+			_code = Arrays.copyOf(_code, _size * 2);
+		}
+		_code[_size++] = value;
+	}
+
+	// Conditional jumps pop their operands before jumping.
+	private void jump(int opcode, Label target, int stackEffect) {
+		emit(opcode, target._position, stackEffect);
+		jumpTo(target);
+	}
+
+	private void jump(int opcode, int operand, Label target, int stackEffect) {
+		emit(opcode, operand, target._position, stackEffect);
+		jumpTo(target);
+	}
+
+	private void jumpTo(Label target) {
+		target._stack = _stack;
+		if (target._position < 0) {
+			target.addSite(_size - 1);
+		}
+	}
+
+	private void place(Label label) {
+		// Code jumped to starts an instruction of its own.
+		_last = -1;
+		label._position = _size;
+		for (int i = 0; i < label._siteCount; i++) {
+			_code[label._sites[i]] = _size;
+		}
+		if (label._stack >= 0) {
+			_stack = label._stack;
+			_reachable = true;
+		}
+	}
+
+	private static final class Label {
+		private int _position = -1;
+		private int _stack = -1;
+		private int[] _sites = new int[2];
+		private int _siteCount;
+
+		private void addSite(int site) {
+			if (_siteCount == _sites.length) {
+				_sites = Arrays.copyOf(_sites, _siteCount * 2);
+			}
+			_sites[_siteCount++] = site;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package miniJava.Interpreter;
+
+// The instructions of a Routine. Each is one int followed by its operands. Ints and
+// booleans live in a frame's int slots and references in its reference slots, so every
+// instruction that moves a value says which of the two it moves.
+//
+// The _CONST forms take their right operand as an operand rather than from the stack,
+// and ILOAD2 pushes two locals: each is one dispatch where the plain forms take two.
+final class Opcode {
+	static final int ICONST = 0; // value
+	static final int ACONST_NULL = 1;
+	static final int ILOAD = 2; // slot
+	static final int ALOAD = 3; // slot
+	static final int ISTORE = 4; // slot
+	static final int ASTORE = 5; // slot
+	static final int IINC = 6; // slot, value
+	static final int POP = 7;
+	static final int ILOAD2 = 8; // slot, slot
+
+	static final int IADD = 9;
+	static final int ISUB = 10;
+	static final int IMUL = 11;
+	static final int IDIV = 12;
+	static final int ISHL = 13;
+	static final int INEG = 14;
+	static final int INOT = 15;
+	static final int IADD_CONST = 16; // value
+	static final int IMUL_CONST = 17; // value
+	static final int IDIV_CONST = 18; // value
+	static final int ISHL_CONST = 19; // value
+
+	// Conditional jumps come in pairs, each the negation of the other.
+	static final int IFEQ = 20; // target
+	static final int IFNE = 21; // target
+	static final int IF_ICMPEQ = 22; // target
+	static final int IF_ICMPNE = 23; // target
+	static final int IF_ICMPLT = 24; // target
+	static final int IF_ICMPGE = 25; // target
+	static final int IF_ICMPGT = 26; // target
+	static final int IF_ICMPLE = 27; // target
+	static final int IF_ACMPEQ = 28; // target
+	static final int IF_ACMPNE = 29; // target
+	static final int IF_ICMPEQ_CONST = 30; // value, target
+	static final int IF_ICMPNE_CONST = 31; // value, target
+	static final int IF_ICMPLT_CONST = 32; // value, target
+	static final int IF_ICMPGE_CONST = 33; // value, target
+	static final int IF_ICMPGT_CONST = 34; // value, target
+	static final int IF_ICMPLE_CONST = 35; // value, target
+	static final int GOTO = 36; // target
+
+	static final int IGETFIELD = 37; // index
+	static final int AGETFIELD = 38; // index
+	static final int IPUTFIELD = 39; // index
+	static final int APUTFIELD = 40; // index
+	static final int IGETSTATIC = 41; // index
+	static final int AGETSTATIC = 42; // index
+	static final int IPUTSTATIC = 43; // index
+	static final int APUTSTATIC = 44; // index
+
+	static final int NEW = 45; // class
+	static final int INEWARRAY = 46;
+	static final int ANEWARRAY = 47;
+	static final int IARRAYLENGTH = 48;
+	static final int AARRAYLENGTH = 49;
+	static final int IALOAD = 50;
+	static final int AALOAD = 51;
+	static final int IASTORE = 52;
+	static final int AASTORE = 53;
+
+	static final int CALL = 54; // routine
+	static final int CALL_INSTANCE = 55; // routine
+	static final int RETURN = 56;
+	static final int IRETURN = 57;
+	static final int ARETURN = 58;
+	static final int PRINT_INT = 59;
+	static final int PRINT_BOOLEAN = 60;
+
+	private Opcode() {
+	}
+
+	static int negate(int opcode) {
+		return opcode ^ 1;
+	}
+
+	// The form of an int comparison that compares with a constant.
+	static int withConstant(int opcode) {
+		return opcode - IF_ICMPEQ + IF_ICMPEQ_CONST;
+	}
+}
@@ -0,0 +1,40 @@
+package miniJava.Interpreter;
+
+// The linearized code of one method. Its arguments, the receiver first, are the top of
+// the caller's operand stack when it is called, and become its first locals in place.
+final class Routine {
+	private final String _name;
+	private final int[] _code;
+	private final int _argumentCount;
+	private final int _localCount;
+	private final int _maxStack;
+
+	Routine(String name, int[] code, int argumentCount, int localCount, int maxStack) {
+		this._name = name;
+		this._code = code;
+		this._argumentCount = argumentCount;
+		this._localCount = localCount;
+		this._maxStack = maxStack;
+	}
+
+	String getName() {
+		return _name;
+	}
+
+	int[] getCode() {
+		return _code;
+	}
+
+	int getArgumentCount() {
+		return _argumentCount;
+	}
+
+	int getLocalCount() {
+		return _localCount;
+	}
+
+	// The slots a call needs above the caller's: locals and operand stack.
+	int getFrameSize() {
+		return _localCount + _maxStack;
+	}
+}
@@ -0,0 +1,429 @@
+package miniJava.Optimizer;
+
+import java.io.PrintStream;
+
+import miniJava.ErrorCode;
+import miniJava.ErrorReporter;
+import miniJava.AbstractSyntaxTrees.AST;
+import miniJava.AbstractSyntaxTrees.NodeKind;
+import miniJava.ContextualAnalysis.Declarations.MethodDecl;
+import miniJava.ContextualAnalysis.Resolver;
+import miniJava.SyntacticAnalyzer.LineIndex;
+import miniJava.SyntacticAnalyzer.TokenType;
+
+// Rewrites the method bodies of a resolved program in place, for the code generator and
+// the interpreter to run less. Nodes are only ever turned into others of the same type
+// or replaced by one of their children, so the resolver's results stay valid for every
+// node still in the tree. The one node made that the parser does not make is a BINARY
+// SHIFT_LEFT, for a multiplication by a power of two. Each pass can be switched off and
+// counts what it changed.
+//
+// An operand whose value would be dropped is kept unless evaluating it can have no
+// effect, so a call or an index that could throw still runs.
+public class Optimizer {
+	public enum Pass {
+		// Operators on literals, and && and || whose left operand is a literal.
+		CONSTANT_FOLDING,
+		// Branches and loops whose condition is a literal, and statements that follow
+		// one that cannot complete.
+		DEAD_CODE,
+		// Operations that leave their operand as is or only negate it, such as x * 1,
+		// 0 - x, x / -1 or b && true, and x * 2^k, which becomes x << k.
+		STRENGTH_REDUCTION
+	}
+
+	private static final Pass[] PASSES = Pass.values();
+	private static final TokenType[] OPERATORS = TokenType.values();
+
+	private final Resolver _resolver;
+	private final AST _ast;
+	private final ErrorReporter _errors;
+	private final LineIndex _lines;
+	private final boolean[] _enabled = new boolean[PASSES.length];
+	private final int[] _counts = new int[PASSES.length];
+
+	public Optimizer(Resolver resolver, ErrorReporter errors, LineIndex lines) {
+		this._resolver = resolver;
+		this._ast = resolver.getAst();
+		this._errors = errors;
+		this._lines = lines;
+		for (int i = 0; i < PASSES.length; i++) {
+			_enabled[i] = true;
+		}
+	}
+
+	public void setEnabled(Pass pass, boolean enabled) {
+		_enabled[pass.ordinal()] = enabled;
+	}
+
+	public boolean isEnabled(Pass pass) {
+		return _enabled[pass.ordinal()];
+	}
+
+	// How many rewrites a pass made.
+	public int getCount(Pass pass) {
+		return _counts[pass.ordinal()];
+	}
+
+	// Returns false if a method was nested too deeply to optimize, which is reported.
+	// Every rewrite made before that is complete, so the tree is still valid.
+	public boolean optimize() {
+		int reported = _errors.getErrorCount();
+		for (MethodDecl method : _resolver.getDeclarations().getMethods()) {
+			if (method.getBody() == AST.NONE) {
+				continue;
+			}
+			try {
+				statement(method.getBody());
+			} catch (StackOverflowError e) {
+				int offset = _ast.getPosition(method.getNode());
+				_errors.report(ErrorCode.UNSUPPORTED, _lines.getLine(offset), _lines.getColumn(offset),
+						"nesting too deep in " + method.getName());
+			}
+		}
+		return _errors.getErrorCount() == reported;
+	}
+
+	public void print(PrintStream out) {
+		StringBuilder line = new StringBuilder("optimizer:");
+		for (Pass pass : PASSES) {
+			line.append(' ').append(pass.name().toLowerCase()).append('=');
+			line.append(_enabled[pass.ordinal()] ? String.valueOf(_counts[pass.ordinal()]) : "off");
+		}
+		out.println(line);
+	}
+
+	// Returns whether the statement can complete, and so run what follows it.
+	private boolean statement(int node) {
+		int first = _ast.getFirstChild(node);
+		switch (_ast.getKind(node)) {
+			case BLOCK:
+				return block(node, first);
+			case IF: {
+				int condition = expression(first);
+				int then = _ast.getNextSibling(first);
+				int otherwise = _ast.getNextSibling(then);
+				if (isBoolean(condition) && apply(Pass.DEAD_CODE)) {
+					int taken = _ast.getValue(condition) != 0 ? then : otherwise;
+					toBlock(node, taken);
+					return taken == AST.NONE || statement(taken);
+				}
+				relink(node, condition, first);
+				boolean completes = statement(then);
+				return otherwise == AST.NONE || statement(otherwise) || completes;
+			}
+			case WHILE: {
+				int condition = expression(first);
+				if (_ast.getKind(condition) == NodeKind.BOOLEAN_LITERAL && _ast.getValue(condition) == 0
+						&& apply(Pass.DEAD_CODE)) {
+					toBlock(node, AST.NONE);
+					return true;
+				}
+				relink(node, condition, first);
+				statement(_ast.getNextSibling(first));
+				// There is no break, so only a false condition ends a loop.
+				return !isBoolean(condition) || _ast.getValue(condition) == 0;
+			}
+			case RETURN:
+				if (first != AST.NONE) {
+					relink(node, expression(first), first);
+				}
+				return false;
+			default:
+				children(node);
+				return true;
+		}
+	}
+
+	private boolean block(int node, int first) {
+		int count = 0;
+		int child = first;
+		boolean completes = true;
+		while (child != AST.NONE && (completes || !_enabled[Pass.DEAD_CODE.ordinal()])) {
+			completes = statement(child);
+			count++;
+			child = _ast.getNextSibling(child);
+		}
+		if (child == AST.NONE) {
+			return completes;
+		}
+
+		int[] children = new int[count];
+		for (int i = 0, kept = first; i < count; i++, kept = _ast.getNextSibling(kept)) {
+			children[i] = kept;
+		}
+		for (; child != AST.NONE; child = _ast.getNextSibling(child)) {
+			_counts[Pass.DEAD_CODE.ordinal()]++;
+		}
+		_ast.setChildren(node, children, 0, count);
+		return false;
+	}
+
+	// Returns the node to use in place of node: node itself, possibly rewritten, or one of
+	// its operands.
+	private int expression(int node) {
+		children(node);
+		int first = _ast.getFirstChild(node);
+		switch (_ast.getKind(node)) {
+			case UNARY:
+				return unary(node, first);
+			case BINARY:
+				return binary(node, first, _ast.getNextSibling(first));
+			default:
+				return node;
+		}
+	}
+
+	// Optimizes the expressions among the children of node, which are types otherwise.
+	private void children(int node) {
+		int count = 0;
+		boolean changed = false;
+		for (int child = _ast.getFirstChild(node); child != AST.NONE; child = _ast.getNextSibling(child)) {
+			count++;
+		}
+		if (count == 0) {
+			return;
+		}
+		int[] children = new int[count];
+		int child = _ast.getFirstChild(node);
+		for (int i = 0; i < count; i++) {
+			int next = _ast.getNextSibling(child);
+			children[i] = expression(child);
+			changed |= children[i] != child;
+			child = next;
+		}
+		if (changed) {
+			_ast.setChildren(node, children, 0, count);
+		}
+	}
+
+	private int unary(int node, int operand) {
+		TokenType operator = OPERATORS[_ast.getValue(node)];
+		if (isLiteral(operand) && apply(Pass.CONSTANT_FOLDING)) {
+			int value = _ast.getValue(operand);
+			return toLiteral(node, _ast.getKind(operand), operator == TokenType.NOT ? value ^ 1 : -value);
+		}
+		// -(-x) is x even for the least int, which is its own negation.
+		if (_ast.getKind(operand) == NodeKind.UNARY && OPERATORS[_ast.getValue(operand)] == operator
+				&& apply(Pass.STRENGTH_REDUCTION)) {
+			return _ast.getFirstChild(operand);
+		}
+		return node;
+	}
+
+	private int binary(int node, int left, int right) {
+		TokenType operator = OPERATORS[_ast.getValue(node)];
+		if (_enabled[Pass.CONSTANT_FOLDING.ordinal()]) {
+			int folded = fold(node, operator, left, right);
+			if (folded != AST.NONE) {
+				_counts[Pass.CONSTANT_FOLDING.ordinal()]++;
+				return folded;
+			}
+		}
+		if (_enabled[Pass.STRENGTH_REDUCTION.ordinal()]) {
+			int reduced = reduce(node, operator, left, right);
+			if (reduced != AST.NONE) {
+				_counts[Pass.STRENGTH_REDUCTION.ordinal()]++;
+				return reduced;
+			}
+		}
+		return node;
+	}
+
+	// The node node folds to, or NONE.
+	private int fold(int node, TokenType operator, int left, int right) {
+		if ((operator == TokenType.AND || operator == TokenType.OR) && isBoolean(left)) {
+			// The left operand alone decides when it is false for && or true for ||.
+			boolean decides = operator == TokenType.OR;
+			return (_ast.getValue(left) != 0) == decides ? toLiteral(node, NodeKind.BOOLEAN_LITERAL, decides ? 1 : 0)
+					: right;
+		}
+		if (!isLiteral(left) || !isLiteral(right)) {
+			return AST.NONE;
+		}
+
+		int a = _ast.getValue(left);
+		int b = _ast.getValue(right);
+		switch (operator) {
+			case PLUS:
+				return toLiteral(node, NodeKind.INT_LITERAL, a + b);
+			case MINUS:
+				return toLiteral(node, NodeKind.INT_LITERAL, a - b);
+			case TIMES:
+				return toLiteral(node, NodeKind.INT_LITERAL, a * b);
+			case DIVIDE:
+				// Dividing by zero is left to throw when it runs.
+				return b == 0 ? AST.NONE : toLiteral(node, NodeKind.INT_LITERAL, a / b);
+			case LESS:
+				return toBoolean(node, a < b);
+			case GREATER:
+				return toBoolean(node, a > b);
+			case LESS_EQUAL:
+				return toBoolean(node, a <= b);
+			case GREATER_EQUAL:
+				return toBoolean(node, a >= b);
+			case EQUAL_EQUAL:
+				return toBoolean(node, a == b);
+			case NOT_EQUAL:
+				return toBoolean(node, a != b);
+			default:
+				return AST.NONE;
+		}
+	}
+
+	// The node node reduces to, or NONE.
+	private int reduce(int node, TokenType operator, int left, int right) {
+		switch (operator) {
+			case PLUS:
+				if (isInt(right, 0)) {
+					return left;
+				}
+				return isInt(left, 0) ? right : AST.NONE;
+			case MINUS:
+				if (isInt(right, 0)) {
+					return left;
+				}
+				return isInt(left, 0) ? toNegation(node, right) : AST.NONE;
+			case TIMES:
+				if (isInt(right, 1)) {
+					return left;
+				}
+				if (isInt(left, 1)) {
+					return right;
+				}
+				if (isInt(right, -1)) {
+					return toNegation(node, left);
+				}
+				if (isInt(left, -1)) {
+					return toNegation(node, right);
+				}
+				if (isInt(right, 0) && isPure(left)) {
+					return right;
+				}
+				if (isInt(left, 0) && isPure(right)) {
+					return left;
+				}
+				if (isPowerOfTwo(right)) {
+					return toShift(node, left, right);
+				}
+				// A literal has no effect, so it can move after the other operand.
+				return isPowerOfTwo(left) ? toShift(node, right, left) : AST.NONE;
+			case DIVIDE:
+				if (isInt(right, 1)) {
+					return left;
+				}
+				return isInt(right, -1) ? toNegation(node, left) : AST.NONE;
+			case AND:
+			case OR:
+				if (!isBoolean(right)) {
+					return AST.NONE;
+				}
+				// b && true and b || false are b, and b && false and b || true are the
+				// literal once b need not run.
+				boolean decides = operator == TokenType.OR;
+				if ((_ast.getValue(right) != 0) != decides) {
+					return left;
+				}
+				return isPure(left) ? right : AST.NONE;
+			default:
+				return AST.NONE;
+		}
+	}
+
+	// Whether evaluating node can have no effect, not even throwing.
+	private boolean isPure(int node) {
+		switch (_ast.getKind(node)) {
+			case INT_LITERAL:
+			case BOOLEAN_LITERAL:
+			case THIS:
+				return true;
+			case IDENTIFIER:
+				int binding = _resolver.getBinding(node);
+				return binding == Resolver.LOCAL || binding == Resolver.FIELD || binding == Resolver.STATIC_FIELD;
+			default:
+				return false;
+		}
+	}
+
+	private boolean apply(Pass pass) {
+		if (!_enabled[pass.ordinal()]) {
+			return false;
+		}
+		_counts[pass.ordinal()]++;
+		return true;
+	}
+
+	private boolean isLiteral(int node) {
+		NodeKind kind = _ast.getKind(node);
+		return kind == NodeKind.INT_LITERAL || kind == NodeKind.BOOLEAN_LITERAL;
+	}
+
+	private boolean isBoolean(int node) {
+		return _ast.getKind(node) == NodeKind.BOOLEAN_LITERAL;
+	}
+
+	private boolean isInt(int node, int value) {
+		return _ast.getKind(node) == NodeKind.INT_LITERAL && _ast.getValue(node) == value;
+	}
+
+	// Whether node is 2^k for k from 1 to 31, where 2^31 is the least int.
+	private boolean isPowerOfTwo(int node) {
+		if (_ast.getKind(node) != NodeKind.INT_LITERAL) {
+			return false;
+		}
+		int value = _ast.getValue(node);
+		return value != 1 && Integer.bitCount(value) == 1;
+	}
+
+	// x * 2^k is x << k for every int, overflow included.
+	private int toShift(int node, int operand, int power) {
+		_ast.setValue(power, Integer.numberOfTrailingZeros(_ast.getValue(power)));
+		_ast.setValue(node, TokenType.SHIFT_LEFT.ordinal());
+		_ast.setChildren(node, new int[] { operand, power }, 0, 2);
+		return node;
+	}
+
+	private int toLiteral(int node, NodeKind kind, int value) {
+		_ast.setKind(node, kind);
+		_ast.setValue(node, value);
+		_ast.setChildren(node, null, 0, 0);
+		return node;
+	}
+
+	private int toBoolean(int node, boolean value) {
+		return toLiteral(node, NodeKind.BOOLEAN_LITERAL, value ? 1 : 0);
+	}
+
+	private int toNegation(int node, int operand) {
+		_ast.setKind(node, NodeKind.UNARY);
+		_ast.setValue(node, TokenType.MINUS.ordinal());
+		_ast.setChildren(node, new int[] { operand }, 0, 1);
+		return node;
+	}
+
+	// A statement the pass removes becomes an empty block, or a block of the branch kept.
+	private void toBlock(int node, int statement) {
+		_ast.setKind(node, NodeKind.BLOCK);
+		if (statement == AST.NONE) {
+			_ast.setChildren(node, null, 0, 0);
+		} else {
+			_ast.setChildren(node, new int[] { statement }, 0, 1);
+		}
+	}
+
+	// Puts replacement in place of original, the first child of node.
+	private void relink(int node, int replacement, int original) {
+		if (replacement == original) {
+			return;
+		}
+		int count = _ast.getChildCount(node);
+		int[] children = new int[count];
+		children[0] = replacement;
+		int child = _ast.getNextSibling(original);
+		for (int i = 1; i < count; i++) {
+			children[i] = child;
+			child = _ast.getNextSibling(child);
+		}
+		_ast.setChildren(node, children, 0, count);
+	}
+}
@@ -0,0 +1,276 @@
+package miniJava;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import miniJava.SyntacticAnalyzer.Parser;
+import miniJava.SyntacticAnalyzer.Scanner;
+import miniJava.SyntacticAnalyzer.TokenStream;
+
+// Front-end results keyed by the SHA-256 of the source bytes. Each entry holds the
+// diagnostics of one compile and, when the source lexed cleanly, its token stream.
+// Entries are written to a temporary file and renamed into place, so concurrent
+// compilers only ever see complete entries; recency is the file's modification time.
+public class ParseCache {
+	public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+	private static final int MAGIC = 0x6D4A5043;
+	// Bump whenever the front end changes what it reports for the same input.
+	private static final int FORMAT_VERSION = 3;
+	private static final ErrorCode[] CODES = ErrorCode.values();
+	private static final String ENTRY_SUFFIX = ".parse";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+
+	private final Path _directory;
+	private final long _maxBytes;
+	private final AtomicLong _size = new AtomicLong(-1);
+
+	public ParseCache(Path directory, long maxBytes) throws IOException {
+		this._directory = Files.createDirectories(directory);
+		this._maxBytes = maxBytes;
+	}
+
+	public void compile(ByteBuffer source, ErrorReporter errorReporter, int maxErrors) {
+		byte[] digest = digest(source);
+		Path entry = entryPath(digest);
+		if (replay(entry, digest, source, errorReporter, maxErrors)) {
+			return;
+		}
+
+		ErrorReporter errors = new ErrorReporter(errorReporter.getLimit());
+		ErrorReporter lexicalErrors = new ErrorReporter();
+		TokenStream tokens = new TokenStream(new Scanner(source.duplicate(), lexicalErrors));
+		if (lexicalErrors.hasErrors()) {
+			// Lexical and syntax errors interleave when streaming, so only a streaming
+			// compile reports them in the usual order.
+			tokens = null;
+			Compiler.compile(source.duplicate(), errors, maxErrors);
+		} else {
+			Parser parser = new Parser(tokens, errors);
+			parser.setMaxErrors(maxErrors);
+			parser.parse();
+		}
+
+		errorReporter.restore(errors.getDiagnostics(), errors.getSuppressedCount(), errors.getErrorCount());
+		store(entry, digest, source, errors, maxErrors, tokens);
+	}
+
+	// Returns the cached token stream for the source, or null if there is none.
+	public TokenStream getTokens(ByteBuffer source) {
+		byte[] digest = digest(source);
+		try (DataInputStream in = open(entryPath(digest), digest, source)) {
+			in.readBoolean();
+			// Error limit, diagnostic limit, error count and suppressed count.
+			for (int i = 0; i < 4; i++) {
+				in.readInt();
+			}
+			readDiagnostics(in);
+			return in.readBoolean() ? TokenStream.readFrom(in, source) : null;
+		} catch (IOException | IndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+
+	private boolean replay(Path entry, byte[] digest, ByteBuffer source, ErrorReporter errorReporter,
+			int maxErrors) {
+		List<Diagnostic> diagnostics;
+		int suppressed;
+		int errorCount;
+		try (DataInputStream in = open(entry, digest, source)) {
+			boolean success = in.readBoolean();
+			// A clean result holds for any limits; diagnostics only for the same ones.
+			boolean sameLimits = in.readInt() == maxErrors;
+			sameLimits &= in.readInt() == errorReporter.getLimit();
+			if (!sameLimits && !success) {
+				return false;
+			}
+			errorCount = in.readInt();
+			suppressed = in.readInt();
+			diagnostics = readDiagnostics(in);
+		} catch (IOException | IndexOutOfBoundsException e) {
+			return false;
+		}
+
+		errorReporter.restore(diagnostics, suppressed, errorCount);
+		try {
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+		}
+		return true;
+	}
+
+	private DataInputStream open(Path entry, byte[] digest, ByteBuffer source) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)));
+		try {
+			byte[] stored = new byte[digest.length];
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				throw new IOException("not a cache entry: " + entry);
+			}
+			in.readFully(stored);
+			if (!Arrays.equals(stored, digest) || in.readInt() != source.remaining()) {
+				throw new IOException("cache entry does not match its source: " + entry);
+			}
+			return in;
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	// Arguments are stored as their text, which is all that formatting needs.
+	private static void writeDiagnostics(DataOutputStream out, ErrorReporter errors) throws IOException {
+		out.writeInt(errors.getErrorCount());
+		out.writeInt(errors.getSuppressedCount());
+		List<Diagnostic> diagnostics = errors.getDiagnostics();
+		out.writeInt(diagnostics.size());
+		for (Diagnostic diagnostic : diagnostics) {
+			out.writeByte(diagnostic.getCode().ordinal());
+			out.writeInt(diagnostic.getLine());
+			out.writeInt(diagnostic.getColumn());
+			out.writeInt(diagnostic.getCount());
+			Object[] arguments = diagnostic.getArguments();
+			out.writeInt(arguments.length);
+			for (Object argument : arguments) {
+				out.writeUTF(String.valueOf(argument));
+			}
+		}
+	}
+
+	private static List<Diagnostic> readDiagnostics(DataInputStream in) throws IOException {
+		List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+		for (int count = in.readInt(); count > 0; count--) {
+			ErrorCode code = CODES[in.readUnsignedByte()];
+			int line = in.readInt();
+			int column = in.readInt();
+			int repeats = in.readInt();
+			Object[] arguments = new Object[in.readInt()];
+			for (int i = 0; i < arguments.length; i++) {
+				arguments[i] = in.readUTF();
+			}
+			Diagnostic diagnostic = new Diagnostic(code, line, column, arguments);
+			diagnostic.setCount(repeats);
+			diagnostics.add(diagnostic);
+		}
+		return diagnostics;
+	}
+
+	private void store(Path entry, byte[] digest, ByteBuffer source, ErrorReporter errors, int maxErrors,
+			TokenStream tokens) {
+		Path temp = null;
+		try {
+			temp = Files.createTempFile(_directory, entry.getFileName().toString(), TEMP_SUFFIX);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.write(digest);
+				out.writeInt(source.remaining());
+				out.writeBoolean(!errors.hasErrors());
+				out.writeInt(maxErrors);
+				out.writeInt(errors.getLimit());
+				writeDiagnostics(out, errors);
+				out.writeBoolean(tokens != null);
+				if (tokens != null) {
+					tokens.writeTo(out);
+				}
+			}
+			Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+			temp = null;
+			account(Files.size(entry));
+		} catch (IOException e) {
+			// The cache is only an optimization: a failed store costs the next lookup.
+		} finally {
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	private void account(long bytes) throws IOException {
+		long size = _size.get() < 0 ? evict() : _size.addAndGet(bytes);
+		if (size > _maxBytes) {
+			evict();
+		}
+	}
+
+	// Deletes least recently used entries until the cache is back under three quarters of
+	// its limit and returns the resulting size. Other processes may be evicting too, so
+	// files that have already gone are skipped.
+	private synchronized long evict() throws IOException {
+		List<Path> paths = new ArrayList<Path>();
+		List<BasicFileAttributes> attributes = new ArrayList<BasicFileAttributes>();
+		long now = System.currentTimeMillis();
+		long total = 0;
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(_directory)) {
+			for (Path path : entries) {
+				String name = path.getFileName().toString();
+				try {
+					BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+					if (name.endsWith(TEMP_SUFFIX)) {
+						if (now - attrs.lastModifiedTime().toMillis() > STALE_TEMP_MILLIS) {
+							Files.deleteIfExists(path);
+						}
+					} else if (name.endsWith(ENTRY_SUFFIX) && attrs.isRegularFile()) {
+						paths.add(path);
+						attributes.add(attrs);
+						total += attrs.size();
+					}
+				} catch (IOException e) {
+				}
+			}
+		}
+
+		if (total > _maxBytes) {
+			Integer[] order = new Integer[paths.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> attributes.get(a).lastModifiedTime()
+					.compareTo(attributes.get(b).lastModifiedTime()));
+			long target = _maxBytes / 4 * 3;
+			for (int i = 0; i < order.length && total > target; i++) {
+				try {
+					Files.deleteIfExists(paths.get(order[i]));
+				} catch (IOException e) {
+				}
+				total -= attributes.get(order[i]).size();
+			}
+		}
+		_size.set(total);
+		return total;
+	}
+
+	private Path entryPath(byte[] digest) {
+		return _directory.resolve(HexFormat.of().formatHex(digest) + ENTRY_SUFFIX);
+	}
+
+	private static byte[] digest(ByteBuffer source) {
+		try {
+			MessageDigest sha = MessageDigest.getInstance("SHA-256");
+			sha.update(source.duplicate());
+			return sha.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
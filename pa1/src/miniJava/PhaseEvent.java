@@ -0,0 +1,36 @@
+package miniJava;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("miniJava.Phase")
+@Label("Compiler Phase")
+@Category("miniJava")
+@Description("One phase of compiling one source file; counters are those known when it ended")
+@StackTrace(false)
+class PhaseEvent extends Event {
+	@Label("File")
+	String file;
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Source Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Tokens")
+	long tokens;
+
+	@Label("Errors")
+	int errors;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocated;
+}
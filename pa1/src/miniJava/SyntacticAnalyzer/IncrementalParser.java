@@ -0,0 +1,347 @@
+package miniJava.SyntacticAnalyzer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import miniJava.ErrorReporter;
+import miniJava.AbstractSyntaxTrees.AST;
+
+public class IncrementalParser {
+	private byte[] _source;
+	private TokenStream _tokens;
+	private List<ClassSegment> _classes;
+	// Scanner diagnostics are not tracked per region, so while the source has any
+	// we fall back to a full streaming compile and keep its result here.
+	private ErrorReporter _lexicalResult;
+
+	public IncrementalParser(byte[] source) {
+		this._source = source;
+		reanalyze();
+	}
+
+	public ErrorReporter getErrorReporter() {
+		if (_lexicalResult != null) {
+			return _lexicalResult;
+		}
+		for (ClassSegment segment : _classes) {
+			ErrorReporter errors = segment.errors();
+			if (errors != null) {
+				return errors;
+			}
+		}
+		return new ErrorReporter();
+	}
+
+	public TokenStream getTokens() {
+		return _tokens;
+	}
+
+	public void edit(int offset, int removedLength, String insertedText) {
+		byte[] inserted = insertedText.getBytes(StandardCharsets.UTF_8);
+		byte[] source = new byte[_source.length - removedLength + inserted.length];
+		System.arraycopy(_source, 0, source, 0, offset);
+		System.arraycopy(inserted, 0, source, offset, inserted.length);
+		System.arraycopy(_source, offset + removedLength, source, offset + inserted.length,
+				_source.length - offset - removedLength);
+		_source = source;
+
+		if (_lexicalResult != null) {
+			reanalyze();
+		} else {
+			relex(offset, removedLength, inserted.length);
+		}
+	}
+
+	private void reanalyze() {
+		ErrorReporter lexicalErrors = new ErrorReporter();
+		_tokens = new TokenStream(new Scanner(ByteBuffer.wrap(_source), lexicalErrors));
+
+		if (lexicalErrors.hasErrors()) {
+			_lexicalResult = new ErrorReporter();
+			new Parser(new Scanner(ByteBuffer.wrap(_source), _lexicalResult), _lexicalResult).parse();
+			_classes = null;
+			return;
+		}
+
+		_lexicalResult = null;
+		_classes = new ArrayList<ClassSegment>();
+		reanalyzeClasses();
+	}
+
+	private void relex(int offset, int removedLength, int insertedLength) {
+		int delta = insertedLength - removedLength;
+		int editEnd = offset + removedLength;
+		ByteBuffer buffer = ByteBuffer.wrap(_source);
+		LineIndex lines = new LineIndex(buffer);
+
+		// Restart at the last token that ends strictly before the edit; anything
+		// touching the edit may merge with the inserted text.
+		int anchor = lastTokenEndingBefore(offset);
+		if (anchor < 0) {
+			anchor = 0;
+		} else {
+			buffer.position(_tokens.getStart(anchor));
+		}
+
+		ErrorReporter lexicalErrors = new ErrorReporter();
+		Scanner scanner = new Scanner(buffer, lexicalErrors, lines);
+		TokenStream relexed = new TokenStream(buffer, lines, 16);
+		int size = _tokens.size();
+		int old = anchor;
+
+		while (true) {
+			TokenType type = scanner.next();
+			int start = scanner.tokenStart();
+
+			// Past the edit, a token starting where an old token (shifted) started
+			// sees the same text from there on, so the old tail can be reused.
+			if (start - delta >= editEnd) {
+				while (old < size && _tokens.getStart(old) + delta < start) {
+					old++;
+				}
+				if (old < size && _tokens.getStart(old) + delta == start) {
+					break;
+				}
+			}
+
+			relexed.add(type, start, scanner.tokenLength());
+			if (type == TokenType.EOT) {
+				old = size;
+				break;
+			}
+		}
+
+		if (lexicalErrors.hasErrors()) {
+			reanalyze();
+			return;
+		}
+
+		int unchanged = 0;
+		while (unchanged < relexed.size() && anchor + unchanged < old
+				&& relexed.getTokenType(unchanged) == _tokens.getTokenType(anchor + unchanged)
+				&& relexed.getStart(unchanged) == _tokens.getStart(anchor + unchanged)
+				&& relexed.getLength(unchanged) == _tokens.getLength(anchor + unchanged)
+				&& relexed.getStart(unchanged) + relexed.getLength(unchanged) <= offset) {
+			unchanged++;
+		}
+
+		int changedFrom = anchor + unchanged;
+		int changedTo = old;
+		int tokenDelta = relexed.size() - (old - anchor);
+		boolean tokensChanged = changedFrom < changedTo || unchanged < relexed.size();
+
+		_tokens.splice(anchor, old, relexed, delta);
+
+		if (tokensChanged) {
+			reparse(changedFrom, Math.max(changedTo - 1, changedFrom), tokenDelta);
+		}
+	}
+
+	private void reparse(int from, int to, int tokenDelta) {
+		int index = segmentContaining(from);
+		if (index < 0 || to > _classes.get(index).end) {
+			reanalyzeClasses();
+			return;
+		}
+
+		ClassSegment segment = _classes.get(index);
+		for (int i = index + 1; i < _classes.size(); i++) {
+			_classes.get(i).start += tokenDelta;
+			_classes.get(i).end += tokenDelta;
+		}
+
+		if (segment.memberStarts != null) {
+			int member = segment.memberContaining(from - segment.start);
+			if (member >= 0 && to - segment.start <= segment.memberEnds[member]) {
+				int start = segment.start + segment.memberStarts[member];
+				int expectedEnd = segment.start + segment.memberEnds[member] + tokenDelta;
+				if (memberEnd(start, segment.end + tokenDelta) == expectedEnd) {
+					segment.memberEnds[member] += tokenDelta;
+					for (int i = member + 1; i < segment.memberCount; i++) {
+						segment.memberStarts[i] += tokenDelta;
+						segment.memberEnds[i] += tokenDelta;
+					}
+					segment.end += tokenDelta;
+					segment.memberErrors[member] = parseMember(start);
+					return;
+				}
+			}
+		}
+
+		if (segment.start < _tokens.size() - 1 && classEnd(segment.start) == segment.end + tokenDelta) {
+			segment.end += tokenDelta;
+			analyzeClass(segment);
+			return;
+		}
+
+		reanalyzeClasses();
+	}
+
+	private void reanalyzeClasses() {
+		_classes.clear();
+		int eot = _tokens.size() - 1;
+		for (int i = 0; i < eot;) {
+			ClassSegment segment = new ClassSegment(i, classEnd(i));
+			analyzeClass(segment);
+			_classes.add(segment);
+			i = segment.end + 1;
+		}
+	}
+
+	private void analyzeClass(ClassSegment segment) {
+		int start = segment.start;
+		boolean regular = segment.end > start + 2
+				&& _tokens.getTokenType(start) == TokenType.CLASS
+				&& _tokens.getTokenType(start + 1) == TokenType.IDENTIFIER
+				&& _tokens.getTokenType(start + 2) == TokenType.LCURLY
+				&& _tokens.getTokenType(segment.end) == TokenType.RCURLY;
+
+		segment.memberCount = 0;
+		if (!regular) {
+			segment.memberStarts = null;
+			ErrorReporter errors = new ErrorReporter();
+			segment.classErrors = new Parser(_tokens, errors).parseClassAt(start, new AST(64)) ? null : errors;
+			return;
+		}
+
+		segment.classErrors = null;
+		segment.memberStarts = new int[4];
+		segment.memberEnds = new int[4];
+		segment.memberErrors = new ErrorReporter[4];
+		for (int i = start + 3; i < segment.end;) {
+			int end = Math.max(memberEnd(i, segment.end), i);
+			segment.addMember(i - start, end - start, parseMember(i));
+			i = end + 1;
+		}
+	}
+
+	private ErrorReporter parseMember(int index) {
+		ErrorReporter errors = new ErrorReporter();
+		return new Parser(_tokens, errors).parseMemberAt(index) ? null : errors;
+	}
+
+	private int classEnd(int start) {
+		int eot = _tokens.size() - 1;
+		int depth = 0;
+		for (int i = start; i < eot; i++) {
+			TokenType type = _tokens.getTokenType(i);
+			if (type == TokenType.LCURLY) {
+				depth++;
+			} else if (type == TokenType.RCURLY && --depth <= 0) {
+				return i;
+			}
+		}
+		// An unterminated class runs through EOT so it is never treated as regular.
+		return eot;
+	}
+
+	private int memberEnd(int start, int classEnd) {
+		int depth = 0;
+		for (int i = start; i < classEnd; i++) {
+			TokenType type = _tokens.getTokenType(i);
+			if (type == TokenType.LCURLY) {
+				depth++;
+			} else if (type == TokenType.RCURLY) {
+				if (--depth == 0) {
+					return i;
+				}
+			} else if (type == TokenType.SEMICOLON && depth == 0) {
+				return i;
+			}
+		}
+		// Still inside a nested block: the member does not close within this class.
+		return depth == 0 ? classEnd - 1 : -1;
+	}
+
+	private int segmentContaining(int index) {
+		int low = 0;
+		int high = _classes.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			ClassSegment segment = _classes.get(mid);
+			if (index < segment.start) {
+				high = mid - 1;
+			} else if (index > segment.end) {
+				low = mid + 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	private int lastTokenEndingBefore(int offset) {
+		int low = 0;
+		int high = _tokens.size() - 1;
+		int result = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (_tokens.getStart(mid) + _tokens.getLength(mid) < offset) {
+				result = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return result;
+	}
+
+	private static class ClassSegment {
+		private int start;
+		private int end;
+		private ErrorReporter classErrors;
+		// Member bounds are relative to start so that edits elsewhere only shift start and end.
+		private int memberCount;
+		private int[] memberStarts;
+		private int[] memberEnds;
+		private ErrorReporter[] memberErrors;
+
+		ClassSegment(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		ErrorReporter errors() {
+			if (memberStarts == null) {
+				return classErrors;
+			}
+			for (int i = 0; i < memberCount; i++) {
+				if (memberErrors[i] != null) {
+					return memberErrors[i];
+				}
+			}
+			return null;
+		}
+
+		void addMember(int memberStart, int memberEnd, ErrorReporter errors) {
+			if (memberCount == memberStarts.length) {
+				memberStarts = Arrays.copyOf(memberStarts, memberCount * 2);
+				memberEnds = Arrays.copyOf(memberEnds, memberCount * 2);
+				memberErrors = Arrays.copyOf(memberErrors, memberCount * 2);
+			}
+			memberStarts[memberCount] = memberStart;
+			memberEnds[memberCount] = memberEnd;
+			memberErrors[memberCount] = errors;
+			memberCount++;
+		}
+
+		int memberContaining(int index) {
+			int low = 0;
+			int high = memberCount - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (index < memberStarts[mid]) {
+					high = mid - 1;
+				} else if (index > memberEnds[mid]) {
+					low = mid + 1;
+				} else {
+					return mid;
+				}
+			}
+			return -1;
+		}
+	}
+}
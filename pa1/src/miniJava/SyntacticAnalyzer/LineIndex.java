@@ -0,0 +1,144 @@
+package miniJava.SyntacticAnalyzer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Resolves source offsets to lines and columns, so that tokens need only carry their
+// offset. Positions are only read when an error is reported, so nothing is indexed
+// until the first query; most compiles never build the index at all.
+//
+// A column counts the ASCII characters of its line up to and including the one at the
+// offset. Non-ASCII bytes are dropped by the Scanner and take no column. They are only
+// counted per line and per block of source, so the index stays small whatever the
+// input; a column rescans at most a block, or from the last offset asked about, since
+// errors are mostly reported in source order. At the end of input nothing is included.
+public final class LineIndex {
+	private static final int BLOCK_SHIFT = 12;
+	private static final int BLOCK = 1 << BLOCK_SHIFT;
+
+	private final ByteBuffer _source;
+	private final int _origin;
+	private final int _limit;
+	// Offsets just after each newline, from _origin; published last.
+	private volatile int[] _lineStarts;
+	// Non-ASCII bytes before each line start, and before each block from _origin.
+	private int[] _lineDropped;
+	private int[] _blockDropped;
+	private int _lineCount;
+	private volatile Cursor _cursor;
+
+	public LineIndex(ByteBuffer source) {
+		this(source, source.position());
+	}
+
+	LineIndex(ByteBuffer source, int origin) {
+		this._source = source;
+		this._origin = origin;
+		this._limit = source.limit();
+	}
+
+	ByteBuffer source() {
+		return _source;
+	}
+
+	public int getLine(int offset) {
+		return lineOf(offset) + 1;
+	}
+
+	public int getColumn(int offset) {
+		int line = lineOf(offset);
+		int lineStart = _lineStarts[line];
+		int dropped = droppedBefore(offset) - _lineDropped[line];
+		return offset - lineStart - dropped + (offset < _limit ? 1 : 0);
+	}
+
+	// The number of non-ASCII bytes from _origin up to offset.
+	private int droppedBefore(int offset) {
+		Cursor cursor = _cursor;
+		int from;
+		int dropped;
+		if (cursor != null && offset >= cursor.offset && offset - cursor.offset < BLOCK) {
+			from = cursor.offset;
+			dropped = cursor.dropped;
+		} else {
+			int block = (offset - _origin) >> BLOCK_SHIFT;
+			from = _origin + (block << BLOCK_SHIFT);
+			dropped = _blockDropped[block];
+		}
+		for (int i = from; i < offset; i++) {
+			if (_source.get(i) < 0) {
+				dropped++;
+			}
+		}
+		_cursor = new Cursor(offset, dropped);
+		return dropped;
+	}
+
+	private int lineOf(int offset) {
+		if (_lineStarts == null) {
+			build();
+		}
+		return countBefore(_lineStarts, _lineCount, offset + 1) - 1;
+	}
+
+	// Positions may be queried from the scanner and parser threads of a TokenPipe.
+	private synchronized void build() {
+		if (_lineStarts != null) {
+			return;
+		}
+		int[] lineStarts = new int[64];
+		int[] lineDropped = new int[64];
+		int[] blockDropped = new int[((_limit - _origin) >> BLOCK_SHIFT) + 1];
+		int lines = 0;
+		int dropped = 0;
+		lineStarts[lines++] = _origin;
+		for (int i = _origin; i < _limit; i++) {
+			if (((i - _origin) & (BLOCK - 1)) == 0) {
+				blockDropped[(i - _origin) >> BLOCK_SHIFT] = dropped;
+			}
+			byte b = _source.get(i);
+			if (b == '\n') {
+				if (lines == lineStarts.length) {
+					lineStarts = Arrays.copyOf(lineStarts, lines * 2);
+					lineDropped = Arrays.copyOf(lineDropped, lines * 2);
+				}
+				lineDropped[lines] = dropped;
+				lineStarts[lines++] = i + 1;
+			} else if (b < 0) {
+				dropped++;
+			}
+		}
+		if (((_limit - _origin) & (BLOCK - 1)) == 0) {
+			blockDropped[(_limit - _origin) >> BLOCK_SHIFT] = dropped;
+		}
+		this._lineDropped = lineDropped;
+		this._blockDropped = blockDropped;
+		this._lineCount = lines;
+		this._lineStarts = lineStarts;
+	}
+
+	// The number of the first count offsets that are below offset.
+	private static int countBefore(int[] offsets, int count, int offset) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (offsets[mid] < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static final class Cursor {
+		private final int offset;
+		private final int dropped;
+
+		Cursor(int offset, int dropped) {
+			this.offset = offset;
+			this.dropped = dropped;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package miniJava.SyntacticAnalyzer;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import miniJava.ErrorReporter;
+import miniJava.AbstractSyntaxTrees.AST;
+
+// Parses the top-level classes of one token stream in parallel. A pre-pass matches
+// braces to split the stream into class declarations, and fork-join tasks parse each
+// into a tree of its own. The program is then parsed as usual, except that a class
+// that parsed cleanly and ended where the pre-pass said is appended instead of parsed.
+//
+// Anything else, a class with errors or tokens the parser groups differently from the
+// pre-pass, is parsed where the program reaches it. Diagnostics, recovery and the error
+// limit therefore behave exactly as in a sequential parse, and the tree is the same.
+public class ParallelParser {
+	// Below this many tokens per task, splitting costs more than it saves.
+	private static final int TASK_TOKENS = 1 << 13;
+	private static final int MIN_PARALLEL_TOKENS = 1 << 16;
+
+	private final TokenStream _tokens;
+	private final ErrorReporter _errors;
+	private int _maxErrors = 1;
+	private int[] _starts = new int[16];
+	private int[] _ends = new int[16];
+	private AST[] _trees;
+	private int _count;
+
+	public ParallelParser(TokenStream tokens, ErrorReporter errors) {
+		this._tokens = tokens;
+		this._errors = errors;
+	}
+
+	public static boolean isWorthwhile(TokenStream tokens) {
+		return tokens.size() >= MIN_PARALLEL_TOKENS && Runtime.getRuntime().availableProcessors() > 1;
+	}
+
+	public void setMaxErrors(int maxErrors) {
+		this._maxErrors = maxErrors;
+	}
+
+	public AST parse() {
+		return parse(ForkJoinPool.commonPool());
+	}
+
+	// Parses from the stream's position, as a Parser over it would.
+	public AST parse(ForkJoinPool pool) {
+		split();
+		_trees = new AST[_count];
+		if (_count > 0) {
+			pool.invoke(new ClassTask(0, _count));
+		}
+
+		Parser parser = new Parser(_tokens, _errors);
+		parser.setMaxErrors(_maxErrors);
+		AST ast = parser.parse(this);
+		_trees = null;
+		return ast;
+	}
+
+	// The same grouping as IncrementalParser: a class runs to the brace that closes its
+	// first one. An unterminated class is left to the sequential parse.
+	private void split() {
+		int eot = _tokens.size() - 1;
+		int start = _tokens.position();
+		int depth = 0;
+		_count = 0;
+		for (int i = start; i < eot; i++) {
+			TokenType type = _tokens.getTokenType(i);
+			if (type == TokenType.LCURLY) {
+				depth++;
+			} else if (type == TokenType.RCURLY && --depth <= 0) {
+				if (_count == _starts.length) {
+					_starts = Arrays.copyOf(_starts, _count * 2);
+					_ends = Arrays.copyOf(_ends, _count * 2);
+				}
+				_starts[_count] = start;
+				_ends[_count] = i;
+				_count++;
+				start = i + 1;
+				depth = 0;
+			}
+		}
+	}
+
+	// Called by the program parse at each class. If a class parsed cleanly from here,
+	// appends it to ast, moves tokens past it and returns its root; otherwise NONE.
+	int take(TokenStream tokens, AST ast) {
+		int segment = Arrays.binarySearch(_starts, 0, _count, tokens.position());
+		if (segment < 0 || _trees[segment] == null) {
+			return AST.NONE;
+		}
+		// The class node is the first that parseClassDeclaration adds.
+		int root = ast.append(_trees[segment]);
+		_trees[segment] = null;
+		tokens.seek(_ends[segment] + 1);
+		return root;
+	}
+
+	private class ClassTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int _from;
+		private final int _to;
+
+		ClassTask(int from, int to) {
+			this._from = from;
+			this._to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (_to - _from > 1 && _ends[_to - 1] - _starts[_from] > TASK_TOKENS) {
+				int middle = (_from + _to) >>> 1;
+				invokeAll(new ClassTask(_from, middle), new ClassTask(middle, _to));
+				return;
+			}
+
+			TokenStream view = _tokens.view();
+			ErrorReporter errors = new ErrorReporter();
+			Parser parser = new Parser(view, errors);
+			for (int i = _from; i < _to; i++) {
+				// With the default limit of one error, any error stops the class early.
+				parser.reset(view, errors);
+				int reported = errors.getErrorCount();
+				AST tree = new AST((_ends[i] - _starts[i]) / 4 * 3);
+				if (parser.parseClassAt(_starts[i], tree) && errors.getErrorCount() == reported
+						&& view.position() == _ends[i] + 1) {
+					_trees[i] = tree;
+				}
+			}
+		}
+	}
+}
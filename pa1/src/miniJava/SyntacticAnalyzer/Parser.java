@@ -1,59 +1,246 @@
 package miniJava.SyntacticAnalyzer;
 
+import java.util.Arrays;
+
+import miniJava.ErrorCode;
 import miniJava.ErrorReporter;
+import miniJava.AbstractSyntaxTrees.AST;
+import miniJava.AbstractSyntaxTrees.NodeKind;
 
 public class Parser {
+	private static final int BLOCK = 0;
+	private static final int IF_START = 1;
+	private static final int IF_THEN = 2;
+	private static final int IF_ELSE = 3;
+	private static final int WHILE_START = 4;
+	private static final int WHILE_BODY = 5;
+
+	private static final int OPERAND = 0;
+	private static final int REFERENCE = 1;
+	private static final int OPERATOR = 2;
+
+	private static final int PARENTHESES = 0;
+	private static final int NEW_ARRAY = 1;
+	private static final int INDEX = 2;
+	private static final int ARGUMENTS = 3;
+	private static final int FRAME_KIND = 0xF;
+	private static final int INDEXED = 0x10;
+	private static final int CALLED = 0x20;
+	private static final int FRAME_BASE_SHIFT = 8;
+
+	private static final int MARKER = -1;
+	private static final int MAX_GUESSED_NODES = 1 << 20;
+	private static final int SYMBOL_MAP_CAPACITY = 64;
+	private static final int UNARY = 0x100;
+
+	private static final int PRECEDENCE_OR = 1;
+	private static final int PRECEDENCE_ADDITIVE = 5;
+	private static final int PRECEDENCE_UNARY = 7;
+	private static final int[] PRECEDENCE = new int[TokenType.values().length];
+
+	static {
+		PRECEDENCE[TokenType.OR.ordinal()] = PRECEDENCE_OR;
+		PRECEDENCE[TokenType.AND.ordinal()] = 2;
+		PRECEDENCE[TokenType.EQUAL_EQUAL.ordinal()] = 3;
+		PRECEDENCE[TokenType.NOT_EQUAL.ordinal()] = 3;
+		PRECEDENCE[TokenType.LESS.ordinal()] = 4;
+		PRECEDENCE[TokenType.GREATER.ordinal()] = 4;
+		PRECEDENCE[TokenType.LESS_EQUAL.ordinal()] = 4;
+		PRECEDENCE[TokenType.GREATER_EQUAL.ordinal()] = 4;
+		PRECEDENCE[TokenType.PLUS.ordinal()] = PRECEDENCE_ADDITIVE;
+		PRECEDENCE[TokenType.MINUS.ordinal()] = PRECEDENCE_ADDITIVE;
+		PRECEDENCE[TokenType.TIMES.ordinal()] = 6;
+		PRECEDENCE[TokenType.DIVIDE.ordinal()] = 6;
+	}
+
 	private Scanner _scanner;
+	private TokenStream _tokens;
+	private TokenPipe _pipe;
 	private ErrorReporter _errors;
-	private Token _currentToken;
+	private TokenView _currentToken;
+	private int _consumed;
+	private int _maxErrors;
+	private AST _ast;
+	// Name in _ast of each symbol seen in it, open-addressed by symbol so that its size
+	// follows the names of one tree, not the symbol table, which may be shared. A key
+	// is the symbol plus one, so 0 marks an empty slot.
+	private AST _symbolAst;
+	private int[] _symbolKeys = new int[SYMBOL_MAP_CAPACITY];
+	private int[] _symbolNames = new int[SYMBOL_MAP_CAPACITY];
+	private int _symbolCount;
+	private int[] _nodes = new int[32];
+	private int _nodeTop;
+	private int[] _statementFrames = new int[16];
+	private int[] _statementMarks = new int[16];
+	private int[] _statementBases = new int[16];
+	private int[] _statementNodeMarks = new int[16];
+	private int _statementTop;
+	private int[] _operators = new int[32];
+	private int _operatorTop;
+	private int[] _expressionFrames = new int[16];
+	private int _expressionTop;
 
 	public Parser(Scanner scanner, ErrorReporter errors) {
+		start(scanner, null, null, errors);
+	}
+
+	public Parser(TokenPipe pipe, ErrorReporter errors) {
+		start(null, null, pipe, errors);
+	}
+
+	public Parser(TokenStream tokens, ErrorReporter errors) {
+		start(null, tokens, null, errors);
+	}
+
+	// Starts over on new input as if newly constructed, keeping the stacks grown so far.
+	public void reset(Scanner scanner, ErrorReporter errors) {
+		start(scanner, null, null, errors);
+	}
+
+	public void reset(TokenStream tokens, ErrorReporter errors) {
+		start(null, tokens, null, errors);
+	}
+
+	private void start(Scanner scanner, TokenStream tokens, TokenPipe pipe, ErrorReporter errors) {
 		this._scanner = scanner;
+		this._tokens = tokens;
+		this._pipe = pipe;
 		this._errors = errors;
-		this._currentToken = this._scanner.scan();
+		this._consumed = 0;
+		this._maxErrors = 1;
+		this._ast = null;
+		this._nodeTop = 0;
+		this._statementTop = 0;
+		this._operatorTop = 0;
+		this._expressionTop = 0;
+
+		if (tokens != null) {
+			this._currentToken = tokens;
+		} else if (pipe != null) {
+			this._currentToken = pipe.next(errors);
+		} else {
+			this._currentToken = scanner.scan();
+		}
 	}
 
 	class SyntaxError extends Error {
 		private static final long serialVersionUID = -6461942006097999362L;
+
+		SyntaxError() {
+			// Thrown once per syntax error and always caught here, so skip the stack walk.
+			super(null, null, false, false);
+		}
 	}
 
-	public void parse() {
+	public void setMaxErrors(int maxErrors) {
+		this._maxErrors = maxErrors;
+	}
+
+	// The tree is returned even when parsing stops early; its root is then NONE.
+	public AST parse() {
+		return parse(null);
+	}
+
+	// Classes that were parsed ahead of time are taken from parsed as the program reaches
+	// them, instead of being parsed again.
+	AST parse(ParallelParser parsed) {
+		// About 0.7 nodes per token and 0.3 per source byte on typical input. A guess from
+		// bytes alone is capped, since a source that is mostly comments has few nodes, and
+		// the tree grows past it as needed.
+		if (_tokens != null) {
+			_ast = new AST(_tokens.size() / 4 * 3);
+		} else {
+			int bytes = (_pipe != null ? _pipe.source() : _scanner.source()).limit();
+			_ast = new AST(Math.min(bytes / 3, MAX_GUESSED_NODES));
+		}
 		try {
-			parseProgram();
+			parseProgram(parsed);
 		} catch (SyntaxError e) {
 		}
+		return _ast;
 	}
 
-	private void parseProgram() throws SyntaxError {
-		while (_currentToken.getTokenType() != TokenType.EOT) {
+	boolean parseClassAt(int index, AST ast) {
+		_ast = ast;
+		_tokens.seek(index);
+		try {
 			parseClassDeclaration();
+			return true;
+		} catch (SyntaxError e) {
+			return false;
+		}
+	}
+
+	boolean parseMemberAt(int index) {
+		_ast = new AST(64);
+		_tokens.seek(index);
+		try {
+			parseMemberDeclaration();
+			return true;
+		} catch (SyntaxError e) {
+			return false;
+		}
+	}
+
+	private void parseProgram(ParallelParser parsed) throws SyntaxError {
+		int base = open(NodeKind.PROGRAM, 0, AST.NONE);
+		while (_currentToken.getTokenType() != TokenType.EOT) {
+			if (parsed != null) {
+				int root = parsed.take(_tokens, _ast);
+				if (root != AST.NONE) {
+					pushNode(root);
+					continue;
+				}
+			}
+			int nodeMark = _nodeTop;
+			try {
+				parseClassDeclaration();
+			} catch (SyntaxError e) {
+				recoverClass(e);
+				_nodeTop = nodeMark;
+			}
 		}
 		accept(TokenType.EOT);
+		close(base);
+		_ast.setRoot(_nodes[base - 1]);
 	}
 
 	private void parseClassDeclaration() throws SyntaxError {
+		int position = _currentToken.getOffset();
 		accept(TokenType.CLASS);
-		accept(TokenType.IDENTIFIER);
+		int name = acceptIdentifier();
 		accept(TokenType.LCURLY);
+		int base = open(NodeKind.CLASS, position, name);
 
 		while (_currentToken.getTokenType() != TokenType.RCURLY) {
-			if (_currentToken.getTokenType() == TokenType.PUBLIC ||
-					_currentToken.getTokenType() == TokenType.PRIVATE ||
-					_currentToken.getTokenType() == TokenType.STATIC ||
-					_currentToken.getTokenType() == TokenType.VOID ||
-					isType(_currentToken.getTokenType())) {
-				if (isMethodDeclaration()) {
-					parseMethodDeclaration();
-				} else {
-					parseFieldDeclaration();
-				}
-			} else {
-				_errors.reportError("Expected field or method declaration, but got ",
-						_currentToken.getTokenText());
-				throw new SyntaxError();
+			int mark = _consumed;
+			int nodeMark = _nodeTop;
+			try {
+				parseMemberDeclaration();
+			} catch (SyntaxError e) {
+				recoverMember(e, mark);
+				_nodeTop = nodeMark;
 			}
 		}
 		accept(TokenType.RCURLY);
+		close(base);
+	}
+
+	private void parseMemberDeclaration() throws SyntaxError {
+		if (_currentToken.getTokenType() == TokenType.PUBLIC ||
+				_currentToken.getTokenType() == TokenType.PRIVATE ||
+				_currentToken.getTokenType() == TokenType.STATIC ||
+				_currentToken.getTokenType() == TokenType.VOID ||
+				isType(_currentToken.getTokenType())) {
+			if (isMethodDeclaration()) {
+				parseMethodDeclaration();
+			} else {
+				parseFieldDeclaration();
+			}
+		} else {
+			reportError(ErrorCode.EXPECTED_MEMBER, _currentToken.getTokenText());
+			throw new SyntaxError();
+		}
 	}
 
 	private boolean isMethodDeclaration() {
@@ -65,119 +252,223 @@ public class Parser {
 	}
 
 	private void parseFieldDeclaration() throws SyntaxError {
-		parseVisibility();
-		parseAccess();
+		int position = _currentToken.getOffset();
+		int flags = parseVisibility() | parseAccess();
 		if (_currentToken.getTokenType() == TokenType.VOID) {
-			_errors.reportError("'void' is not a valid type for field declarations", _currentToken.getTokenText());
+			reportError(ErrorCode.VOID_FIELD, _currentToken.getTokenText());
 			throw new SyntaxError();
 		}
 		parseType();
-		accept(TokenType.IDENTIFIER);
+		int name = acceptIdentifier();
 		if (_currentToken.getTokenType() == TokenType.SEMICOLON) {
 			accept(TokenType.SEMICOLON);
 		} else {
-			_errors.reportError("Expected token SEMICOLON, but got ", _currentToken.getTokenText());
+			reportError(ErrorCode.EXPECTED_SEMICOLON, _currentToken.getTokenText());
 			throw new SyntaxError();
 		}
+		makeNode(NodeKind.FIELD, position, name, 1);
+		_ast.setFlags(_nodes[_nodeTop - 1], flags);
 	}
 
+	// Fields are accepted here too; a member with neither a parameter list nor a body
+	// becomes a FIELD node.
 	private void parseMethodDeclaration() throws SyntaxError {
 		boolean onVoid = false;
-		parseVisibility();
-		parseAccess();
+		boolean field = true;
+		int position = _currentToken.getOffset();
+		int flags = parseVisibility() | parseAccess();
+		int base = open(NodeKind.METHOD, position, AST.NONE);
+		int member = _nodes[base - 1];
 		if (_currentToken.getTokenType() == TokenType.VOID) {
+			makeNode(NodeKind.VOID_TYPE, _currentToken.getOffset(), AST.NONE, 0);
 			accept(TokenType.VOID);
 			onVoid = true;
 		} else {
 			parseType();
 		}
-		accept(TokenType.IDENTIFIER);
+		_ast.setValue(member, acceptIdentifier());
 		if (_currentToken.getTokenType() == TokenType.LPAREN) {
 			accept(TokenType.LPAREN);
 			if (_currentToken.getTokenType() != TokenType.RPAREN) {
 				parseParameterList();
 			}
 			accept(TokenType.RPAREN);
+			field = false;
 		}
 		if (_currentToken.getTokenType() == TokenType.LCURLY) {
 			parseBlock();
+			field = false;
 		} else if (_currentToken.getTokenType() == TokenType.SEMICOLON && !onVoid) {
 			accept(TokenType.SEMICOLON);
 		} else {
-			_errors.reportError("Expected method body or semicolon, but got ", _currentToken.getTokenText());
+			reportError(ErrorCode.EXPECTED_METHOD_BODY, _currentToken.getTokenText());
 			throw new SyntaxError();
 		}
+		if (field) {
+			_ast.setKind(member, NodeKind.FIELD);
+		}
+		_ast.setFlags(member, flags);
+		close(base);
 	}
 
-	private void parseVisibility() throws SyntaxError {
-		if (_currentToken.getTokenType() == TokenType.PUBLIC ||
-				_currentToken.getTokenType() == TokenType.PRIVATE) {
-			accept(_currentToken.getTokenType());
+	private int parseVisibility() throws SyntaxError {
+		if (_currentToken.getTokenType() == TokenType.PUBLIC) {
+			accept(TokenType.PUBLIC);
+			return AST.PUBLIC;
+		} else if (_currentToken.getTokenType() == TokenType.PRIVATE) {
+			accept(TokenType.PRIVATE);
+			return AST.PRIVATE;
 		}
+		return 0;
 	}
 
-	private void parseAccess() throws SyntaxError {
+	private int parseAccess() throws SyntaxError {
 		if (_currentToken.getTokenType() == TokenType.STATIC) {
 			accept(TokenType.STATIC);
+			return AST.STATIC;
 		}
+		return 0;
 	}
 
 	private void parseType() throws SyntaxError {
+		int position = _currentToken.getOffset();
 		if (_currentToken.getTokenType() == TokenType.INT) {
 			accept(TokenType.INT);
+			makeNode(NodeKind.INT_TYPE, position, AST.NONE, 0);
 			if (_currentToken.getTokenType() == TokenType.LSQUARE) {
 				accept(TokenType.LSQUARE);
 				accept(TokenType.RSQUARE);
+				makeNode(NodeKind.ARRAY_TYPE, position, AST.NONE, 1);
 			}
 		} else if (_currentToken.getTokenType() == TokenType.BOOLEAN) {
 			accept(TokenType.BOOLEAN);
 			if (_currentToken.getTokenType() == TokenType.LSQUARE) {
-				_errors.reportError("Arrays of type boolean are not allowed: ", _currentToken.getTokenText());
+				reportError(ErrorCode.BOOLEAN_ARRAY, _currentToken.getTokenText());
 				throw new SyntaxError();
 			}
+			makeNode(NodeKind.BOOLEAN_TYPE, position, AST.NONE, 0);
 		} else if (_currentToken.getTokenType() == TokenType.IDENTIFIER) {
-			accept(TokenType.IDENTIFIER);
+			makeNode(NodeKind.CLASS_TYPE, position, acceptIdentifier(), 0);
 			if (_currentToken.getTokenType() == TokenType.LSQUARE) {
 				accept(TokenType.LSQUARE);
+				int children = 1;
 				if (_currentToken.getTokenType() != TokenType.RSQUARE) {
 					parseAdditiveExpression();
+					children = 2;
 				}
 				accept(TokenType.RSQUARE);
+				makeNode(NodeKind.ARRAY_TYPE, position, AST.NONE, children);
 			}
 		} else {
-			_errors.reportError("Expected type, but got ", _currentToken.getTokenText());
+			reportError(ErrorCode.EXPECTED_TYPE, _currentToken.getTokenText());
 			throw new SyntaxError();
 		}
 	}
 
 	private void parseParameterList() throws SyntaxError {
-		parseType();
-		accept(TokenType.IDENTIFIER);
+		parseParameter();
 		while (_currentToken.getTokenType() == TokenType.COMMA) {
 			accept(TokenType.COMMA);
-			parseType();
-			accept(TokenType.IDENTIFIER);
+			parseParameter();
 		}
 	}
 
+	private void parseParameter() throws SyntaxError {
+		int position = _currentToken.getOffset();
+		parseType();
+		makeNode(NodeKind.PARAMETER, position, acceptIdentifier(), 1);
+	}
+
+	// Statements nest through an explicit frame stack rather than recursion so that
+	// deeply nested blocks cannot overflow the Java stack.
+	// Each frame's node is pushed when its header is parsed and its children are
+	// linked from the node stack when the frame is popped.
 	private void parseBlock() throws SyntaxError {
+		int position = _currentToken.getOffset();
 		accept(TokenType.LCURLY);
-		while (_currentToken.getTokenType() != TokenType.RCURLY) {
-			parseStatement();
+		int base = _statementTop;
+		pushStatement(BLOCK, open(NodeKind.BLOCK, position, AST.NONE));
+
+		while (_statementTop > base) {
+			try {
+				stepStatement();
+			} catch (SyntaxError e) {
+				while (_statementFrames[_statementTop - 1] != BLOCK) {
+					_statementTop--;
+				}
+				try {
+					recoverStatement(e, _statementMarks[_statementTop - 1]);
+				} catch (SyntaxError fatal) {
+					_statementTop = base;
+					throw fatal;
+				}
+				_nodeTop = _statementNodeMarks[_statementTop - 1];
+			}
+		}
+	}
+
+	private void stepStatement() throws SyntaxError {
+		int top = _statementTop - 1;
+		switch (_statementFrames[top]) {
+			case BLOCK:
+				if (_currentToken.getTokenType() == TokenType.RCURLY) {
+					accept(TokenType.RCURLY);
+					close(_statementBases[top]);
+					_statementTop--;
+				} else {
+					_statementMarks[top] = _consumed;
+					_statementNodeMarks[top] = _nodeTop;
+					parseStatement();
+				}
+				break;
+			case IF_START:
+				_statementFrames[top] = IF_THEN;
+				parseStatement();
+				break;
+			case WHILE_START:
+				_statementFrames[top] = WHILE_BODY;
+				parseStatement();
+				break;
+			case IF_THEN:
+				if (_currentToken.getTokenType() == TokenType.ELSE) {
+					accept(TokenType.ELSE);
+					_statementFrames[top] = IF_ELSE;
+					parseStatement();
+				} else {
+					close(_statementBases[top]);
+					_statementTop--;
+				}
+				break;
+			case IF_ELSE:
+			case WHILE_BODY:
+				close(_statementBases[top]);
+				_statementTop--;
+				break;
 		}
-		accept(TokenType.RCURLY);
 	}
 
 	private void parseStatement() throws SyntaxError {
+		int position = _currentToken.getOffset();
 		switch (_currentToken.getTokenType()) {
 			case LCURLY:
-				parseBlock();
+				accept(TokenType.LCURLY);
+				pushStatement(BLOCK, open(NodeKind.BLOCK, position, AST.NONE));
 				break;
 			case IF:
-				parseIfStatement();
+				accept(TokenType.IF);
+				accept(TokenType.LPAREN);
+				int ifBase = open(NodeKind.IF, position, AST.NONE);
+				parseExpression();
+				accept(TokenType.RPAREN);
+				pushStatement(IF_START, ifBase);
 				break;
 			case WHILE:
-				parseWhileStatement();
+				accept(TokenType.WHILE);
+				accept(TokenType.LPAREN);
+				int whileBase = open(NodeKind.WHILE, position, AST.NONE);
+				parseExpression();
+				accept(TokenType.RPAREN);
+				pushStatement(WHILE_START, whileBase);
 				break;
 			case RETURN:
 				parseReturnStatement();
@@ -188,6 +479,17 @@ public class Parser {
 		}
 	}
 
+	private void pushStatement(int frame, int nodeBase) {
+		if (_statementTop == _statementFrames.length) {
+			_statementFrames = Arrays.copyOf(_statementFrames, _statementTop * 2);
+			_statementMarks = Arrays.copyOf(_statementMarks, _statementTop * 2);
+			_statementBases = Arrays.copyOf(_statementBases, _statementTop * 2);
+			_statementNodeMarks = Arrays.copyOf(_statementNodeMarks, _statementTop * 2);
+		}
+		_statementBases[_statementTop] = nodeBase;
+		_statementFrames[_statementTop++] = frame;
+	}
+
 	private void parseExpressionOrLocalDeclaration() throws SyntaxError {
 		if (isType(_currentToken.getTokenType())) {
 			parseLocalDeclaration();
@@ -196,32 +498,45 @@ public class Parser {
 		}
 	}
 
+	// The head is built as a reference and retyped in place once a declared name shows
+	// that it was a type. The statement node then wraps it: VAR_DECL(type, init),
+	// ASSIGN(reference, value) or CALL_STATEMENT(call).
 	private void parseLocalDeclaration() throws SyntaxError {
 		int skip = 0;
 		boolean bracketed = false;
 		boolean emptyInsideBrackets = false;
 		boolean method = false;
+		boolean declaration = true;
+		int name = AST.NONE;
+		int position = _currentToken.getOffset();
 		if (_currentToken.getTokenType() == TokenType.INT) {
 			accept(TokenType.INT);
+			makeNode(NodeKind.INT_TYPE, position, AST.NONE, 0);
 			if (_currentToken.getTokenType() == TokenType.LSQUARE) {
 				accept(TokenType.LSQUARE);
 				accept(TokenType.RSQUARE);
+				makeNode(NodeKind.ARRAY_TYPE, position, AST.NONE, 1);
 			}
 		} else if (_currentToken.getTokenType() == TokenType.BOOLEAN) {
 			accept(TokenType.BOOLEAN);
 			if (_currentToken.getTokenType() == TokenType.LSQUARE) {
-				_errors.reportError("Arrays of type boolean are not allowed: ", _currentToken.getTokenText());
+				reportError(ErrorCode.BOOLEAN_ARRAY, _currentToken.getTokenText());
 				throw new SyntaxError();
 			}
+			makeNode(NodeKind.BOOLEAN_TYPE, position, AST.NONE, 0);
 		} else if (_currentToken.getTokenType() == TokenType.IDENTIFIER) {
-			accept(TokenType.IDENTIFIER);
+			makeNode(NodeKind.IDENTIFIER, position, acceptIdentifier(), 0);
+			declaration = false;
 			if (_currentToken.getTokenType() == TokenType.LSQUARE) {
 				accept(TokenType.LSQUARE);
 				if (_currentToken.getTokenType() != TokenType.RSQUARE) {
 					skip = 1;
 					parseExpression();
+					makeNode(NodeKind.INDEX, position, AST.NONE, 2);
 				} else {
 					emptyInsideBrackets = true;
+					_ast.setKind(_nodes[_nodeTop - 1], NodeKind.CLASS_TYPE);
+					makeNode(NodeKind.ARRAY_TYPE, position, AST.NONE, 1);
 				}
 				accept(TokenType.RSQUARE);
 				bracketed = true;
@@ -229,93 +544,96 @@ public class Parser {
 				if (_currentToken.getTokenType() == TokenType.LPAREN) {
 					accept(TokenType.LPAREN);
 					skip = 1;
-					if (_currentToken.getTokenType() != TokenType.RPAREN) {
-						parseArgumentList();
-					}
-					accept(TokenType.RPAREN);
+					parseCallArguments();
 					method = true;
 				}
 			}
 		} else {
-			_errors.reportError("Expected type, but got ", _currentToken.getTokenText());
+			reportError(ErrorCode.EXPECTED_TYPE, _currentToken.getTokenText());
 			throw new SyntaxError();
 		}
 
 		if (_currentToken.getTokenType() == TokenType.DOT && !bracketed) {
+			declaration = false;
 			while (_currentToken.getTokenType() == TokenType.DOT) {
 				accept(TokenType.DOT);
-				accept(TokenType.IDENTIFIER);
+				int memberPosition = _currentToken.getOffset();
+				makeNode(NodeKind.FIELD_ACCESS, memberPosition, acceptIdentifier(), 1);
 				if (_currentToken.getTokenType() == TokenType.LSQUARE) {
 					accept(TokenType.LSQUARE);
+					int target = _nodes[_nodeTop - 1];
+					int children = 1;
 					if (_currentToken.getTokenType() != TokenType.RSQUARE) {
 						skip = 1;
 						parseExpression();
+						children = 2;
 					}
 					accept(TokenType.RSQUARE);
+					makeNode(NodeKind.INDEX, _ast.getPosition(target), AST.NONE, children);
 				} else if (_currentToken.getTokenType() == TokenType.LPAREN) {
 					accept(TokenType.LPAREN);
 					skip = 1;
-					if (_currentToken.getTokenType() != TokenType.RPAREN) {
-						parseArgumentList();
-					}
-					accept(TokenType.RPAREN);
+					parseCallArguments();
 					method = true;
 				}
 			}
 		} else {
 			if ((skip == 0 && _currentToken.getTokenType() == TokenType.IDENTIFIER) || emptyInsideBrackets) {
-				accept(TokenType.IDENTIFIER);
+				name = acceptIdentifier();
+				declaration = true;
+				int type = _nodes[_nodeTop - 1];
+				if (_ast.getKind(type) == NodeKind.IDENTIFIER) {
+					_ast.setKind(type, NodeKind.CLASS_TYPE);
+				}
 			}
 		}
+		int children = 1;
 		if (_currentToken.getTokenType() == TokenType.EQUALS) {
 			accept(TokenType.EQUALS);
 			parseExpression();
+			children = 2;
 		} else if (_currentToken.getTokenType() == TokenType.SEMICOLON && !method) {
-			_errors.reportError("Local variable declaration without initialization is not allowed: ",
-					_currentToken.getTokenText());
+			reportError(ErrorCode.UNINITIALIZED_LOCAL, _currentToken.getTokenText());
 			throw new SyntaxError();
 		}
 		accept(TokenType.SEMICOLON);
-	}
 
-	private void parseIfStatement() throws SyntaxError {
-		accept(TokenType.IF);
-		accept(TokenType.LPAREN);
-		parseExpression();
-		accept(TokenType.RPAREN);
-		parseStatement();
-		if (_currentToken.getTokenType() == TokenType.ELSE) {
-			accept(TokenType.ELSE);
-			parseStatement();
+		if (declaration) {
+			makeNode(NodeKind.VAR_DECL, position, name, children);
+		} else if (children == 2) {
+			makeNode(NodeKind.ASSIGN, position, AST.NONE, 2);
+		} else {
+			makeNode(NodeKind.CALL_STATEMENT, position, AST.NONE, 1);
 		}
 	}
 
-	private void parseWhileStatement() throws SyntaxError {
-		accept(TokenType.WHILE);
-		accept(TokenType.LPAREN);
-		parseExpression();
-		accept(TokenType.RPAREN);
-		parseStatement();
-	}
-
 	private void parseReturnStatement() throws SyntaxError {
+		int base = open(NodeKind.RETURN, _currentToken.getOffset(), AST.NONE);
 		accept(TokenType.RETURN);
 		if (_currentToken.getTokenType() != TokenType.SEMICOLON) {
 			parseExpression();
 		}
 		accept(TokenType.SEMICOLON);
+		close(base);
 	}
 
 	private void parseExpressionStatement() throws SyntaxError {
 		boolean didSomething = false;
+		boolean assigned = false;
+		int position = _currentToken.getOffset();
 		if (isType(_currentToken.getTokenType())) {
 			didSomething = true;
 			parseType();
-			accept(TokenType.IDENTIFIER);
+			int name = acceptIdentifier();
+			int children = 1;
 			if (_currentToken.getTokenType() == TokenType.EQUALS) {
 				accept(TokenType.EQUALS);
 				parseExpression();
+				children = 2;
 			}
+			accept(TokenType.SEMICOLON);
+			makeNode(NodeKind.VAR_DECL, position, name, children);
+			return;
 		} else if (_currentToken.getTokenType() == TokenType.THIS
 				|| _currentToken.getTokenType() == TokenType.IDENTIFIER) {
 			didSomething = parseReference();
@@ -323,189 +641,398 @@ public class Parser {
 				accept(TokenType.EQUALS);
 				parseExpression();
 				didSomething = true;
+				assigned = true;
 			}
 		} else {
 			parseExpression();
 		}
 		if (!didSomething) {
 			if (_currentToken.getTokenType() == TokenType.SEMICOLON) {
-				_errors.reportError("Empty statement is not allowed: ", _currentToken.getTokenText());
+				reportError(ErrorCode.EMPTY_STATEMENT, _currentToken.getTokenText());
 				throw new SyntaxError();
 			}
 		}
 		accept(TokenType.SEMICOLON);
-
+		if (assigned) {
+			makeNode(NodeKind.ASSIGN, position, AST.NONE, 2);
+		} else {
+			makeNode(NodeKind.CALL_STATEMENT, position, AST.NONE, 1);
+		}
 	}
 
 	private void parseExpression() throws SyntaxError {
-		parseLogicalOrExpression();
+		parseExpression(PRECEDENCE_OR, OPERAND);
 	}
 
-	private void parseLogicalOrExpression() throws SyntaxError {
-		parseLogicalAndExpression();
-		while (_currentToken.getTokenType() == TokenType.OPERATOR && _currentToken.getTokenText().equals("||")) {
-			accept(TokenType.OPERATOR);
-			parseLogicalAndExpression();
-		}
+	private void parseAdditiveExpression() throws SyntaxError {
+		parseExpression(PRECEDENCE_ADDITIVE, OPERAND);
 	}
 
-	private void parseLogicalAndExpression() throws SyntaxError {
-		parseEqualityExpression();
-		while (_currentToken.getTokenType() == TokenType.OPERATOR && _currentToken.getTokenText().equals("&&")) {
-			accept(TokenType.OPERATOR);
-			parseEqualityExpression();
+	private boolean parseReference() throws SyntaxError {
+		if (_currentToken.getTokenType() == TokenType.THIS) {
+			makeNode(NodeKind.THIS, _currentToken.getOffset(), AST.NONE, 0);
+			accept(TokenType.THIS);
+		} else if (_currentToken.getTokenType() == TokenType.IDENTIFIER) {
+			makeNode(NodeKind.IDENTIFIER, _currentToken.getOffset(), acceptIdentifier(), 0);
+		} else {
+			reportError(ErrorCode.EXPECTED_REFERENCE, _currentToken.getTokenText());
+			throw new SyntaxError();
 		}
+		return parseExpression(PRECEDENCE_OR, REFERENCE);
 	}
 
-	private void parseEqualityExpression() throws SyntaxError {
-		parseRelationalExpression();
-		while (_currentToken.getTokenType() == TokenType.OPERATOR &&
-				(_currentToken.getTokenText().equals("==") || _currentToken.getTokenText().equals("!="))) {
-			accept(TokenType.OPERATOR);
-			parseRelationalExpression();
+	// Precedence climbing over an explicit operator stack. Parentheses, prefix operators
+	// and the expressions nested in indexes, arguments and array sizes push markers and
+	// continuation frames instead of recursing. In REFERENCE mode the caller has already
+	// taken the head of a reference and we stop when it ends, returning whether it
+	// contained a call. Operands are built on the node stack: reduce() combines them
+	// and each continuation frame links its node when it is popped.
+	private boolean parseExpression(int minPrecedence, int state) throws SyntaxError {
+		int operatorBase = _operatorTop;
+		int frameBase = _expressionTop;
+		boolean referenceOnly = state == REFERENCE;
+		boolean indexed = false;
+		boolean called = false;
+
+		pushOperator(MARKER);
+		try {
+			while (true) {
+				TokenType type = _currentToken.getTokenType();
+				switch (state) {
+					case OPERAND:
+						switch (type) {
+							case NOT:
+							case MINUS:
+								makeNode(NodeKind.UNARY, _currentToken.getOffset(), type.ordinal(), 0);
+								accept(type);
+								pushOperator(UNARY | type.ordinal());
+								continue;
+							case LPAREN:
+								accept(TokenType.LPAREN);
+								pushFrame(PARENTHESES);
+								pushOperator(MARKER);
+								continue;
+							case INTEGER_LITERAL:
+								makeNode(NodeKind.INT_LITERAL, _currentToken.getOffset(),
+										parseIntLiteral(_currentToken.getTokenText()), 0);
+								accept(type);
+								state = OPERATOR;
+								continue;
+							case TRUE:
+							case FALSE:
+								makeNode(NodeKind.BOOLEAN_LITERAL, _currentToken.getOffset(), type == TokenType.TRUE ? 1 : 0, 0);
+								accept(type);
+								state = OPERATOR;
+								continue;
+							case THIS:
+								makeNode(NodeKind.THIS, _currentToken.getOffset(), AST.NONE, 0);
+								accept(type);
+								indexed = false;
+								called = false;
+								state = REFERENCE;
+								continue;
+							case IDENTIFIER:
+								makeNode(NodeKind.IDENTIFIER, _currentToken.getOffset(), acceptIdentifier(), 0);
+								indexed = false;
+								called = false;
+								state = REFERENCE;
+								continue;
+							case NEW:
+								int position = _currentToken.getOffset();
+								accept(TokenType.NEW);
+								int typePosition = _currentToken.getOffset();
+								if (_currentToken.getTokenType() == TokenType.INT) {
+									accept(TokenType.INT);
+									makeNode(NodeKind.NEW_ARRAY, position, AST.NONE, 0);
+									makeNode(NodeKind.INT_TYPE, typePosition, AST.NONE, 0);
+								} else {
+									int name = acceptIdentifier();
+									if (_currentToken.getTokenType() == TokenType.LPAREN) {
+										accept(TokenType.LPAREN);
+										accept(TokenType.RPAREN);
+										makeNode(NodeKind.NEW_OBJECT, position, name, 0);
+										state = OPERATOR;
+										continue;
+									}
+									makeNode(NodeKind.NEW_ARRAY, position, AST.NONE, 0);
+									makeNode(NodeKind.CLASS_TYPE, typePosition, name, 0);
+								}
+								accept(TokenType.LSQUARE);
+								pushFrame(NEW_ARRAY);
+								pushOperator(MARKER);
+								continue;
+							default:
+								reportError(ErrorCode.UNEXPECTED_PRIMARY, _currentToken.getTokenText());
+								throw new SyntaxError();
+						}
+					case REFERENCE:
+						switch (type) {
+							case DOT:
+								accept(TokenType.DOT);
+								int memberPosition = _currentToken.getOffset();
+								makeNode(NodeKind.FIELD_ACCESS, memberPosition, acceptIdentifier(), 1);
+								continue;
+							case LSQUARE:
+								if (indexed) {
+									reportError(ErrorCode.MULTIPLE_INDEXING, _currentToken.getTokenText());
+									throw new SyntaxError();
+								}
+								accept(TokenType.LSQUARE);
+								pushFrame(INDEX | (called ? CALLED : 0));
+								pushOperator(MARKER);
+								state = OPERAND;
+								continue;
+							case LPAREN:
+								accept(TokenType.LPAREN);
+								called = true;
+								int callBase = openCall();
+								if (_currentToken.getTokenType() != TokenType.RPAREN) {
+									pushFrame(ARGUMENTS | (indexed ? INDEXED : 0) | CALLED | callBase << FRAME_BASE_SHIFT);
+									pushOperator(MARKER);
+									state = OPERAND;
+									continue;
+								}
+								accept(TokenType.RPAREN);
+								close(callBase);
+								checkNoIndexAfterCall();
+								continue;
+							default:
+								if (referenceOnly && _expressionTop == frameBase) {
+									return called;
+								}
+								state = OPERATOR;
+								continue;
+						}
+					default:
+						int precedence = PRECEDENCE[type.ordinal()];
+						if (precedence > 0) {
+							reduce(precedence);
+							if (precedence >= (_expressionTop == frameBase ? minPrecedence : PRECEDENCE_OR)) {
+								accept(type);
+								pushOperator(type.ordinal());
+								state = OPERAND;
+								continue;
+							}
+						}
+
+						reduce(PRECEDENCE_OR);
+						_operatorTop--;
+						if (_expressionTop == frameBase) {
+							return called;
+						}
+
+						int frame = _expressionFrames[--_expressionTop];
+						indexed = (frame & INDEXED) != 0;
+						called = (frame & CALLED) != 0;
+						switch (frame & FRAME_KIND) {
+							case PARENTHESES:
+								accept(TokenType.RPAREN);
+								continue;
+							case NEW_ARRAY:
+								accept(TokenType.RSQUARE);
+								close(_nodeTop - 2);
+								continue;
+							case INDEX:
+								accept(TokenType.RSQUARE);
+								makeNode(NodeKind.INDEX, _ast.getPosition(_nodes[_nodeTop - 2]), AST.NONE, 2);
+								checkArrayIndexing();
+								indexed = true;
+								if (_currentToken.getTokenType() == TokenType.LPAREN) {
+									reportError(ErrorCode.INDEXED_CALL, _currentToken.getTokenText());
+									throw new SyntaxError();
+								}
+								state = REFERENCE;
+								continue;
+							default:
+								if (_currentToken.getTokenType() == TokenType.COMMA) {
+									accept(TokenType.COMMA);
+									pushFrame(frame);
+									pushOperator(MARKER);
+									state = OPERAND;
+								} else {
+									accept(TokenType.RPAREN);
+									close(frame >>> FRAME_BASE_SHIFT);
+									checkNoIndexAfterCall();
+									state = REFERENCE;
+								}
+								continue;
+						}
+				}
+			}
+		} finally {
+			_operatorTop = operatorBase;
+			_expressionTop = frameBase;
 		}
 	}
 
-	private void parseRelationalExpression() throws SyntaxError {
-		parseAdditiveExpression();
-		while (_currentToken.getTokenType() == TokenType.OPERATOR &&
-				(_currentToken.getTokenText().equals("<") || _currentToken.getTokenText().equals(">") ||
-						_currentToken.getTokenText().equals("<=") || _currentToken.getTokenText().equals(">="))) {
-			accept(TokenType.OPERATOR);
-			parseAdditiveExpression();
+	private void reduce(int precedence) {
+		while (true) {
+			int operator = _operators[_operatorTop - 1];
+			if (operator == MARKER) {
+				return;
+			}
+			int top = (operator & UNARY) != 0 ? PRECEDENCE_UNARY : PRECEDENCE[operator];
+			if (top < precedence) {
+				return;
+			}
+			_operatorTop--;
+			if ((operator & UNARY) != 0) {
+				close(_nodeTop - 1);
+			} else {
+				makeNode(NodeKind.BINARY, _ast.getPosition(_nodes[_nodeTop - 2]), operator, 2);
+			}
 		}
 	}
 
-	private void parseAdditiveExpression() throws SyntaxError {
-		parseMultiplicativeExpression();
-		while (_currentToken.getTokenType() == TokenType.OPERATOR &&
-				(_currentToken.getTokenText().equals("+") || _currentToken.getTokenText().equals("-"))) {
-			accept(TokenType.OPERATOR);
-			parseMultiplicativeExpression();
+	// Pushes a node whose children are the top count nodes of the node stack.
+	private void makeNode(NodeKind kind, int position, int value, int count) {
+		int node = _ast.add(kind, position, value);
+		if (count > 0) {
+			_nodeTop -= count;
+			_ast.setChildren(node, _nodes, _nodeTop, _nodeTop + count);
 		}
+		pushNode(node);
 	}
 
-	private void parseMultiplicativeExpression() throws SyntaxError {
-		parseUnaryExpression();
-		while (_currentToken.getTokenType() == TokenType.OPERATOR &&
-				(_currentToken.getTokenText().equals("*") || _currentToken.getTokenText().equals("/"))) {
-			accept(TokenType.OPERATOR);
-			parseUnaryExpression();
-		}
+	// Pushes a node whose children are pushed after it; close() links them.
+	private int open(NodeKind kind, int position, int value) {
+		pushNode(_ast.add(kind, position, value));
+		return _nodeTop;
 	}
 
-	private void parseUnaryExpression() throws SyntaxError {
-		if (_currentToken.getTokenType() == TokenType.OPERATOR &&
-				(_currentToken.getTokenText().equals("!") || _currentToken.getTokenText().equals("-"))) {
-			accept(TokenType.OPERATOR);
-			parseUnaryExpression();
-		} else {
-			parsePrimaryExpression();
-		}
+	private void close(int base) {
+		_ast.setChildren(_nodes[base - 1], _nodes, base, _nodeTop);
+		_nodeTop = base;
 	}
 
-	private void parsePrimaryExpression() throws SyntaxError {
-		switch (_currentToken.getTokenType()) {
-			case INTEGER_LITERAL:
-				accept(TokenType.INTEGER_LITERAL);
-				break;
-			case TRUE:
-				accept(TokenType.TRUE);
-				break;
-			case FALSE:
-				accept(TokenType.FALSE);
-				break;
-			case THIS:
-			case IDENTIFIER:
-				parseReference();
-				break;
-			case NEW:
-				parseNewExpression();
-				break;
-			case LPAREN:
-				accept(TokenType.LPAREN);
-				parseExpression();
-				accept(TokenType.RPAREN);
-				break;
-			default:
-				_errors.reportError("Unexpected token in primary expression: ", _currentToken.getTokenText());
-				throw new SyntaxError();
+	// Makes the reference on top of the node stack the first child of a new CALL node.
+	private int openCall() {
+		int callee = _nodes[_nodeTop - 1];
+		_nodes[_nodeTop - 1] = _ast.add(NodeKind.CALL, _ast.getPosition(callee), AST.NONE);
+		pushNode(callee);
+		return _nodeTop - 1;
+	}
+
+	private void parseCallArguments() throws SyntaxError {
+		int base = openCall();
+		if (_currentToken.getTokenType() != TokenType.RPAREN) {
+			parseArgumentList();
 		}
+		accept(TokenType.RPAREN);
+		close(base);
 	}
 
-	private void parseNewExpression() throws SyntaxError {
-		accept(TokenType.NEW);
-		if (_currentToken.getTokenType() == TokenType.INT) {
-			accept(TokenType.INT);
-			accept(TokenType.LSQUARE);
-			parseExpression();
-			accept(TokenType.RSQUARE);
-		} else {
+	private void pushNode(int node) {
+		if (_nodeTop == _nodes.length) {
+			_nodes = Arrays.copyOf(_nodes, _nodeTop * 2);
+		}
+		_nodes[_nodeTop++] = node;
+	}
 
-			accept(TokenType.IDENTIFIER);
-			if (_currentToken.getTokenType() == TokenType.LPAREN) {
-				accept(TokenType.LPAREN);
-				accept(TokenType.RPAREN);
+	private int acceptIdentifier() throws SyntaxError {
+		int name = AST.NONE;
+		if (_currentToken.getTokenType() == TokenType.IDENTIFIER) {
+			if (_tokens != null) {
+				int index = _tokens.position();
+				name = _ast.intern(_tokens.source(), _tokens.getStart(index), _tokens.getLength(index));
 			} else {
-				accept(TokenType.LSQUARE);
-				parseExpression();
-				accept(TokenType.RSQUARE);
+				name = nameOf((Token) _currentToken);
 			}
 		}
+		accept(TokenType.IDENTIFIER);
+		return name;
 	}
 
-	private boolean parseReference() throws SyntaxError {
-		boolean addedSomething = false;
-		boolean hasIndexed = false;
+	private int nameOf(Token token) {
+		if (_symbolAst != _ast) {
+			_symbolAst = _ast;
+			clearSymbolMap();
+		}
+		int key = token.getSymbol() + 1;
+		int mask = _symbolKeys.length - 1;
+		int slot = symbolSlot(key, mask);
+		while (_symbolKeys[slot] != 0) {
+			if (_symbolKeys[slot] == key) {
+				return _symbolNames[slot];
+			}
+			slot = slot + 1 & mask;
+		}
+		int name = _ast.intern(token.getTokenText());
+		_symbolKeys[slot] = key;
+		_symbolNames[slot] = name;
+		if (++_symbolCount * 2 > _symbolKeys.length) {
+			growSymbolMap();
+		}
+		return name;
+	}
 
-		if (_currentToken.getTokenType() == TokenType.THIS) {
-			accept(TokenType.THIS);
-		} else if (_currentToken.getTokenType() == TokenType.IDENTIFIER) {
-			accept(TokenType.IDENTIFIER);
+	// A map grown for a large tree is dropped when the last tree used little of it.
+	private void clearSymbolMap() {
+		if (_symbolKeys.length > SYMBOL_MAP_CAPACITY && _symbolCount * 8 < _symbolKeys.length) {
+			_symbolKeys = new int[SYMBOL_MAP_CAPACITY];
+			_symbolNames = new int[SYMBOL_MAP_CAPACITY];
 		} else {
-			_errors.reportError("Expected 'this' or identifier, but got ", _currentToken.getTokenText());
-			throw new SyntaxError();
+			Arrays.fill(_symbolKeys, 0);
 		}
+		_symbolCount = 0;
+	}
 
-		while (true) {
-			if (_currentToken.getTokenType() == TokenType.DOT) {
-				accept(TokenType.DOT);
-				accept(TokenType.IDENTIFIER);
-			} else if (_currentToken.getTokenType() == TokenType.LSQUARE) {
-				if (hasIndexed) {
-					_errors.reportError("Multiple indexing operations are not allowed: ", _currentToken.getTokenText());
-					throw new SyntaxError();
-				}
-				accept(TokenType.LSQUARE);
-				parseExpression();
-				accept(TokenType.RSQUARE);
-				checkArrayIndexing();
-				hasIndexed = true;
-				if (_currentToken.getTokenType() == TokenType.LPAREN) {
-					_errors.reportError("Array access on method call is not allowed: ", _currentToken.getTokenText());
-					throw new SyntaxError();
-				}
-			} else if (_currentToken.getTokenType() == TokenType.LPAREN) {
-				accept(TokenType.LPAREN);
-				if (_currentToken.getTokenType() != TokenType.RPAREN) {
-					parseArgumentList();
-				}
-				accept(TokenType.RPAREN);
-				addedSomething = true;
-				if (_currentToken.getTokenType() == TokenType.LSQUARE) {
-					_errors.reportError("Array access on method call is not allowed: ", _currentToken.getTokenText());
-					throw new SyntaxError();
+	private static int symbolSlot(int key, int mask) {
+		int hash = key * 0x9E3779B9;
+		return (hash ^ hash >>> 16) & mask;
+	}
+
+	private void growSymbolMap() {
+		int[] keys = _symbolKeys;
+		int[] names = _symbolNames;
+		_symbolKeys = new int[keys.length * 2];
+		_symbolNames = new int[keys.length * 2];
+		int mask = _symbolKeys.length - 1;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				int slot = symbolSlot(keys[i], mask);
+				while (_symbolKeys[slot] != 0) {
+					slot = slot + 1 & mask;
 				}
-			} else {
-				break;
+				_symbolKeys[slot] = keys[i];
+				_symbolNames[slot] = names[i];
 			}
 		}
-		return addedSomething;
+	}
+
+	// Literals too large for an int wrap around; the parser does not range-check them.
+	private static int parseIntLiteral(String text) {
+		int value = 0;
+		for (int i = 0; i < text.length(); i++) {
+			value = value * 10 + (text.charAt(i) - '0');
+		}
+		return value;
+	}
+
+	private void pushOperator(int operator) {
+		if (_operatorTop == _operators.length) {
+			_operators = Arrays.copyOf(_operators, _operatorTop * 2);
+		}
+		_operators[_operatorTop++] = operator;
+	}
+
+	private void pushFrame(int frame) {
+		if (_expressionTop == _expressionFrames.length) {
+			_expressionFrames = Arrays.copyOf(_expressionFrames, _expressionTop * 2);
+		}
+		_expressionFrames[_expressionTop++] = frame;
 	}
 
 	private void checkArrayIndexing() throws SyntaxError {
 		if (_currentToken.getTokenType() == TokenType.LSQUARE) {
-			_errors.reportError("Multi-dimensional array indexing is not allowed: ", _currentToken.getTokenText());
+			reportError(ErrorCode.MULTI_DIMENSIONAL_INDEX, _currentToken.getTokenText());
+			throw new SyntaxError();
+		}
+	}
+
+	private void checkNoIndexAfterCall() throws SyntaxError {
+		if (_currentToken.getTokenType() == TokenType.LSQUARE) {
+			reportError(ErrorCode.INDEXED_CALL, _currentToken.getTokenText());
 			throw new SyntaxError();
 		}
 	}
@@ -522,13 +1049,117 @@ public class Parser {
 		return type == TokenType.INT || type == TokenType.BOOLEAN || type == TokenType.IDENTIFIER;
 	}
 
+	private boolean canRecover() {
+		return _maxErrors > 1 && _errors.getErrorCount() < _maxErrors
+				&& _currentToken.getTokenType() != TokenType.EOT;
+	}
+
+	private void recoverClass(SyntaxError e) throws SyntaxError {
+		if (!canRecover()) {
+			throw e;
+		}
+		while (_currentToken.getTokenType() != TokenType.CLASS && _currentToken.getTokenType() != TokenType.EOT) {
+			acceptIt();
+		}
+	}
+
+	private void recoverMember(SyntaxError e, int mark) throws SyntaxError {
+		if (!canRecover()) {
+			throw e;
+		}
+		while (true) {
+			switch (_currentToken.getTokenType()) {
+				case CLASS:
+				case EOT:
+					throw e;
+				case SEMICOLON:
+					acceptIt();
+					return;
+				case RCURLY:
+				case PUBLIC:
+				case PRIVATE:
+				case STATIC:
+				case VOID:
+					if (_consumed == mark && _currentToken.getTokenType() != TokenType.RCURLY) {
+						acceptIt();
+					}
+					return;
+				case LCURLY:
+					skipBlock();
+					return;
+				default:
+					acceptIt();
+					break;
+			}
+		}
+	}
+
+	private void recoverStatement(SyntaxError e, int mark) throws SyntaxError {
+		if (!canRecover()) {
+			throw e;
+		}
+		while (true) {
+			switch (_currentToken.getTokenType()) {
+				case CLASS:
+				case PUBLIC:
+				case PRIVATE:
+				case STATIC:
+				case VOID:
+				case EOT:
+					throw e;
+				case SEMICOLON:
+					acceptIt();
+					return;
+				case RCURLY:
+				case LCURLY:
+				case IF:
+				case WHILE:
+				case RETURN:
+					if (_consumed == mark && _currentToken.getTokenType() != TokenType.RCURLY) {
+						acceptIt();
+					}
+					return;
+				default:
+					acceptIt();
+					break;
+			}
+		}
+	}
+
+	private void skipBlock() {
+		int depth = 0;
+		do {
+			if (_currentToken.getTokenType() == TokenType.LCURLY) {
+				depth++;
+			} else if (_currentToken.getTokenType() == TokenType.RCURLY) {
+				depth--;
+			}
+			acceptIt();
+		} while (depth > 0 && _currentToken.getTokenType() != TokenType.EOT);
+	}
+
+	private void acceptIt() {
+		_consumed++;
+		if (_tokens != null) {
+			_tokens.advance();
+		} else if (_pipe != null) {
+			_currentToken = _pipe.next(_errors);
+		} else {
+			_currentToken = _scanner.scan();
+		}
+	}
+
 	private void accept(TokenType expectedType) throws SyntaxError {
 		if (_currentToken.getTokenType() == expectedType) {
-			_currentToken = _scanner.scan();
+			acceptIt();
 		} else {
-			_errors.reportError("Expected token ", expectedType.toString(),
-					", but got ", _currentToken.getTokenText(), " of type ", _currentToken.getTokenType().toString());
+			reportError(ErrorCode.EXPECTED_TOKEN, expectedType, _currentToken.getTokenText(),
+					_currentToken.getTokenType());
 			throw new SyntaxError();
 		}
 	}
-}
\ No newline at end of file
+
+	private void reportError(ErrorCode code, Object... arguments) {
+		_errors.report(code, _currentToken.getLine(), _currentToken.getColumn(), arguments);
+	}
+}
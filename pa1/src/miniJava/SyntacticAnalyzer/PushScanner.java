@@ -0,0 +1,159 @@
+package miniJava.SyntacticAnalyzer;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+import miniJava.ErrorCode;
+import miniJava.ErrorReporter;
+
+// Scans source that arrives in chunks, handing each token to the consumer as soon as
+// the byte after it has been fed. Nothing is kept of a chunk once feed() returns except
+// the text of a token that runs past its end, so memory does not grow with the file.
+//
+// This runs the DFA of ScannerTable one byte at a time: its state is all that a token
+// or comment split across chunks needs. Tokens, positions and diagnostics are the ones
+// Scanner reports for the concatenated input.
+public class PushScanner {
+	private final ErrorReporter _errors;
+	private final Consumer<Token> _tokens;
+	private final SymbolTable _symbols;
+	private final StringBuilder _text = new StringBuilder();
+	private int _row = ScannerTable.START * 128;
+	private boolean _skipping = true;
+	private boolean _ended;
+	// Line and column are kept as Scanner used to, since no source is kept to index.
+	private int _offset;
+	private int _line = 1;
+	private int _column;
+	private int _tokenStart;
+	private int _tokenLine;
+	private int _tokenColumn;
+
+	public PushScanner(ErrorReporter errors, Consumer<Token> tokens) {
+		this(errors, new SymbolTable(), tokens);
+	}
+
+	public PushScanner(ErrorReporter errors, SymbolTable symbols, Consumer<Token> tokens) {
+		this._errors = errors;
+		this._tokens = tokens;
+		this._symbols = symbols;
+	}
+
+	// Consumes the chunk's remaining bytes.
+	public void feed(ByteBuffer chunk) {
+		if (_ended) {
+			throw new IllegalStateException("input has already ended");
+		}
+
+		int row = _row;
+		boolean skipping = _skipping;
+		int offset = _offset;
+		int line = _line;
+		int column = _column;
+		for (int at = chunk.position(), limit = chunk.limit(); at < limit; at++, offset++) {
+			int b = chunk.get(at) & 0xFF;
+			if (b > 127) {
+				_errors.report(ErrorCode.INVALID_CHARACTER, line, column + 1, (char) b);
+				continue;
+			}
+			if (b == '\n') {
+				line++;
+				column = 0;
+			} else {
+				column++;
+			}
+
+			int entry = ScannerTable.TRANSITIONS[row + b];
+			if (entry == ScannerTable.DEAD) {
+				emit(row / 128);
+				// Every character leads somewhere from START.
+				entry = ScannerTable.TRANSITIONS[ScannerTable.START * 128 + b];
+				skipping = true;
+			}
+			if ((entry & ScannerTable.SKIPPING) == 0) {
+				if (skipping) {
+					_tokenStart = offset;
+					_tokenLine = line;
+					_tokenColumn = column;
+					_text.setLength(0);
+				}
+				_text.append((char) b);
+				skipping = false;
+			} else {
+				skipping = true;
+			}
+			row = entry >>> 2;
+		}
+		chunk.position(chunk.limit());
+
+		this._row = row;
+		this._skipping = skipping;
+		this._offset = offset;
+		this._line = line;
+		this._column = column;
+	}
+
+	// Emits the last token, if any, and EOT.
+	public void endOfInput() {
+		if (_ended) {
+			throw new IllegalStateException("input has already ended");
+		}
+		_ended = true;
+
+		int state = _row / 128;
+		if (!_skipping) {
+			emit(state);
+			state = ScannerTable.START;
+		}
+		// As in Scanner, the end after a block comment is reported at its opening slash.
+		if (state == ScannerTable.BLOCK_COMMENT || state == ScannerTable.BLOCK_STAR) {
+			_errors.report(ErrorCode.UNCLOSED_COMMENT, _line, _column);
+		} else if (state == ScannerTable.START || state == ScannerTable.LINE_COMMENT) {
+			_tokenStart = _offset;
+			_tokenLine = _line;
+			_tokenColumn = _column;
+			_text.setLength(0);
+		}
+		_tokens.accept(new PositionedToken(TokenType.EOT, _text.toString(), SymbolTable.NONE, _tokenStart,
+				_tokenLine, _tokenColumn));
+	}
+
+	private void emit(int state) {
+		if (state == ScannerTable.UNKNOWN) {
+			_errors.report(ErrorCode.UNKNOWN_OPERATOR, _tokenLine, _tokenColumn, _text.charAt(0));
+		}
+		TokenType type = ScannerTable.ACCEPTS[state];
+		String text;
+		int symbol = SymbolTable.NONE;
+		if (type.getSpelling() != null) {
+			text = type.getSpelling();
+		} else if (type == TokenType.IDENTIFIER) {
+			symbol = _symbols.intern(_text);
+			text = _symbols.getName(symbol);
+		} else {
+			text = _text.toString();
+		}
+		_tokens.accept(new PositionedToken(type, text, symbol, _tokenStart, _tokenLine, _tokenColumn));
+	}
+
+	private static final class PositionedToken extends Token {
+		private final int _line;
+		private final int _column;
+
+		PositionedToken(TokenType type, String text, int symbol, int offset, int line, int column) {
+			super(type, text, symbol, offset, null);
+			this._line = line;
+			this._column = column;
+		}
+
+		@Override
+		public int getLine() {
+			return _line;
+		}
+
+		@Override
+		public int getColumn() {
+			return _column;
+		}
+	}
+}
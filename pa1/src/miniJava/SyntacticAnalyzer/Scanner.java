@@ -2,134 +2,347 @@ package miniJava.SyntacticAnalyzer;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 
+import miniJava.ErrorCode;
 import miniJava.ErrorReporter;
 
 public class Scanner {
-	private InputStream _in;
+	// Runs of whitespace and comment text are skipped eight bytes at a time. Each run
+	// stops at a byte that needs the character-at-a-time path: the end of the run, or
+	// any non-ASCII byte, which nextChar() reports.
+	static final int WHITESPACE = 0;
+	static final int LINE_COMMENT = 1;
+	static final int BLOCK_COMMENT = 2;
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+	private static final long HIGHS = 0x8080808080808080L;
+
+	private ByteBuffer _in;
+	private boolean _littleEndian;
 	private ErrorReporter _errors;
+	private ScannerEngine _engine;
 	private StringBuilder _currentText;
+	// The table-driven engine counts token characters instead of collecting them.
+	private int _tokenLength;
 	private char _currentChar;
-	private int _line;
-	private int _column;
+	private int _offset;
+	private int _tokenStart;
+	private LineIndex _lines;
+	private SymbolTable _symbols;
 
 	public Scanner(InputStream in, ErrorReporter errors) {
+		this(readFully(in, errors), errors);
+	}
+
+	public Scanner(byte[] in, ErrorReporter errors) {
+		this(ByteBuffer.wrap(in), errors);
+	}
+
+	public Scanner(ByteBuffer in, ErrorReporter errors) {
+		this(in, errors, ScannerEngine.HAND_WRITTEN);
+	}
+
+	public Scanner(ByteBuffer in, ErrorReporter errors, ScannerEngine engine) {
+		this(in, errors, engine, new LineIndex(in));
+	}
+
+	// Interns identifiers into symbols, which may be shared with other scanners.
+	public Scanner(ByteBuffer in, ErrorReporter errors, SymbolTable symbols) {
+		this(in, errors, ScannerEngine.HAND_WRITTEN, new LineIndex(in), symbols);
+	}
+
+	// Starts wherever in is positioned, with positions resolved against lines.
+	Scanner(ByteBuffer in, ErrorReporter errors, LineIndex lines) {
+		this(in, errors, ScannerEngine.HAND_WRITTEN, lines);
+	}
+
+	Scanner(ByteBuffer in, ErrorReporter errors, ScannerEngine engine, LineIndex lines) {
+		this(in, errors, engine, lines, new SymbolTable());
+	}
+
+	Scanner(ByteBuffer in, ErrorReporter errors, ScannerEngine engine, LineIndex lines, SymbolTable symbols) {
+		this._engine = engine;
+		this._symbols = symbols;
+		this._currentText = new StringBuilder();
+		start(in, errors, lines);
+	}
+
+	// Starts over on new input as if newly constructed, keeping the engine, the symbol
+	// table and the text buffer grown so far.
+	public void reset(ByteBuffer in, ErrorReporter errors) {
+		start(in, errors, new LineIndex(in));
+	}
+
+	// Interns the identifiers of in into symbols from now on.
+	public void reset(ByteBuffer in, ErrorReporter errors, SymbolTable symbols) {
+		this._symbols = symbols;
+		start(in, errors, new LineIndex(in));
+	}
+
+	private void start(ByteBuffer in, ErrorReporter errors, LineIndex lines) {
 		this._in = in;
+		this._littleEndian = in.order() == ByteOrder.LITTLE_ENDIAN;
 		this._errors = errors;
-		this._currentText = new StringBuilder();
-		this._line = 1;
-		this._column = 0;
+		this._lines = lines;
+		this._currentText.setLength(0);
+		this._tokenLength = 0;
+		this._tokenStart = 0;
 
 		nextChar();
 	}
 
 	public Token scan() {
-		_currentText.setLength(0);
+		return makeToken(next());
+	}
 
-		while (Character.isWhitespace(_currentChar)) {
-			skipIt();
+	TokenType next() {
+		if (_engine == ScannerEngine.TABLE_DRIVEN) {
+			return nextFromTable();
 		}
+		while (true) {
+			_currentText.setLength(0);
+
+			while (Character.isWhitespace(_currentChar)) {
+				skipRun(WHITESPACE);
+				skipIt();
+			}
+
+			_tokenStart = _offset;
 
-		if (_currentChar == '/') {
-			takeIt();
 			if (_currentChar == '/') {
-				skipSingleLineComment();
-				return scan();
-			} else if (_currentChar == '*') {
-				skipMultiLineComment();
-				if (_currentChar == (char) -1) {
-					return makeToken(TokenType.EOT);
+				takeIt();
+				if (_currentChar == '/') {
+					skipSingleLineComment();
+					continue;
+				} else if (_currentChar == '*') {
+					skipMultiLineComment();
+					if (_currentChar == (char) -1) {
+						return TokenType.EOT;
+					}
+					continue;
+				} else {
+					return TokenType.DIVIDE;
 				}
-				return scan();
-			} else {
-				return makeToken(TokenType.OPERATOR);
 			}
+
+			if (_currentChar == (char) -1) {
+				return TokenType.EOT;
+			}
+
+			if (Character.isLetter(_currentChar)) {
+				return scanIdentifier();
+			}
+
+			if (Character.isDigit(_currentChar)) {
+				return scanNumber();
+			}
+
+			return scanOperator();
 		}
+	}
+
+	int tokenStart() {
+		return _tokenStart;
+	}
+
+	int tokenLength() {
+		return _engine == ScannerEngine.TABLE_DRIVEN ? _tokenLength : _currentText.length();
+	}
+
+	ByteBuffer source() {
+		return _in;
+	}
+
+	LineIndex lineIndex() {
+		return _lines;
+	}
+
+	public SymbolTable getSymbolTable() {
+		return _symbols;
+	}
+
+	// Runs the DFA from the current character to the end of the next token. Characters
+	// are read as nextChar() reads them, with the offset kept in a local until the end.
+	private TokenType nextFromTable() {
+		ByteBuffer in = _in;
+		int limit = in.limit();
+		int position = in.position();
+		int offset = _offset;
+		char c = _currentChar;
+		int row = ScannerTable.START * 128;
+		boolean skipping = true;
+		int length = 0;
+
+		while (c != (char) -1) {
+			int entry = ScannerTable.TRANSITIONS[row + c];
+			if (entry == ScannerTable.DEAD) {
+				break;
+			}
+			if ((entry & ScannerTable.SKIPPING) == 0) {
+				if (skipping) {
+					_tokenStart = offset;
+					length = 0;
+				}
+				length++;
+				skipping = false;
+			} else {
+				skipping = true;
+			}
+			row = entry >>> 2;
 
-		if (_currentChar == (char) -1) {
-			return makeToken(TokenType.EOT);
+			if ((entry & ScannerTable.RUN) != 0) {
+				in.position(position);
+				skipRun(ScannerTable.RUNS[row / 128]);
+				position = in.position();
+			}
+
+			c = (char) -1;
+			offset = limit;
+			while (position < limit) {
+				int b = in.get(position) & 0xFF;
+				if (b > 127) {
+					report(ErrorCode.INVALID_CHARACTER, position++, (char) b);
+					continue;
+				}
+				offset = position++;
+				c = (char) b;
+				break;
+			}
 		}
 
-		if (Character.isLetter(_currentChar)) {
-			return scanIdentifier();
+		in.position(position);
+		_offset = offset;
+		_currentChar = c;
+
+		int state = row / 128;
+		if (skipping) {
+			// End of input between tokens. After a block comment the end is reported at
+			// its opening slash, as the hand-written scanner does.
+			if (state == ScannerTable.BLOCK_COMMENT || state == ScannerTable.BLOCK_STAR) {
+				report(ErrorCode.UNCLOSED_COMMENT, offset);
+			} else if (state == ScannerTable.START || state == ScannerTable.LINE_COMMENT) {
+				_tokenStart = offset;
+				length = 0;
+			}
+			_tokenLength = length;
+			return TokenType.EOT;
 		}
 
-		if (Character.isDigit(_currentChar)) {
-			return scanNumber();
+		_tokenLength = length;
+		if (state == ScannerTable.UNKNOWN) {
+			report(ErrorCode.UNKNOWN_OPERATOR, _tokenStart, (char) in.get(_tokenStart));
 		}
+		return ScannerTable.ACCEPTS[state];
+	}
 
-		return scanOperator();
+	// The token's characters are its bytes from the start, less any non-ASCII bytes
+	// that nextChar() reported and dropped.
+	private String tokenTextFromSource() {
+		if (_in.hasArray() && _offset - _tokenStart == _tokenLength) {
+			return new String(_in.array(), _in.arrayOffset() + _tokenStart, _tokenLength, StandardCharsets.ISO_8859_1);
+		}
+		byte[] text = new byte[_tokenLength];
+		for (int i = 0, at = _tokenStart; i < text.length; at++) {
+			byte b = _in.get(at);
+			if (b >= 0) {
+				text[i++] = b;
+			}
+		}
+		return new String(text, StandardCharsets.ISO_8859_1);
 	}
 
-	private Token scanIdentifier() {
+	private TokenType scanIdentifier() {
 		while (Character.isLetterOrDigit(_currentChar) || _currentChar == '_') {
 			takeIt();
 		}
-		String text = _currentText.toString();
-		TokenType type = getKeywordTokenType(text);
-		return type != null ? makeToken(type) : makeToken(TokenType.IDENTIFIER);
+		TokenType type = getKeywordTokenType(_currentText);
+		return type != null ? type : TokenType.IDENTIFIER;
 	}
 
-	private Token scanNumber() {
+	private TokenType scanNumber() {
 		while (Character.isDigit(_currentChar)) {
 			takeIt();
 		}
-		return makeToken(TokenType.INTEGER_LITERAL);
+		return TokenType.INTEGER_LITERAL;
 	}
 
-	private Token scanOperator() {
+	private TokenType scanOperator() {
 		char firstChar = _currentChar;
 		takeIt();
 		switch (firstChar) {
 			case '&':
-				if (_currentChar == '&')
+				if (_currentChar == '&') {
 					takeIt();
-				break;
+					return TokenType.AND;
+				}
+				return TokenType.ERROR;
 			case '|':
-				if (_currentChar == '|')
+				if (_currentChar == '|') {
 					takeIt();
-				break;
+					return TokenType.OR;
+				}
+				return TokenType.ERROR;
 			case '=':
-				if (_currentChar == '=')
+				if (_currentChar == '=') {
 					takeIt();
-				break;
+					return TokenType.EQUAL_EQUAL;
+				}
+				return TokenType.EQUALS;
 			case '!':
-				if (_currentChar == '=')
+				if (_currentChar == '=') {
 					takeIt();
-				break;
+					return TokenType.NOT_EQUAL;
+				}
+				return TokenType.NOT;
 			case '<':
-				if (_currentChar == '=')
+				if (_currentChar == '=') {
 					takeIt();
-				break;
+					return TokenType.LESS_EQUAL;
+				}
+				return TokenType.LESS;
 			case '>':
-				if (_currentChar == '=')
+				if (_currentChar == '=') {
 					takeIt();
-				break;
+					return TokenType.GREATER_EQUAL;
+				}
+				return TokenType.GREATER;
 			case '+':
+				return TokenType.PLUS;
 			case '-':
+				return TokenType.MINUS;
 			case '*':
-			case '/':
+				return TokenType.TIMES;
 			case '(':
+				return TokenType.LPAREN;
 			case ')':
+				return TokenType.RPAREN;
 			case '{':
+				return TokenType.LCURLY;
 			case '}':
+				return TokenType.RCURLY;
 			case '[':
+				return TokenType.LSQUARE;
 			case ']':
+				return TokenType.RSQUARE;
 			case ';':
+				return TokenType.SEMICOLON;
 			case ',':
+				return TokenType.COMMA;
 			case '.':
-				break;
+				return TokenType.DOT;
 			default:
-				_errors.reportError("Unknown operator: ", String.valueOf(firstChar));
-				return makeToken(TokenType.ERROR);
+				report(ErrorCode.UNKNOWN_OPERATOR, _tokenStart, firstChar);
+				return TokenType.ERROR;
 		}
-		String op = _currentText.toString();
-		TokenType type = getOperatorTokenType(op);
-		return type != null ? makeToken(type) : makeToken(TokenType.ERROR);
 	}
 
 	private void skipSingleLineComment() {
 		while (_currentChar != '\n' && _currentChar != (char) -1) {
+			skipRun(LINE_COMMENT);
 			skipIt();
 		}
 	}
@@ -146,11 +359,12 @@ public class Scanner {
 					skipIt();
 				}
 			} else {
+				skipRun(BLOCK_COMMENT);
 				skipIt();
 			}
 		}
 		if (!endFound) {
-			_errors.reportError("Unclosed multiline comment");
+			report(ErrorCode.UNCLOSED_COMMENT, _offset);
 		}
 	}
 
@@ -163,109 +377,189 @@ public class Scanner {
 		nextChar();
 	}
 
+	// Consumes the bytes after the current character up to the first one that ends the
+	// run.
+	private void skipRun(int mode) {
+		int at = _in.position();
+		// Most runs between tokens are a few bytes, which are not worth a word.
+		int prefixEnd = Math.min(_in.limit(), at + Long.BYTES);
+		for (; at < prefixEnd; at++) {
+			byte b = _in.get(at);
+			if (endsRun(mode, b)) {
+				_in.position(at);
+				return;
+			}
+		}
+
+		int last = _in.limit() - Long.BYTES;
+		while (at <= last) {
+			long word = _in.getLong(at);
+			if (_littleEndian) {
+				word = Long.reverseBytes(word);
+			}
+			long stops;
+			switch (mode) {
+				case WHITESPACE:
+					stops = ~(matches(word, ' ') | matches(word, '\t') | matches(word, '\n') | matches(word, '\r'))
+							& HIGHS;
+					break;
+				case LINE_COMMENT:
+					stops = matches(word, '\n') | (word & HIGHS);
+					break;
+				default:
+					stops = matches(word, '*') | (word & HIGHS);
+					break;
+			}
+
+			// The first byte of the word is its most significant.
+			int skipped = stops == 0 ? Long.SIZE : Long.numberOfLeadingZeros(stops);
+			at += skipped >>> 3;
+			if (skipped < Long.SIZE) {
+				break;
+			}
+		}
+		_in.position(at);
+	}
+
+	private static boolean endsRun(int mode, byte b) {
+		switch (mode) {
+			case WHITESPACE:
+				return b != ' ' && b != '\t' && b != '\n' && b != '\r';
+			case LINE_COMMENT:
+				return b == '\n' || b < 0;
+			default:
+				return b == '*' || b < 0;
+		}
+	}
+
+	// Sets the high bit of exactly those bytes of word that equal c.
+	private static long matches(long word, char c) {
+		long x = word ^ (ONES * c);
+		return ~(((x & LOWS) + LOWS) | x | LOWS);
+	}
+
 	private void nextChar() {
-		try {
-			int c = _in.read();
-			_currentChar = (char) c;
+		while (_in.hasRemaining()) {
+			_offset = _in.position();
+			int c = _in.get() & 0xFF;
 
-			if (c == -1) {
-				_currentChar = (char) -1;
-			} else if (c > 127) {
-				_errors.reportError("Invalid character: ", String.valueOf((char) c));
-				nextChar();
-			} else {
-				if (_currentChar == '\n') {
-					_line++;
-					_column = 0;
-				} else {
-					_column++;
-				}
+			if (c > 127) {
+				report(ErrorCode.INVALID_CHARACTER, _offset, (char) c);
+				continue;
 			}
+
+			_currentChar = (char) c;
+			return;
+		}
+		_offset = _in.position();
+		_currentChar = (char) -1;
+	}
+
+	private void report(ErrorCode code, int offset, Object... arguments) {
+		_errors.report(code, _lines.getLine(offset), _lines.getColumn(offset), arguments);
+	}
+
+	private static ByteBuffer readFully(InputStream in, ErrorReporter errors) {
+		try {
+			return ByteBuffer.wrap(in.readAllBytes());
 		} catch (IOException e) {
-			_errors.reportError("I/O error: ", e.getMessage());
-			_currentChar = (char) -1;
+			errors.report(ErrorCode.IO_ERROR, 0, 0, e.getMessage());
+			return ByteBuffer.allocate(0);
 		}
 	}
 
 	private Token makeToken(TokenType toktype) {
-		return new Token(toktype, _currentText.toString(), _line, _column - _currentText.length());
-	}
-
-	private TokenType getKeywordTokenType(String text) {
-		switch (text) {
-			case "class":
-				return TokenType.CLASS;
-			case "public":
-				return TokenType.PUBLIC;
-			case "private":
-				return TokenType.PRIVATE;
-			case "static":
-				return TokenType.STATIC;
-			case "void":
-				return TokenType.VOID;
-			case "int":
-				return TokenType.INT;
-			case "boolean":
-				return TokenType.BOOLEAN;
-			case "if":
-				return TokenType.IF;
-			case "else":
-				return TokenType.ELSE;
-			case "while":
-				return TokenType.WHILE;
-			case "return":
-				return TokenType.RETURN;
-			case "true":
-				return TokenType.TRUE;
-			case "false":
-				return TokenType.FALSE;
-			case "this":
-				return TokenType.THIS;
-			case "new":
-				return TokenType.NEW;
+		String text;
+		int symbol = SymbolTable.NONE;
+		if (toktype.getSpelling() != null) {
+			text = toktype.getSpelling();
+		} else if (toktype == TokenType.IDENTIFIER) {
+			// Repeated names find their symbol without building a String. The source
+			// bytes are the name unless nextChar() dropped some of them.
+			int length = _engine == ScannerEngine.HAND_WRITTEN ? _currentText.length() : _tokenLength;
+			if (_offset - _tokenStart == length) {
+				symbol = _symbols.intern(_in, _tokenStart, length);
+			} else if (_engine == ScannerEngine.HAND_WRITTEN) {
+				symbol = _symbols.intern(_currentText);
+			} else {
+				symbol = _symbols.intern(tokenTextFromSource());
+			}
+			text = _symbols.getName(symbol);
+		} else if (_engine == ScannerEngine.TABLE_DRIVEN) {
+			text = tokenTextFromSource();
+		} else {
+			text = _currentText.toString();
+		}
+		return new Token(toktype, text, symbol, _tokenStart, _lines);
+	}
+
+	static TokenType getKeywordTokenType(CharSequence text) {
+		switch (text.length()) {
+			case 2:
+				return matchKeyword(text, TokenType.IF);
+			case 3:
+				switch (text.charAt(0)) {
+					case 'i':
+						return matchKeyword(text, TokenType.INT);
+					case 'n':
+						return matchKeyword(text, TokenType.NEW);
+					default:
+						return null;
+				}
+			case 4:
+				switch (text.charAt(0)) {
+					case 'e':
+						return matchKeyword(text, TokenType.ELSE);
+					case 'v':
+						return matchKeyword(text, TokenType.VOID);
+					case 't':
+						return matchKeyword(text, text.charAt(1) == 'h' ? TokenType.THIS : TokenType.TRUE);
+					default:
+						return null;
+				}
+			case 5:
+				switch (text.charAt(0)) {
+					case 'c':
+						return matchKeyword(text, TokenType.CLASS);
+					case 'f':
+						return matchKeyword(text, TokenType.FALSE);
+					case 'w':
+						return matchKeyword(text, TokenType.WHILE);
+					default:
+						return null;
+				}
+			case 6:
+				switch (text.charAt(0)) {
+					case 'p':
+						return matchKeyword(text, TokenType.PUBLIC);
+					case 'r':
+						return matchKeyword(text, TokenType.RETURN);
+					case 's':
+						return matchKeyword(text, TokenType.STATIC);
+					default:
+						return null;
+				}
+			case 7:
+				switch (text.charAt(0)) {
+					case 'b':
+						return matchKeyword(text, TokenType.BOOLEAN);
+					case 'p':
+						return matchKeyword(text, TokenType.PRIVATE);
+					default:
+						return null;
+				}
 			default:
 				return null;
 		}
 	}
 
-	private TokenType getOperatorTokenType(String op) {
-		switch (op) {
-			case "(":
-				return TokenType.LPAREN;
-			case ")":
-				return TokenType.RPAREN;
-			case "{":
-				return TokenType.LCURLY;
-			case "}":
-				return TokenType.RCURLY;
-			case "[":
-				return TokenType.LSQUARE;
-			case "]":
-				return TokenType.RSQUARE;
-			case ";":
-				return TokenType.SEMICOLON;
-			case ",":
-				return TokenType.COMMA;
-			case ".":
-				return TokenType.DOT;
-			case "=":
-				return TokenType.EQUALS;
-			case "+":
-			case "-":
-			case "*":
-			case "/":
-			case "&&":
-			case "||":
-			case "!":
-			case "<":
-			case ">":
-			case "<=":
-			case ">=":
-			case "==":
-			case "!=":
-				return TokenType.OPERATOR;
-			default:
+	private static TokenType matchKeyword(CharSequence text, TokenType keyword) {
+		String spelling = keyword.getSpelling();
+		for (int i = 0; i < spelling.length(); i++) {
+			if (text.charAt(i) != spelling.charAt(i)) {
 				return null;
+			}
 		}
+		return keyword;
 	}
 }
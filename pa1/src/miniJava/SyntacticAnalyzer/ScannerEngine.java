@@ -0,0 +1,9 @@
+package miniJava.SyntacticAnalyzer;
+
+// Both engines produce the same tokens, positions and diagnostics.
+public enum ScannerEngine {
+	// Character tests and nested switches, one method per kind of token.
+	HAND_WRITTEN,
+	// A DFA over ASCII character classes; see ScannerTable.
+	TABLE_DRIVEN
+}
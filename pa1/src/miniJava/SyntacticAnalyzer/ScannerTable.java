@@ -0,0 +1,204 @@
+package miniJava.SyntacticAnalyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The DFA behind ScannerEngine.TABLE_DRIVEN, built once from the token spellings.
+//
+// Every ASCII character maps to a class: one per operator character and per letter
+// that occurs in a keyword, and shared classes for other letters, digits, whitespace
+// and everything else. Keywords are a trie of states that fall back to the identifier
+// state. A token ends at the first character without a transition; no token needs to
+// look back, so the state it ends in decides its type.
+//
+// Skipping states sit between tokens: START, the comment states, and AFTER_BLOCK,
+// which is START right after a block comment. They matter at end of input, where the
+// hand-written scanner reports the end at the comment's opening slash.
+final class ScannerTable {
+	static final int DEAD = -1;
+
+	static final byte[] CLASSES = new byte[128];
+	static final int CLASS_COUNT;
+
+	static final int START;
+	static final int LINE_COMMENT;
+	static final int BLOCK_COMMENT;
+	static final int BLOCK_STAR;
+	static final int AFTER_BLOCK;
+	static final int UNKNOWN;
+
+	// Indexed by row + character, where a state's row is state * 128: the class table is
+	// folded in so that each character costs one lookup. An entry is DEAD or the target's
+	// row shifted left by two, with SKIPPING and RUN as low bits.
+	static final int[] TRANSITIONS;
+	static final int SKIPPING = 1;
+	static final int RUN = 2;
+	static final TokenType[] ACCEPTS;
+	// Which Scanner run to skip after entering the state, or -1.
+	static final byte[] RUNS;
+
+	private static final String OPERATORS = "/*&|=!<>+-(){}[];,.";
+	private static final TokenType[] KEYWORDS = {
+		TokenType.CLASS, TokenType.PUBLIC, TokenType.PRIVATE, TokenType.STATIC, TokenType.VOID, TokenType.INT,
+		TokenType.BOOLEAN, TokenType.IF, TokenType.ELSE, TokenType.WHILE, TokenType.RETURN, TokenType.TRUE,
+		TokenType.FALSE, TokenType.THIS, TokenType.NEW
+	};
+
+	private static final int OTHER = 0;
+	private static final int WHITESPACE = 1;
+	private static final int NEWLINE = 2;
+	private static final int DIGIT = 3;
+	private static final int UNDERSCORE = 4;
+	private static final int LETTER = 5;
+
+	static {
+		int classes = LETTER + 1;
+		for (char c = 0; c < 128; c++) {
+			if (c == '\n') {
+				CLASSES[c] = NEWLINE;
+			} else if (Character.isWhitespace(c)) {
+				CLASSES[c] = WHITESPACE;
+			} else if (Character.isDigit(c)) {
+				CLASSES[c] = DIGIT;
+			} else if (c == '_') {
+				CLASSES[c] = UNDERSCORE;
+			} else if (Character.isLetter(c)) {
+				CLASSES[c] = LETTER;
+			} else {
+				CLASSES[c] = OTHER;
+			}
+		}
+		for (TokenType keyword : KEYWORDS) {
+			for (char c : keyword.getSpelling().toCharArray()) {
+				if (CLASSES[c] == LETTER) {
+					CLASSES[c] = (byte) classes++;
+				}
+			}
+		}
+		for (char c : OPERATORS.toCharArray()) {
+			CLASSES[c] = (byte) classes++;
+		}
+		CLASS_COUNT = classes;
+		Builder b = new Builder();
+
+		START = b.state(null, true, Scanner.WHITESPACE);
+		LINE_COMMENT = b.state(null, true, Scanner.LINE_COMMENT);
+		BLOCK_COMMENT = b.state(null, true, Scanner.BLOCK_COMMENT);
+		BLOCK_STAR = b.state(null, true, -1);
+		AFTER_BLOCK = b.state(null, true, -1);
+		UNKNOWN = b.state(TokenType.ERROR, false, -1);
+		int identifier = b.state(TokenType.IDENTIFIER, false, -1);
+		int number = b.state(TokenType.INTEGER_LITERAL, false, -1);
+
+		for (int c = 0; c < classes; c++) {
+			b.on(START, c, c == WHITESPACE || c == NEWLINE ? START : c == DIGIT ? number : UNKNOWN);
+			b.on(LINE_COMMENT, c, c == NEWLINE ? START : LINE_COMMENT);
+			b.on(BLOCK_COMMENT, c, BLOCK_COMMENT);
+			b.on(BLOCK_STAR, c, BLOCK_COMMENT);
+		}
+		b.on(number, DIGIT, number);
+		b.identifierChars(START, identifier);
+		b.identifierChars(identifier, identifier);
+
+		for (TokenType keyword : KEYWORDS) {
+			String spelling = keyword.getSpelling();
+			int state = START;
+			for (int i = 0; i < spelling.length(); i++) {
+				int next = b.transition(state, CLASSES[spelling.charAt(i)]);
+				if (next == identifier) {
+					next = b.state(TokenType.IDENTIFIER, false, -1);
+					b.identifierChars(next, identifier);
+					b.on(state, CLASSES[spelling.charAt(i)], next);
+				}
+				state = next;
+			}
+			b._accepts.set(state, keyword);
+		}
+
+		String singles = "+-*(){}[];,.";
+		TokenType[] singleTypes = {
+			TokenType.PLUS, TokenType.MINUS, TokenType.TIMES, TokenType.LPAREN, TokenType.RPAREN,
+			TokenType.LCURLY, TokenType.RCURLY, TokenType.LSQUARE, TokenType.RSQUARE, TokenType.SEMICOLON,
+			TokenType.COMMA, TokenType.DOT
+		};
+		for (int i = 0; i < singles.length(); i++) {
+			b.on(START, CLASSES[singles.charAt(i)], b.state(singleTypes[i], false, -1));
+		}
+		b.pair('&', TokenType.ERROR, '&', TokenType.AND);
+		b.pair('|', TokenType.ERROR, '|', TokenType.OR);
+		b.pair('=', TokenType.EQUALS, '=', TokenType.EQUAL_EQUAL);
+		b.pair('!', TokenType.NOT, '=', TokenType.NOT_EQUAL);
+		b.pair('<', TokenType.LESS, '=', TokenType.LESS_EQUAL);
+		b.pair('>', TokenType.GREATER, '=', TokenType.GREATER_EQUAL);
+
+		int slash = b.state(TokenType.DIVIDE, false, -1);
+		b.on(START, CLASSES['/'], slash);
+		b.on(slash, CLASSES['/'], LINE_COMMENT);
+		b.on(slash, CLASSES['*'], BLOCK_COMMENT);
+		b.on(BLOCK_COMMENT, CLASSES['*'], BLOCK_STAR);
+		b.on(BLOCK_STAR, CLASSES['*'], BLOCK_STAR);
+		b.on(BLOCK_STAR, CLASSES['/'], AFTER_BLOCK);
+		b._rows.set(AFTER_BLOCK, b._rows.get(START).clone());
+
+		int states = b._rows.size();
+		TRANSITIONS = new int[states * 128];
+		ACCEPTS = b._accepts.toArray(new TokenType[0]);
+		RUNS = new byte[states];
+		for (int s = 0; s < states; s++) {
+			RUNS[s] = (byte) (int) b._runs.get(s);
+		}
+		for (int s = 0; s < states; s++) {
+			short[] row = b._rows.get(s);
+			for (int c = 0; c < 128; c++) {
+				int target = row[CLASSES[c]];
+				TRANSITIONS[s * 128 + c] = target == DEAD ? DEAD
+						: (target * 128) << 2 | (b._skipping.get(target) ? SKIPPING : 0)
+								| (RUNS[target] >= 0 ? RUN : 0);
+			}
+		}
+	}
+
+	private ScannerTable() {
+	}
+
+	private static final class Builder {
+		private final List<short[]> _rows = new ArrayList<short[]>();
+		private final List<TokenType> _accepts = new ArrayList<TokenType>();
+		private final List<Boolean> _skipping = new ArrayList<Boolean>();
+		private final List<Integer> _runs = new ArrayList<Integer>();
+
+		int state(TokenType accept, boolean skipping, int run) {
+			short[] row = new short[CLASS_COUNT];
+			Arrays.fill(row, (short) DEAD);
+			_rows.add(row);
+			_accepts.add(accept);
+			_skipping.add(skipping);
+			_runs.add(run);
+			return _rows.size() - 1;
+		}
+
+		void on(int state, int characterClass, int target) {
+			_rows.get(state)[characterClass] = (short) target;
+		}
+
+		int transition(int state, int characterClass) {
+			return _rows.get(state)[characterClass];
+		}
+
+		// Letters start identifiers; digits and underscores may only continue them.
+		void identifierChars(int state, int identifier) {
+			for (char c = 0; c < 128; c++) {
+				if (Character.isLetter(c) || (state != START && (Character.isDigit(c) || c == '_'))) {
+					on(state, CLASSES[c], identifier);
+				}
+			}
+		}
+
+		void pair(char first, TokenType single, char second, TokenType both) {
+			int state = state(single, false, -1);
+			on(START, CLASSES[first], state);
+			on(state, CLASSES[second], state(both, false, -1));
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package miniJava.SyntacticAnalyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class SourceFile {
+	// Below this size a single read into a heap buffer is cheaper than setting up a mapping.
+	private static final long MAP_THRESHOLD = 1 << 20;
+
+	private SourceFile() {
+	}
+
+	public static ByteBuffer read(String filePath) throws IOException {
+		try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size >= MAP_THRESHOLD) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+			}
+			buffer.flip();
+			return buffer;
+		}
+	}
+}
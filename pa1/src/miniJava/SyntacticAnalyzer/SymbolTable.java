@@ -0,0 +1,206 @@
+package miniJava.SyntacticAnalyzer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Interns identifier text into int symbols, so that equal names share one String and
+// compare as ints. One table can be shared by any number of concurrent compilations;
+// it only grows, by one entry per distinct name.
+//
+// Symbols are spread over stripes by hash, and a symbol's low bits are its stripe.
+// Names already in a stripe are found without locking; only adding one takes the
+// stripe's lock. A stripe's arrays are never changed in place except to fill an empty
+// slot, and are replaced by larger copies through a volatile field.
+public final class SymbolTable {
+	public static final int NONE = -1;
+
+	private static final int STRIPE_BITS = 4;
+	private static final int STRIPE_MASK = (1 << STRIPE_BITS) - 1;
+
+	private final Stripe[] _stripes = new Stripe[1 << STRIPE_BITS];
+
+	public SymbolTable() {
+		for (int i = 0; i < _stripes.length; i++) {
+			_stripes[i] = new Stripe();
+		}
+	}
+
+	// Identifiers are ASCII, so each byte is one char of the name.
+	public int intern(ByteBuffer source, int start, int length) {
+		if (!source.hasArray()) {
+			byte[] text = new byte[length];
+			for (int i = 0; i < length; i++) {
+				text[i] = source.get(start + i);
+			}
+			return intern(text, 0, length);
+		}
+		return intern(source.array(), source.arrayOffset() + start, length);
+	}
+
+	public int intern(byte[] source, int start, int length) {
+		int hash = 0;
+		for (int i = start; i < start + length; i++) {
+			hash = 31 * hash + source[i];
+		}
+		hash = mix(hash);
+		Stripe stripe = _stripes[hash & STRIPE_MASK];
+		int index = stripe.find(stripe._table, hash, source, start, length);
+		if (index < 0) {
+			index = stripe.add(hash, new String(source, start, length, StandardCharsets.ISO_8859_1));
+		}
+		return index << STRIPE_BITS | hash & STRIPE_MASK;
+	}
+
+	// Scanned text is Latin-1, and names here are expected to be too.
+	public int intern(CharSequence name) {
+		int hash = 0;
+		for (int i = 0; i < name.length(); i++) {
+			hash = 31 * hash + name.charAt(i);
+		}
+		hash = mix(hash);
+		Stripe stripe = _stripes[hash & STRIPE_MASK];
+		int index = stripe.find(stripe._table, hash, name);
+		if (index < 0) {
+			index = stripe.add(hash, name.toString());
+		}
+		return index << STRIPE_BITS | hash & STRIPE_MASK;
+	}
+
+	// Defined for symbols returned by intern, on this thread or one it handed them to.
+	public String getName(int symbol) {
+		return _stripes[symbol & STRIPE_MASK]._table.names[symbol >>> STRIPE_BITS];
+	}
+
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : _stripes) {
+			size += stripe._table.count;
+		}
+		return size;
+	}
+
+	public long getCharCount() {
+		long chars = 0;
+		for (Stripe stripe : _stripes) {
+			Table table = stripe._table;
+			for (int i = 0; i < table.count; i++) {
+				chars += table.names[i].length();
+			}
+		}
+		return chars;
+	}
+
+	private static int mix(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static final class Table {
+		// Name index + 1, probed from the hash bits above the stripe's.
+		final int[] slots;
+		final int[] hashes;
+		final String[] names;
+		// Each name's chars as bytes, to compare with source in bulk.
+		final byte[][] texts;
+		final int count;
+
+		Table(int capacity, int count) {
+			this.slots = new int[capacity * 2];
+			this.hashes = new int[capacity];
+			this.names = new String[capacity];
+			this.texts = new byte[capacity][];
+			this.count = count;
+		}
+
+		// The same arrays with more of them in use.
+		Table(Table table, int count) {
+			this.slots = table.slots;
+			this.hashes = table.hashes;
+			this.names = table.names;
+			this.texts = table.texts;
+			this.count = count;
+		}
+	}
+
+	private static final class Stripe {
+		private volatile Table _table = new Table(4, 0);
+
+		// An empty slot or a name not yet visible here sends the caller to add(), which
+		// looks again under the lock.
+		int find(Table table, int hash, byte[] source, int start, int length) {
+			int mask = table.slots.length - 1;
+			for (int slot = (hash >>> STRIPE_BITS) & mask;; slot = (slot + 1) & mask) {
+				int index = table.slots[slot] - 1;
+				if (index < 0) {
+					return NONE;
+				}
+				byte[] text = table.texts[index];
+				if (text == null) {
+					return NONE;
+				}
+				if (table.hashes[index] == hash
+						&& Arrays.equals(text, 0, text.length, source, start, start + length)) {
+					return index;
+				}
+			}
+		}
+
+		int find(Table table, int hash, CharSequence text) {
+			int mask = table.slots.length - 1;
+			for (int slot = (hash >>> STRIPE_BITS) & mask;; slot = (slot + 1) & mask) {
+				int index = table.slots[slot] - 1;
+				if (index < 0) {
+					return NONE;
+				}
+				String name = table.names[index];
+				if (name == null) {
+					return NONE;
+				}
+				if (table.hashes[index] == hash && name.contentEquals(text)) {
+					return index;
+				}
+			}
+		}
+
+		synchronized int add(int hash, String name) {
+			Table table = _table;
+			int index = find(table, hash, name);
+			if (index >= 0) {
+				return index;
+			}
+
+			index = table.count;
+			if (index == table.names.length) {
+				table = grow(table);
+			}
+			int mask = table.slots.length - 1;
+			int slot = (hash >>> STRIPE_BITS) & mask;
+			while (table.slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table.hashes[index] = hash;
+			table.names[index] = name;
+			table.texts[index] = name.getBytes(StandardCharsets.ISO_8859_1);
+			table.slots[slot] = index + 1;
+			// Publishes the new count, and the copy if the table grew.
+			_table = new Table(table, index + 1);
+			return index;
+		}
+
+		private static Table grow(Table table) {
+			Table grown = new Table(table.names.length * 2, table.count);
+			System.arraycopy(table.hashes, 0, grown.hashes, 0, table.count);
+			System.arraycopy(table.names, 0, grown.names, 0, table.count);
+			System.arraycopy(table.texts, 0, grown.texts, 0, table.count);
+			int mask = grown.slots.length - 1;
+			for (int index = 0; index < table.count; index++) {
+				int slot = (table.hashes[index] >>> STRIPE_BITS) & mask;
+				while (grown.slots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				grown.slots[slot] = index + 1;
+			}
+			return grown;
+		}
+	}
+}
@@ -1,16 +1,19 @@
 package miniJava.SyntacticAnalyzer;
 
-public class Token {
+public class Token implements TokenView {
 	private TokenType _type;
 	private String _text;
-	private int _line;
-	private int _column;
+	private int _symbol;
+	private int _offset;
+	// Shared by every token of a source; positions are resolved only when asked for.
+	private LineIndex _lines;
 
-	public Token(TokenType type, String text, int line, int column) {
+	Token(TokenType type, String text, int symbol, int offset, LineIndex lines) {
 		this._type = type;
 		this._text = text;
-		this._line = line;
-		this._column = column;
+		this._symbol = symbol;
+		this._offset = offset;
+		this._lines = lines;
 	}
 
 	public TokenType getTokenType() {
@@ -21,11 +24,20 @@ public class Token {
 		return _text;
 	}
 
+	// The identifier's symbol in the scanner's SymbolTable; NONE for other tokens.
+	public int getSymbol() {
+		return _symbol;
+	}
+
+	public int getOffset() {
+		return _offset;
+	}
+
 	public int getLine() {
-		return _line;
+		return _lines.getLine(_offset);
 	}
 
 	public int getColumn() {
-		return _column;
+		return _lines.getColumn(_offset);
 	}
-}
\ No newline at end of file
+}
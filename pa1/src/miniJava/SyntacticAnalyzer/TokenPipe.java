@@ -0,0 +1,223 @@
+package miniJava.SyntacticAnalyzer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import miniJava.Diagnostic;
+import miniJava.ErrorReporter;
+
+// Runs a Scanner on its own thread, ahead of the parser, through a bounded
+// single-producer/single-consumer ring. Both sides publish their index only once per
+// batch and park only after a short spin, so most tokens cross without synchronization.
+//
+// Lexical errors are carried in the ring next to the token whose scan reported them and
+// are handed to the parser's ErrorReporter when that token becomes current. That is
+// the point at which the synchronous path reports them, so the output is identical.
+// Repeats of a repeatable error within one token travel as a count, so a long comment
+// of bad bytes carries one diagnostic per distinct byte rather than one per byte.
+public class TokenPipe implements AutoCloseable {
+	private static final int CAPACITY = 4096;
+	private static final int MASK = CAPACITY - 1;
+	private static final int BATCH = 64;
+	private static final int SPINS = 256;
+	// Below this the thread handoff costs more than lexing in parallel saves.
+	private static final int MIN_PIPELINED_BYTES = 1 << 20;
+
+	private final Token[] _ring = new Token[CAPACITY];
+	private final Diagnostic[][] _ringErrors = new Diagnostic[CAPACITY][];
+	private final int[][] _ringErrorCounts = new int[CAPACITY][];
+	private final ByteBuffer _source;
+	private final Thread _producer;
+	private volatile Thread _consumer;
+
+	private volatile long _published;
+	private volatile long _released;
+	private volatile boolean _producerWaiting;
+	private volatile boolean _consumerWaiting;
+	private volatile boolean _closed;
+	private volatile Throwable _failure;
+
+	// Consumer side only.
+	private long _next;
+	private long _available;
+	private Token _last;
+
+	public TokenPipe(ByteBuffer source) {
+		this._source = source;
+		ByteBuffer input = source.duplicate();
+		this._producer = new Thread(() -> produce(input), "minijava-scanner");
+		this._producer.setDaemon(true);
+		this._producer.start();
+	}
+
+	public static boolean isWorthwhile(ByteBuffer source) {
+		return source.remaining() >= MIN_PIPELINED_BYTES && Runtime.getRuntime().availableProcessors() > 1;
+	}
+
+	ByteBuffer source() {
+		return _source;
+	}
+
+	public void close() {
+		_closed = true;
+		LockSupport.unpark(_producer);
+	}
+
+	private void produce(ByteBuffer input) {
+		long index = 0;
+		try {
+			TokenErrors errors = new TokenErrors();
+			Scanner scanner = new Scanner(input, errors);
+			Token token;
+			do {
+				if (index - _released >= CAPACITY && !awaitSpace(index)) {
+					return;
+				}
+				token = scanner.scan();
+				int slot = (int) index & MASK;
+				_ring[slot] = token;
+				_ringErrors[slot] = errors.takeDiagnostics();
+				_ringErrorCounts[slot] = errors.takeCounts();
+				index++;
+				if ((index & (BATCH - 1)) == 0) {
+					publish(index);
+				}
+			} while (token.getTokenType() != TokenType.EOT);
+		} catch (Throwable e) {
+			_failure = e;
+		}
+		publish(index);
+	}
+
+	private boolean awaitSpace(long index) {
+		// Whatever is buffered has to be visible before we wait on the consumer.
+		publish(index);
+		for (int spins = 0; index - _released >= CAPACITY; spins++) {
+			if (_closed) {
+				return false;
+			}
+			if (spins < SPINS) {
+				Thread.onSpinWait();
+				continue;
+			}
+			_producerWaiting = true;
+			if (index - _released >= CAPACITY && !_closed) {
+				LockSupport.park(this);
+			}
+			_producerWaiting = false;
+		}
+		return true;
+	}
+
+	private void publish(long index) {
+		_published = index;
+		if (_consumerWaiting) {
+			LockSupport.unpark(_consumer);
+		}
+	}
+
+	Token next(ErrorReporter errors) {
+		if (_last != null && _last.getTokenType() == TokenType.EOT) {
+			return _last;
+		}
+		if (_next == _available) {
+			awaitTokens();
+		}
+
+		int slot = (int) _next & MASK;
+		Token token = _ring[slot];
+		Diagnostic[] diagnostics = _ringErrors[slot];
+		if (diagnostics != null) {
+			int[] counts = _ringErrorCounts[slot];
+			for (int i = 0; i < diagnostics.length; i++) {
+				errors.report(diagnostics[i], counts[i]);
+			}
+		}
+		_next++;
+		if ((_next & (BATCH - 1)) == 0) {
+			release(_next);
+		}
+		_last = token;
+		return token;
+	}
+
+	private void awaitTokens() {
+		// Hand back what we have read so that a full ring cannot stall the producer.
+		release(_next);
+		for (int spins = 0; (_available = _published) == _next; spins++) {
+			if (!_producer.isAlive() && _published == _next) {
+				Throwable failure = _failure;
+				if (failure instanceof RuntimeException) {
+					throw (RuntimeException) failure;
+				} else if (failure instanceof Error) {
+					throw (Error) failure;
+				}
+				throw new IllegalStateException("scanner thread stopped before end of input", failure);
+			}
+			if (spins < SPINS) {
+				Thread.onSpinWait();
+				continue;
+			}
+			_consumer = Thread.currentThread();
+			_consumerWaiting = true;
+			if (_published == _next) {
+				LockSupport.parkNanos(this, 1_000_000L);
+			}
+			_consumerWaiting = false;
+		}
+	}
+
+	private void release(long index) {
+		_released = index;
+		if (_producerWaiting) {
+			LockSupport.unpark(_producer);
+		}
+	}
+
+	// Collects what the scan of one token reports, in order, with repeats of a repeatable
+	// error folded into the count of its first report. The parser's reporter does any
+	// folding across tokens and applies its limit.
+	private static final class TokenErrors extends ErrorReporter {
+		private final List<Diagnostic> _reported = new ArrayList<Diagnostic>();
+		private final Map<Diagnostic, Integer> _repeatable = new HashMap<Diagnostic, Integer>();
+		private int[] _counts = new int[8];
+
+		@Override
+		public void report(Diagnostic diagnostic) {
+			boolean repeatable = diagnostic.getCode().isRepeatable();
+			Integer index = repeatable ? _repeatable.get(diagnostic) : null;
+			if (index != null) {
+				_counts[index]++;
+				return;
+			}
+			if (repeatable) {
+				_repeatable.put(diagnostic, _reported.size());
+			}
+			if (_reported.size() == _counts.length) {
+				_counts = Arrays.copyOf(_counts, _counts.length * 2);
+			}
+			_counts[_reported.size()] = 1;
+			_reported.add(diagnostic);
+		}
+
+		// What the last token reported, or null. Must be followed by takeCounts().
+		Diagnostic[] takeDiagnostics() {
+			return _reported.isEmpty() ? null : _reported.toArray(new Diagnostic[0]);
+		}
+
+		int[] takeCounts() {
+			if (_reported.isEmpty()) {
+				return null;
+			}
+			int[] counts = Arrays.copyOf(_counts, _reported.size());
+			_reported.clear();
+			_repeatable.clear();
+			return counts;
+		}
+	}
+}
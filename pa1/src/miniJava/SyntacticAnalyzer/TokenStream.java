@@ -0,0 +1,238 @@
+package miniJava.SyntacticAnalyzer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class TokenStream implements TokenView {
+	private static final TokenType[] TYPES = TokenType.values();
+
+	private ByteBuffer _source;
+	private LineIndex _lineIndex;
+	private byte[] _types;
+	private int[] _starts;
+	private int[] _lengths;
+	private int _size;
+	private int _cursor;
+
+	public TokenStream(Scanner scanner) {
+		this(scanner.source(), scanner.lineIndex(), scanner.source().limit() / 4);
+
+		TokenType type;
+		do {
+			type = scanner.next();
+			add(type, scanner.tokenStart(), scanner.tokenLength());
+		} while (type != TokenType.EOT);
+	}
+
+	TokenStream(ByteBuffer source, LineIndex lines, int capacity) {
+		capacity = Math.max(16, capacity);
+		this._source = source;
+		this._lineIndex = lines;
+		this._types = new byte[capacity];
+		this._starts = new int[capacity];
+		this._lengths = new int[capacity];
+	}
+
+	// Another cursor over the same tokens, so that parts of the stream can be parsed
+	// concurrently. The tokens themselves must not change while views are in use.
+	TokenStream view() {
+		TokenStream view = new TokenStream(_source, _lineIndex, 0);
+		view._types = _types;
+		view._starts = _starts;
+		view._lengths = _lengths;
+		view._size = _size;
+		return view;
+	}
+
+	// Each field is written as a varint delta from the previous token, so most tokens
+	// take three bytes. Encoding goes through a local chunk to avoid a call per byte.
+	public void writeTo(DataOutput out) throws IOException {
+		byte[] chunk = new byte[8192];
+		int length = writeVarint(chunk, 0, _size);
+		int end = 0;
+		for (int i = 0; i < _size; i++) {
+			if (length > chunk.length - 3 * 5) {
+				out.write(chunk, 0, length);
+				length = 0;
+			}
+			chunk[length++] = _types[i];
+			length = writeVarint(chunk, length, _starts[i] - end);
+			length = writeVarint(chunk, length, _lengths[i]);
+			end = _starts[i] + _lengths[i];
+		}
+		out.write(chunk, 0, length);
+	}
+
+	public static TokenStream readFrom(DataInput in, ByteBuffer source) throws IOException {
+		int size = readVarint(in);
+		if (size < 1 || size > source.limit() + 1) {
+			throw new IOException("invalid token count " + size);
+		}
+		TokenStream tokens = new TokenStream(source, new LineIndex(source), size);
+		int end = 0;
+		for (int i = 0; i < size; i++) {
+			int type = in.readByte();
+			if (type < 0 || type >= TYPES.length) {
+				throw new IOException("invalid token type " + type);
+			}
+			int gap = readVarint(in);
+			int length = readVarint(in);
+			// Checked against what is left of the source so that no sum can overflow.
+			if (gap < 0 || length < 0 || gap > source.limit() - end || length > source.limit() - end - gap) {
+				throw new IOException("token " + i + " runs past the end of the source");
+			}
+			int start = end + gap;
+			end = start + length;
+			tokens.add(TYPES[type], start, length);
+		}
+		return tokens;
+	}
+
+	private static int writeVarint(byte[] chunk, int offset, int value) {
+		while ((value & ~0x7F) != 0) {
+			chunk[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		chunk[offset++] = (byte) value;
+		return offset;
+	}
+
+	private static int readVarint(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("malformed varint");
+	}
+
+	void add(TokenType type, int start, int length) {
+		if (_size == _types.length) {
+			int capacity = _size * 2;
+			_types = Arrays.copyOf(_types, capacity);
+			_starts = Arrays.copyOf(_starts, capacity);
+			_lengths = Arrays.copyOf(_lengths, capacity);
+		}
+		_types[_size] = (byte) type.ordinal();
+		_starts[_size] = start;
+		_lengths[_size] = length;
+		_size++;
+	}
+
+	// Positions past the edit are resolved against the replacement's source, so only
+	// offsets need shifting.
+	void splice(int from, int to, TokenStream replacement, int offsetDelta) {
+		for (int i = to; i < _size; i++) {
+			_starts[i] += offsetDelta;
+		}
+
+		int size = _size - (to - from) + replacement._size;
+		if (size > _types.length) {
+			int capacity = Math.max(size, _types.length * 2);
+			_types = Arrays.copyOf(_types, capacity);
+			_starts = Arrays.copyOf(_starts, capacity);
+			_lengths = Arrays.copyOf(_lengths, capacity);
+		}
+
+		int tail = _size - to;
+		int insertEnd = from + replacement._size;
+		System.arraycopy(_types, to, _types, insertEnd, tail);
+		System.arraycopy(_starts, to, _starts, insertEnd, tail);
+		System.arraycopy(_lengths, to, _lengths, insertEnd, tail);
+
+		System.arraycopy(replacement._types, 0, _types, from, replacement._size);
+		System.arraycopy(replacement._starts, 0, _starts, from, replacement._size);
+		System.arraycopy(replacement._lengths, 0, _lengths, from, replacement._size);
+
+		_size = size;
+		_source = replacement._source;
+		_lineIndex = replacement._lineIndex;
+		_cursor = 0;
+	}
+
+	ByteBuffer source() {
+		return _source;
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public int position() {
+		return _cursor;
+	}
+
+	public void seek(int index) {
+		_cursor = index;
+	}
+
+	public void advance() {
+		if (_cursor < _size - 1) {
+			_cursor++;
+		}
+	}
+
+	public TokenType getTokenType() {
+		return getTokenType(_cursor);
+	}
+
+	public String getTokenText() {
+		return getTokenText(_cursor);
+	}
+
+	public int getOffset() {
+		return _starts[_cursor];
+	}
+
+	public int getLine() {
+		return getLine(_cursor);
+	}
+
+	public int getColumn() {
+		return getColumn(_cursor);
+	}
+
+	public TokenType getTokenType(int index) {
+		return TYPES[_types[index]];
+	}
+
+	public String getTokenText(int index) {
+		TokenType type = getTokenType(index);
+		if (type.getSpelling() != null) {
+			return type.getSpelling();
+		}
+
+		// The scanner drops non-ASCII bytes from a token, and the length counts only the
+		// bytes kept.
+		char[] text = new char[_lengths[index]];
+		for (int i = 0, at = _starts[index]; i < text.length; at++) {
+			byte b = _source.get(at);
+			if (b >= 0) {
+				text[i++] = (char) b;
+			}
+		}
+		return new String(text);
+	}
+
+	public int getStart(int index) {
+		return _starts[index];
+	}
+
+	public int getLength(int index) {
+		return _lengths[index];
+	}
+
+	public int getLine(int index) {
+		return _lineIndex.getLine(_starts[index]);
+	}
+
+	public int getColumn(int index) {
+		return _lineIndex.getColumn(_starts[index]);
+	}
+}
@@ -2,13 +2,34 @@ package miniJava.SyntacticAnalyzer;
 
 public enum TokenType {
 
-    CLASS, PUBLIC, PRIVATE, STATIC, VOID, INT, BOOLEAN, IF, ELSE, WHILE, RETURN, TRUE, FALSE, THIS, NEW,
+    CLASS("class"), PUBLIC("public"), PRIVATE("private"), STATIC("static"), VOID("void"), INT("int"),
+    BOOLEAN("boolean"), IF("if"), ELSE("else"), WHILE("while"), RETURN("return"), TRUE("true"), FALSE("false"),
+    THIS("this"), NEW("new"),
 
     IDENTIFIER, INTEGER_LITERAL,
 
-    OPERATOR,
+    PLUS("+"), MINUS("-"), TIMES("*"), DIVIDE("/"), AND("&&"), OR("||"), NOT("!"), LESS("<"), GREATER(">"),
+    LESS_EQUAL("<="), GREATER_EQUAL(">="), EQUAL_EQUAL("=="), NOT_EQUAL("!="),
 
-    LPAREN, RPAREN, LCURLY, RCURLY, LSQUARE, RSQUARE, SEMICOLON, COMMA, DOT, EQUALS,
+    LPAREN("("), RPAREN(")"), LCURLY("{"), RCURLY("}"), LSQUARE("["), RSQUARE("]"), SEMICOLON(";"), COMMA(","),
+    DOT("."), EQUALS("="),
 
-    EOT, ERROR
-}
\ No newline at end of file
+    EOT, ERROR,
+
+    // Never scanned: the optimizer's BINARY operator for x * 2^k, with k as the right operand.
+    SHIFT_LEFT("<<");
+
+    private final String _spelling;
+
+    TokenType() {
+        this(null);
+    }
+
+    TokenType(String spelling) {
+        this._spelling = spelling;
+    }
+
+    public String getSpelling() {
+        return _spelling;
+    }
+}
@@ -0,0 +1,13 @@
+package miniJava.SyntacticAnalyzer;
+
+public interface TokenView {
+	TokenType getTokenType();
+
+	String getTokenText();
+
+	int getOffset();
+
+	int getLine();
+
+	int getColumn();
+}